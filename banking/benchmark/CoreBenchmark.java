@@ -0,0 +1,471 @@
+package com.banking.benchmark;
+
+import com.banking.model.Account;
+import com.banking.model.TransactionPage;
+import com.banking.security.InputValidator;
+import com.banking.service.BankingService;
+import com.banking.service.Session;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput and latency of the core paths: deposits and withdrawals at several
+// thread counts, login, account lookup at several table sizes, history paging,
+// loading and saving large data directories, and input validation. Each result
+// is printed and appended as one JSON object per line to the results file so
+// runs can be compared over time.
+//
+// Scope: this is a plain harness, not JMH. The tree has no Maven or Gradle build
+// to carry the JMH dependency and its annotation processor, so there is no
+// benchmark module either; every class here runs with just the compiled sources
+// on the classpath. It follows JMH's shape instead: warmup iterations, then
+// measured ones, reported as mean and standard deviation with every sample.
+// Account lookups stop at 900k, the whole six-digit account number space; 10M
+// accounts would first need longer account numbers.
+//
+// The service always works on ./data, so run this from an empty scratch
+// directory; it refuses to start if ./data already has anything in it.
+//
+// Usage: java com.banking.benchmark.CoreBenchmark [--quick] [--seconds S] [--out FILE] [suite...]
+// Suites: deposit login lookup history load validate (default: all)
+public class CoreBenchmark {
+    private static final Path DATA = Paths.get("data");
+    private static final String[] ALL_SUITES = {"deposit", "login", "lookup", "history", "load", "validate"};
+    private static final long START_CENTS = 100000000;
+    private static final int HISTORY_PAGE = 50;
+    
+    private static boolean quick;
+    private static double seconds = 3.0;
+    private static PrintWriter results;
+    private static volatile long sink;
+    
+    // One operation on one benchmark thread
+    private interface Operation {
+        void run(int thread) throws Exception;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String out = "benchmark-results.jsonl";
+        List<String> suites = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--quick")) {
+                quick = true;
+                seconds = 1.0;
+            } else if (args[i].equals("--seconds")) {
+                seconds = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--out")) {
+                out = args[++i];
+            } else {
+                suites.add(args[i]);
+            }
+        }
+        if (suites.isEmpty()) {
+            suites.addAll(Arrays.asList(ALL_SUITES));
+        }
+        if (!isEmptyOrMissing(DATA)) {
+            System.err.println("Refusing to run: " + DATA.toAbsolutePath() + " is not empty");
+            System.exit(2);
+        }
+        
+        results = new PrintWriter(new FileWriter(out, true), true);
+        System.out.printf("cores=%d seconds=%.1f quick=%b%n", Runtime.getRuntime().availableProcessors(),
+            seconds, quick);
+        try {
+            for (String suite : suites) {
+                switch (suite) {
+                    case "deposit":
+                        for (int threads : quick ? new int[] {1, 4} : new int[] {1, 2, 4, 8, 16}) {
+                            depositWithdraw(threads);
+                        }
+                        break;
+                    case "login":
+                        login();
+                        break;
+                    case "lookup":
+                        // 900k fills every account number there is
+                        for (int accounts : quick ? new int[] {10000} : new int[] {10000, 100000, 900000}) {
+                            lookup(accounts);
+                        }
+                        break;
+                    case "history":
+                        history(quick ? 100000 : 1000000);
+                        break;
+                    case "load":
+                        for (long transactions : quick ? new long[] {100000} : new long[] {100000, 1000000, 5000000}) {
+                            loadAndSave(transactions);
+                        }
+                        break;
+                    case "validate":
+                        validate();
+                        break;
+                    default:
+                        System.err.println("Unknown suite: " + suite);
+                }
+            }
+        } finally {
+            clearData();
+            results.close();
+        }
+    }
+    
+    // Alternating deposits and withdrawals, each thread on its own user and account
+    private static void depositWithdraw(int threads) throws Exception {
+        BankingService service = freshService("JOURNAL");
+        try {
+            Session[] sessions = new Session[threads];
+            String[] accounts = new String[threads];
+            for (int t = 0; t < threads; t++) {
+                String username = "bench_" + t;
+                service.registerUser(username, DatasetGenerator.PASSWORD);
+                sessions[t] = service.openSession(username, DatasetGenerator.PASSWORD).get();
+                accounts[t] = service.createAccount(sessions[t], Account.AccountType.CHECKING);
+                service.deposit(sessions[t], accounts[t], START_CENTS);
+            }
+            long[] counts = new long[threads];
+            measure("deposit_withdraw", params("threads", threads, "durability",
+                System.getProperty("banking.durability", "FSYNC")), "ops/s", new LinkedHashMap<>(), () -> {
+                    Arrays.fill(counts, 0);
+                    double elapsed = runThreads(threads, t -> {
+                        if ((counts[t]++ & 1) == 0) {
+                            service.deposit(sessions[t], accounts[t], 100);
+                        } else {
+                            service.withdraw(sessions[t], accounts[t], 100);
+                        }
+                    });
+                    return Arrays.stream(counts).sum() / elapsed;
+                });
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    // Password verification dominates; reported as milliseconds per login
+    private static void login() throws Exception {
+        BankingService service = freshService("JOURNAL");
+        try {
+            service.registerUser("bench_login", DatasetGenerator.PASSWORD);
+            List<Long> latencies = new ArrayList<>();
+            Map<String, Object> extra = new LinkedHashMap<>();
+            measure("login", params(), "ms/op", extra, () -> {
+                latencies.clear();
+                long deadline = System.nanoTime() + (long) (seconds * 1e9);
+                while (System.nanoTime() < deadline) {
+                    long started = System.nanoTime();
+                    Session session = service.openSession("bench_login", DatasetGenerator.PASSWORD).get();
+                    latencies.add(System.nanoTime() - started);
+                    service.closeSession(session);
+                }
+                long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+                extra.put("p50_ms", sorted[sorted.length / 2] / 1e6);
+                extra.put("p99_ms", sorted[(int) (sorted.length * 0.99)] / 1e6);
+                return Arrays.stream(sorted).average().orElse(0) / 1e6;
+            });
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    // Random account numbers across the whole table. Most belong to other users, so the
+    // call fails the ownership check after the lookup, which is the part being measured.
+    private static void lookup(int accountCount) throws Exception {
+        clearData();
+        String[] numbers = DatasetGenerator.generate(DATA, Math.max(1, accountCount / 2), accountCount,
+            accountCount, 7);
+        BankingService service = freshService("JOURNAL", false);
+        try {
+            Session session = service.openSession(DatasetGenerator.username(0), DatasetGenerator.PASSWORD).get();
+            Map<String, Object> extra = new LinkedHashMap<>();
+            measure("account_lookup", params("accounts", accountCount), "ops/s", extra, () -> {
+                AtomicLong found = new AtomicLong();
+                long[] count = new long[1];
+                double elapsed = runThreads(1, t -> {
+                    String number = numbers[ThreadLocalRandom.current().nextInt(numbers.length)];
+                    if (service.getAccount(session, number).isPresent()) {
+                        found.incrementAndGet();
+                    }
+                    count[0]++;
+                });
+                sink += found.get();
+                extra.put("cache", service.getAccountCacheStats().toString());
+                return count[0] / elapsed;
+            });
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    // Pages through whole account histories after a checkpoint has moved them to the ledger
+    private static void history(long transactionCount) throws Exception {
+        clearData();
+        int users = 100;
+        String[] numbers = DatasetGenerator.generate(DATA, users, 1000, transactionCount, 11);
+        BankingService service = freshService("JOURNAL", false);
+        try {
+            service.checkpoint();
+            Session session = service.openSession(DatasetGenerator.username(0), DatasetGenerator.PASSWORD).get();
+            List<String> owned = new ArrayList<>();
+            for (int i = 0; i < numbers.length; i++) {
+                if (DatasetGenerator.owner(i, users) == 0) {
+                    owned.add(numbers[i]);
+                }
+            }
+            Map<String, Object> extra = new LinkedHashMap<>();
+            measure("history_pages", params("transactions", transactionCount, "pageSize", HISTORY_PAGE),
+                "pages/s", extra, () -> {
+                    long[] pages = new long[1];
+                    long[] rows = new long[1];
+                    double elapsed = runThreads(1, t -> {
+                        String number = owned.get(ThreadLocalRandom.current().nextInt(owned.size()));
+                        int cursor = 0;
+                        do {
+                            TransactionPage page = service.getAccountTransactions(session, number, cursor, HISTORY_PAGE);
+                            rows[0] += page.getTransactions().size();
+                            pages[0]++;
+                            cursor = page.getNextCursor();
+                        } while (cursor != TransactionPage.END);
+                    });
+                    extra.put("rows_per_s", rows[0] / elapsed);
+                    extra.put("cache", service.getHistoryCacheStats().toString());
+                    return pages[0] / elapsed;
+                });
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    // Startup from text files and from a snapshot, the first checkpoint, and a full rewrite
+    private static void loadAndSave(long transactionCount) throws Exception {
+        clearData();
+        int accounts = (int) Math.min(900000, Math.max(10, transactionCount / 10));
+        DatasetGenerator.generate(DATA, Math.max(1, accounts / 2), accounts, transactionCount, 13);
+        Map<String, Object> params = params("transactions", transactionCount, "accounts", accounts);
+        
+        measure("load_text", params, "ms", new LinkedHashMap<>(), () -> {
+            long started = System.nanoTime();
+            BankingService service = freshService("FULL_REWRITE", false);
+            double elapsed = (System.nanoTime() - started) / 1e6;
+            service.shutdown();
+            return elapsed;
+        });
+        
+        measure("checkpoint_full", params, "ms", new LinkedHashMap<>(), () -> {
+            clearBinaryFiles();
+            BankingService service = freshService("JOURNAL", false);
+            long started = System.nanoTime();
+            service.checkpoint();
+            double elapsed = (System.nanoTime() - started) / 1e6;
+            service.shutdown();
+            return elapsed;
+        });
+        
+        measure("load_snapshot", params, "ms", new LinkedHashMap<>(), () -> {
+            long started = System.nanoTime();
+            BankingService service = freshService("JOURNAL", false);
+            double elapsed = (System.nanoTime() - started) / 1e6;
+            service.shutdown();
+            return elapsed;
+        });
+        
+        clearBinaryFiles();
+        BankingService service = freshService("FULL_REWRITE", false);
+        try {
+            Session session = service.openSession(DatasetGenerator.username(0), DatasetGenerator.PASSWORD).get();
+            String account = service.getUserAccounts(session).get(0).getAccountNumber();
+            measure("save_full_rewrite", params, "ms", new LinkedHashMap<>(), () -> {
+                long started = System.nanoTime();
+                service.deposit(session, account, 100);
+                return (System.nanoTime() - started) / 1e6;
+            });
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    private static void validate() throws Exception {
+        String[] usernames = {"alice_01", "bob", "x", "<script>", "a_very_long_username_indeed"};
+        String[] accounts = {"ACC123456", "ACC12345", "acc123456", "ACC1234567"};
+        String[] amounts = {"10.50", "1000000", "0.01", "-5", "1e5", "12.345"};
+        measure("input_validation", params(), "ops/s", new LinkedHashMap<>(), () -> {
+            long[] count = new long[1];
+            long[] valid = new long[1];
+            double elapsed = runThreads(1, t -> {
+                int i = (int) count[0]++;
+                if (InputValidator.isValidUsername(usernames[i % usernames.length])) {
+                    valid[0]++;
+                }
+                if (InputValidator.isValidAccountNumber(accounts[i % accounts.length])) {
+                    valid[0]++;
+                }
+                valid[0] += InputValidator.parseAmountCents(amounts[i % amounts.length]);
+                valid[0] += InputValidator.sanitizeInput(usernames[i % usernames.length]).length();
+            });
+            sink += valid[0];
+            return count[0] / elapsed;
+        });
+    }
+    
+    // Runs the operation in a loop on each thread until the iteration time is up;
+    // returns the elapsed seconds
+    private static double runThreads(int threads, Operation operation) throws InterruptedException {
+        long started = System.nanoTime();
+        long deadline = started + (long) (seconds * 1e9);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        operation.run(thread);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error in benchmark thread: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        return (System.nanoTime() - started) / 1e9;
+    }
+    
+    private interface Iteration {
+        double run() throws Exception;
+    }
+    
+    // Runs warm-up iterations, then measured ones, and records the scores
+    private static void measure(String benchmark, Map<String, Object> params, String unit,
+                                Map<String, Object> extra, Iteration iteration) throws Exception {
+        int warmups = quick ? 1 : 2;
+        int iterations = quick ? 3 : 5;
+        for (int i = 0; i < warmups; i++) {
+            iteration.run();
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = iteration.run();
+        }
+        record(benchmark, params, unit, scores, extra);
+    }
+    
+    private static void record(String benchmark, Map<String, Object> params, String unit, double[] scores,
+                               Map<String, Object> extra) {
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double deviation = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        System.out.printf("%-18s %-40s %14.3f +- %.3f %s%n", benchmark, params, mean, deviation, unit);
+        
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"benchmark\":").append(quote(benchmark))
+            .append(",\"params\":").append(object(params))
+            .append(",\"unit\":").append(quote(unit))
+            .append(",\"score\":").append(mean)
+            .append(",\"stdev\":").append(deviation)
+            .append(",\"samples\":[");
+        for (int i = 0; i < scores.length; i++) {
+            json.append(i == 0 ? "" : ",").append(scores[i]);
+        }
+        json.append("],\"extra\":").append(object(extra))
+            .append(",\"timestamp\":").append(quote(Instant.now().toString()))
+            .append(",\"java\":").append(quote(System.getProperty("java.version")))
+            .append(",\"cores\":").append(Runtime.getRuntime().availableProcessors())
+            .append('}');
+        results.println(json);
+    }
+    
+    private static Map<String, Object> params(Object... pairs) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            params.put((String) pairs[i], pairs[i + 1]);
+        }
+        return params;
+    }
+    
+    private static String object(Map<String, Object> values) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            json.append(json.length() == 1 ? "" : ",").append(quote(entry.getKey())).append(':');
+            Object value = entry.getValue();
+            json.append(value instanceof Number ? value.toString() : quote(String.valueOf(value)));
+        }
+        return json.append('}').toString();
+    }
+    
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+    
+    private static BankingService freshService(String persistence) throws IOException {
+        return freshService(persistence, true);
+    }
+    
+    // The persistence mode is read when the service's FileDataService is created
+    private static BankingService freshService(String persistence, boolean clear) throws IOException {
+        if (clear) {
+            clearData();
+        }
+        System.setProperty("banking.persistence", persistence);
+        return new BankingService();
+    }
+    
+    private static boolean isEmptyOrMissing(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return !Files.exists(directory);
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+    
+    private static void clearData() throws IOException {
+        if (!Files.isDirectory(DATA)) {
+            Files.createDirectories(DATA);
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(DATA)) {
+            for (Path entry : entries) {
+                Files.delete(entry);
+            }
+        }
+    }
+    
+    // Keeps the generated text files, drops the snapshot, ledger and journal
+    private static void clearBinaryFiles() throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(DATA)) {
+            for (Path entry : entries) {
+                if (!entry.getFileName().toString().endsWith(".txt")) {
+                    Files.delete(entry);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
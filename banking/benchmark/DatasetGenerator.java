@@ -0,0 +1,150 @@
+package com.banking.benchmark;
+
+import com.banking.model.Account;
+import com.banking.model.Transaction;
+import com.banking.model.User;
+import com.banking.security.PasswordHasher;
+import com.banking.service.IdGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+// Writes a synthetic data directory in the text format (users.txt, accounts.txt,
+// transactions.txt) for benchmarks and load tests.
+//
+// Accounts are spread round-robin over the users and activity is skewed towards
+// a minority of busy accounts. Transactions cover the past year in timestamp
+// order, never overdraw, and every balance is the sum of its account's history.
+// All users share one salt and PBKDF2 hash of PASSWORD so generating a million
+// users does not take a million hashes.
+//
+// Usage: java com.banking.benchmark.DatasetGenerator <directory> <users> <accounts> <transactions> [seed]
+public class DatasetGenerator {
+    public static final String PASSWORD = "password123";
+    
+    private static final int ACCOUNT_SPACE = 900000;
+    private static final long SPAN_SECONDS = 365L * 24 * 3600;
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: DatasetGenerator <directory> <users> <accounts> <transactions> [seed]");
+            System.exit(2);
+        }
+        long started = System.nanoTime();
+        generate(Paths.get(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+            Long.parseLong(args[3]), args.length > 4 ? Long.parseLong(args[4]) : 42);
+        System.out.printf("Generated %s in %.1f s%n", args[0], (System.nanoTime() - started) / 1e9);
+    }
+    
+    public static String username(int index) {
+        return String.format("user%07d", index);
+    }
+    
+    // Owner of the index-th generated account
+    public static int owner(int account, int users) {
+        return account % users;
+    }
+    
+    // Returns the generated account numbers in index order
+    public static String[] generate(Path directory, int users, int accounts, long transactions, long seed)
+            throws IOException {
+        if (users < 1 || accounts < users || accounts > ACCOUNT_SPACE) {
+            throw new IllegalArgumentException("Need 1 <= users <= accounts <= " + ACCOUNT_SPACE);
+        }
+        Files.createDirectories(directory);
+        Random random = new Random(seed);
+        
+        String salt = PasswordHasher.generateSalt();
+        String passwordHash = PasswordHasher.hashPassword(PASSWORD, salt);
+        try (BufferedWriter out = writer(directory.resolve("users.txt"))) {
+            for (int i = 0; i < users; i++) {
+                out.write(new User(username(i), passwordHash, salt).toString());
+                out.newLine();
+            }
+        }
+        
+        // Distinct account numbers from a partial shuffle of the number space
+        int[] offsets = new int[ACCOUNT_SPACE];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = i;
+        }
+        String[] numbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            int pick = i + random.nextInt(ACCOUNT_SPACE - i);
+            int swap = offsets[i];
+            offsets[i] = offsets[pick];
+            offsets[pick] = swap;
+            numbers[i] = IdGenerator.accountNumber(offsets[i]);
+        }
+        
+        LocalDateTime start = LocalDateTime.now().minusSeconds(SPAN_SECONDS);
+        long[] balances = new long[accounts];
+        IdGenerator ids = new IdGenerator();
+        try (BufferedWriter out = writer(directory.resolve("transactions.txt"))) {
+            for (long t = 0; t < transactions; t++) {
+                LocalDateTime timestamp = start.plusNanos((long) (SPAN_SECONDS * 1e9 * t / Math.max(1, transactions)));
+                int account = busyAccount(random, accounts);
+                long amount = amount(random);
+                double kind = random.nextDouble();
+                boolean funded = balances[account] >= amount;
+                if (kind >= 0.45 && kind < 0.8 && funded) {
+                    balances[account] -= amount;
+                    write(out, new Transaction(ids.nextTransactionId(), numbers[account],
+                        Transaction.TransactionType.WITHDRAWAL, amount, timestamp, "Withdrawal"));
+                } else if (kind >= 0.8 && funded && accounts > 1) {
+                    int target = random.nextInt(accounts - 1);
+                    target += target >= account ? 1 : 0;
+                    balances[account] -= amount;
+                    balances[target] += amount;
+                    write(out, new Transaction(ids.nextTransactionId(), numbers[account],
+                        Transaction.TransactionType.TRANSFER_OUT, amount, timestamp, "Transfer to " + numbers[target]));
+                    write(out, new Transaction(ids.nextTransactionId(), numbers[target],
+                        Transaction.TransactionType.TRANSFER_IN, amount, timestamp, "Transfer from " + numbers[account]));
+                    t++;
+                } else {
+                    balances[account] += amount;
+                    write(out, new Transaction(ids.nextTransactionId(), numbers[account],
+                        Transaction.TransactionType.DEPOSIT, amount, timestamp, "Deposit"));
+                }
+            }
+        }
+        
+        try (BufferedWriter out = writer(directory.resolve("accounts.txt"))) {
+            for (int i = 0; i < accounts; i++) {
+                Account.AccountType type = random.nextInt(3) == 0
+                    ? Account.AccountType.SAVINGS : Account.AccountType.CHECKING;
+                LocalDateTime createdAt = start.minusSeconds((long) (random.nextDouble() * SPAN_SECONDS));
+                out.write(new Account(numbers[i], username(owner(i, users)), type, balances[i], createdAt).toString());
+                out.newLine();
+            }
+        }
+        return numbers;
+    }
+    
+    // Squaring a uniform draw puts about a third of the traffic on the first tenth of the accounts
+    private static int busyAccount(Random random, int accounts) {
+        double u = random.nextDouble();
+        return Math.min(accounts - 1, (int) (u * u * accounts));
+    }
+    
+    // Log-normal around $50, between one cent and $100,000
+    private static long amount(Random random) {
+        double cents = Math.exp(Math.log(5000) + random.nextGaussian() * 1.2);
+        return Math.max(1, Math.min(10000000, Math.round(cents)));
+    }
+    
+    private static void write(BufferedWriter out, Transaction transaction) throws IOException {
+        out.write(transaction.toString());
+        out.newLine();
+    }
+    
+    private static BufferedWriter writer(Path path) throws IOException {
+        return new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 20);
+    }
+}
\ No newline at end of file
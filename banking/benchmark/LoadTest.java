@@ -0,0 +1,275 @@
+package com.banking.benchmark;
+
+import com.banking.model.Account;
+import com.banking.service.BankingService;
+import com.banking.service.LatencyHistogram;
+import com.banking.service.Session;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives a mixed workload through BankingService with one thread per client and
+// reports throughput and latency percentiles per operation type. The workload is
+// either generated from a seed or replayed from a file written by --record, so
+// the same run can be repeated against different persistence settings
+// (-Dbanking.persistence, -Dbanking.durability, ...).
+//
+// Each client runs its own ops in recorded order. Clients only meet on shared
+// users and accounts, so with one client a replay is exactly repeatable; with
+// more, the order between clients is up to the scheduler. An op that refers to an
+// account another client has not created yet is counted as skipped.
+//
+// Like CoreBenchmark it works on ./data and refuses to start if that has anything
+// in it, so every run begins from the same empty state.
+//
+// Usage: java com.banking.benchmark.LoadTest [--replay FILE | options] [--record FILE] [--prefix P]
+// Options: --seed N --clients N --users N --accounts N (per user) --ops N (per client)
+//          --skew X --think MS (mean)
+//          --mix register=2,login=3,create=2,deposit=40,withdraw=35,history=18
+public class LoadTest {
+    private static final Path DATA = Paths.get("data");
+    private static final int HISTORY_PAGE = 20;
+    private static final double[] PERCENTILES = {0.50, 0.95, 0.99, 0.999};
+    
+    private enum Outcome {
+        OK, FAILED, SKIPPED
+    }
+    
+    // Results for one operation type
+    private static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+    }
+    
+    private static final Map<Workload.Type, Stats> stats = new HashMap<>();
+    private static final Map<Integer, String> accountNumbers = new ConcurrentHashMap<>();
+    private static String prefix = "lt";
+    
+    public static void main(String[] args) throws Exception {
+        Workload.Settings settings = new Workload.Settings();
+        String replay = null;
+        String record = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--replay")) {
+                    replay = args[++i];
+                } else if (option.equals("--record")) {
+                    record = args[++i];
+                } else if (option.equals("--prefix")) {
+                    prefix = args[++i];
+                } else if (option.equals("--seed")) {
+                    settings.seed = Long.parseLong(args[++i]);
+                } else if (option.equals("--clients")) {
+                    settings.clients = Integer.parseInt(args[++i]);
+                } else if (option.equals("--users")) {
+                    settings.users = Integer.parseInt(args[++i]);
+                } else if (option.equals("--accounts")) {
+                    settings.accountsPerUser = Integer.parseInt(args[++i]);
+                } else if (option.equals("--ops")) {
+                    settings.opsPerClient = Integer.parseInt(args[++i]);
+                } else if (option.equals("--skew")) {
+                    settings.skew = Double.parseDouble(args[++i]);
+                } else if (option.equals("--think")) {
+                    settings.thinkMillis = Double.parseDouble(args[++i]);
+                } else if (option.equals("--mix")) {
+                    parseMix(args[++i], settings.mix);
+                } else {
+                    System.err.println("Unknown option: " + option);
+                    System.exit(2);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error parsing options: " + e.getMessage());
+            System.exit(2);
+        }
+        
+        Workload workload = replay != null ? Workload.read(Paths.get(replay)) : Workload.generate(settings);
+        if (record != null) {
+            workload.write(Paths.get(record));
+            System.out.println("Recorded " + workload.getOps().size() + " operations to " + record);
+        }
+        if (!isEmptyOrMissing(DATA)) {
+            System.err.println("Refusing to run: " + DATA.toAbsolutePath() + " is not empty");
+            System.exit(2);
+        }
+        
+        resetStats();
+        int clients = workload.getClients();
+        List<List<Workload.Op>> setup = new ArrayList<>();
+        List<List<Workload.Op>> main = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            setup.add(new ArrayList<>());
+            main.add(new ArrayList<>());
+        }
+        for (Workload.Op op : workload.getOps()) {
+            (op.getPhase() == Workload.Phase.SETUP ? setup : main).get(op.getClient()).add(op);
+        }
+        
+        System.out.println("workload: " + workload.getDescription());
+        System.out.printf("cores=%d persistence=%s durability=%s%n", Runtime.getRuntime().availableProcessors(),
+            System.getProperty("banking.persistence", "JOURNAL"), System.getProperty("banking.durability", "FSYNC"));
+        BankingService service = new BankingService();
+        try {
+            List<Map<Integer, Session>> sessions = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                sessions.add(new HashMap<>());
+            }
+            double setupSeconds = runPhase(service, setup, sessions, false);
+            System.out.printf("setup: %d ops in %.2f s%n", count(setup), setupSeconds);
+            resetStats();
+            double mainSeconds = runPhase(service, main, sessions, true);
+            report(count(main), mainSeconds);
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    // Runs every client's ops on its own thread and returns the wall time in seconds
+    private static double runPhase(BankingService service, List<List<Workload.Op>> perClient,
+                                   List<Map<Integer, Session>> sessions, boolean think) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < perClient.size(); c++) {
+            List<Workload.Op> ops = perClient.get(c);
+            Map<Integer, Session> clientSessions = sessions.get(c);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (Workload.Op op : ops) {
+                        if (think && op.getThinkMillis() > 0) {
+                            Thread.sleep(op.getThinkMillis());
+                        }
+                        execute(service, clientSessions, op);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "load-client-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - started) / 1e9;
+    }
+    
+    private static void execute(BankingService service, Map<Integer, Session> sessions, Workload.Op op) {
+        Stats s = stats.get(op.getType());
+        String username = prefix + String.format("%06d", op.getUser());
+        Session session = sessions.get(op.getUser());
+        String account = op.getAccount() < 0 ? null : accountNumbers.get(op.getAccount());
+        boolean needsAccount = op.getType() != Workload.Type.REGISTER && op.getType() != Workload.Type.LOGIN
+            && op.getType() != Workload.Type.CREATE;
+        if ((op.getType() != Workload.Type.REGISTER && op.getType() != Workload.Type.LOGIN && session == null)
+            || (needsAccount && account == null)) {
+            s.skipped.increment();
+            return;
+        }
+        
+        long started = System.nanoTime();
+        boolean ok;
+        try {
+            switch (op.getType()) {
+                case REGISTER:
+                    ok = service.registerUser(username, DatasetGenerator.PASSWORD);
+                    break;
+                case LOGIN:
+                    Session opened = service.openSession(username, DatasetGenerator.PASSWORD).orElse(null);
+                    ok = opened != null;
+                    if (ok) {
+                        Session previous = sessions.put(op.getUser(), opened);
+                        if (previous != null) {
+                            service.closeSession(previous);
+                        }
+                    }
+                    break;
+                case CREATE:
+                    String number = service.createAccount(session, (op.getAccount() & 1) == 0
+                        ? Account.AccountType.CHECKING : Account.AccountType.SAVINGS);
+                    ok = number != null;
+                    if (ok) {
+                        accountNumbers.put(op.getAccount(), number);
+                    }
+                    break;
+                case DEPOSIT:
+                    ok = service.deposit(session, account, op.getAmountCents());
+                    break;
+                case WITHDRAW:
+                    ok = service.withdraw(session, account, op.getAmountCents());
+                    break;
+                default:
+                    ok = service.getAccountTransactions(session, account, 0, HISTORY_PAGE) != null;
+            }
+        } catch (RuntimeException e) {
+            ok = false;
+        }
+        s.latency.record(System.nanoTime() - started);
+        (ok ? s.ok : s.failed).increment();
+    }
+    
+    private static void report(long ops, double seconds) {
+        System.out.printf("main: %d ops in %.2f s, %.1f ops/s%n", ops, seconds, ops / seconds);
+        System.out.printf("%-9s %9s %7s %7s %10s %9s %9s %9s %9s %9s%n", "operation", "count", "failed",
+            "skipped", "ops/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Workload.Type type : Workload.Type.values()) {
+            Stats s = stats.get(type);
+            long count = s.latency.getCount();
+            if (count == 0 && s.skipped.sum() == 0) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(String.format("%-9s %9d %7d %7d %10.1f",
+                type.name().toLowerCase(), count, s.failed.sum(), s.skipped.sum(), count / seconds));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %9.3f", s.latency.getPercentileNanos(percentile) / 1e6));
+            }
+            line.append(String.format(" %9.3f", s.latency.getMaxNanos() / 1e6));
+            System.out.println(line);
+        }
+    }
+    
+    private static void resetStats() {
+        for (Workload.Type type : Workload.Type.values()) {
+            stats.put(type, new Stats());
+        }
+    }
+    
+    private static void parseMix(String spec, int[] mix) {
+        for (String part : spec.split(",")) {
+            String[] pair = part.split("=");
+            mix[Workload.Type.valueOf(pair[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(pair[1].trim());
+        }
+    }
+    
+    private static long count(List<List<Workload.Op>> perClient) {
+        long total = 0;
+        for (List<Workload.Op> ops : perClient) {
+            total += ops.size();
+        }
+        return total;
+    }
+    
+    private static boolean isEmptyOrMissing(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return !Files.exists(directory);
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+}
\ No newline at end of file
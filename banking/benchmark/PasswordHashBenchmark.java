@@ -0,0 +1,73 @@
+package com.banking.benchmark;
+
+import com.banking.security.HashingEngine;
+import com.banking.security.PasswordHasher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Measures password verifications per second per core for each PBKDF2 work factor.
+//
+// Usage: java com.banking.benchmark.PasswordHashBenchmark [seconds] [iterations...]
+public class PasswordHashBenchmark {
+    private static final int[] DEFAULT_ITERATIONS = {10000, 50000, 100000, 210000, 600000};
+    
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3.0;
+        int[] settings = DEFAULT_ITERATIONS;
+        if (args.length > 1) {
+            settings = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                settings[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        String salt = PasswordHasher.generateSalt();
+        String password = "correct horse battery";
+        
+        System.out.printf("cores=%d seconds=%.1f%n", cores, seconds);
+        System.out.println("algorithm,iterations,logins_per_sec,logins_per_sec_per_core,mean_ms");
+        
+        String legacy = PasswordHasher.hashPasswordLegacy(password, salt);
+        report("sha256-legacy", 1, run(cores, seconds, password, salt, legacy), seconds, cores);
+        for (int iterations : settings) {
+            String stored = PasswordHasher.hashPassword(password, salt, iterations);
+            report("pbkdf2-sha256", iterations, run(cores, seconds, password, salt, stored), seconds, cores);
+        }
+    }
+    
+    // Keeps the engine's queue full from one client thread per core until time runs out
+    private static int run(int cores, double seconds, String password, String salt, String stored)
+            throws InterruptedException {
+        HashingEngine engine = new HashingEngine(cores, cores * 4);
+        // Warm up the per-thread digests and the JIT
+        for (int i = 0; i < cores * 2; i++) {
+            engine.verify(password, salt, stored);
+        }
+        
+        AtomicInteger completed = new AtomicInteger();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        CountDownLatch done = new CountDownLatch(cores);
+        for (int t = 0; t < cores; t++) {
+            Thread client = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    if (engine.verify(password, salt, stored)) {
+                        completed.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+            client.setDaemon(true);
+            client.start();
+        }
+        done.await();
+        engine.shutdown();
+        return completed.get();
+    }
+    
+    private static void report(String algorithm, int iterations, int logins, double seconds, int cores) {
+        double perSecond = logins / seconds;
+        System.out.printf("%s,%d,%.1f,%.1f,%.3f%n", algorithm, iterations, perSecond, perSecond / cores,
+            logins == 0 ? 0.0 : seconds * 1000.0 * cores / logins);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.banking.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// A recorded sequence of operations per load-test client, generated from a seed.
+// Users and accounts are referred to by logical index; the driver maps account
+// indexes to the numbers the service hands out when it replays the CREATE ops.
+//
+// A setup phase registers every initial user, logs it in on its client and
+// creates and funds its accounts; the main phase is the configured mix. Each
+// client's ops are generated in the order that client will run them, and every
+// op carries its think time, so a workload file replays the same per-client
+// sequence every time.
+//
+// File format: a "#" header with the settings, then one op per line as
+// phase,client,type,user,account,amountCents,thinkMillis
+public class Workload {
+    // Deposited into every setup account so the main phase's withdrawals mostly succeed
+    private static final long OPENING_CENTS = 10000000;
+    
+    public enum Type {
+        REGISTER, LOGIN, CREATE, DEPOSIT, WITHDRAW, HISTORY
+    }
+    
+    public enum Phase {
+        SETUP, MAIN
+    }
+    
+    public static final class Op {
+        private final Phase phase;
+        private final int client;
+        private final Type type;
+        private final int user;
+        private final int account;
+        private final long amountCents;
+        private final int thinkMillis;
+        
+        Op(Phase phase, int client, Type type, int user, int account, long amountCents, int thinkMillis) {
+            this.phase = phase;
+            this.client = client;
+            this.type = type;
+            this.user = user;
+            this.account = account;
+            this.amountCents = amountCents;
+            this.thinkMillis = thinkMillis;
+        }
+        
+        // Getters
+        public Phase getPhase() { return phase; }
+        public int getClient() { return client; }
+        public Type getType() { return type; }
+        public int getUser() { return user; }
+        public int getAccount() { return account; }
+        public long getAmountCents() { return amountCents; }
+        public int getThinkMillis() { return thinkMillis; }
+        
+        @Override
+        public String toString() {
+            return phase + "," + client + "," + type + "," + user + "," + account + "," + amountCents + ","
+                + thinkMillis;
+        }
+    }
+    
+    public static final class Settings {
+        long seed = 1;
+        int clients = 8;
+        int users = 100;
+        int accountsPerUser = 2;
+        int opsPerClient = 1000;
+        // 0 spreads traffic evenly; larger values concentrate it on the low-numbered users
+        double skew = 1.0;
+        double thinkMillis = 0;
+        // Relative weights of the main-phase ops, indexed by Type ordinal
+        int[] mix = {2, 3, 2, 40, 35, 18};
+        
+        @Override
+        public String toString() {
+            StringBuilder weights = new StringBuilder();
+            for (Type type : Type.values()) {
+                weights.append(weights.length() == 0 ? "" : "/").append(type.name().toLowerCase())
+                    .append('=').append(mix[type.ordinal()]);
+            }
+            return String.format("seed=%d clients=%d users=%d accountsPerUser=%d opsPerClient=%d skew=%.2f"
+                + " thinkMillis=%.1f mix=%s", seed, clients, users, accountsPerUser, opsPerClient, skew,
+                thinkMillis, weights);
+        }
+    }
+    
+    private final String description;
+    private final int clients;
+    private final List<Op> ops;
+    
+    private Workload(String description, int clients, List<Op> ops) {
+        this.description = description;
+        this.clients = clients;
+        this.ops = Collections.unmodifiableList(ops);
+    }
+    
+    public String getDescription() { return description; }
+    public int getClients() { return clients; }
+    public List<Op> getOps() { return ops; }
+    
+    public static Workload generate(Settings settings) {
+        if (settings.clients < 1 || settings.users < 1 || settings.accountsPerUser < 1) {
+            throw new IllegalArgumentException("Need at least one client, user and account per user");
+        }
+        Random random = new Random(settings.seed);
+        List<Op> ops = new ArrayList<>();
+        List<Set<Integer>> loggedIn = new ArrayList<>();
+        for (int c = 0; c < settings.clients; c++) {
+            loggedIn.add(new HashSet<>());
+        }
+        // Accounts of each user, and the users that have any, in the order they got one
+        List<List<Integer>> accountsOf = new ArrayList<>();
+        List<Integer> withAccounts = new ArrayList<>();
+        int nextAccount = 0;
+        
+        for (int user = 0; user < settings.users; user++) {
+            int client = user % settings.clients;
+            ops.add(new Op(Phase.SETUP, client, Type.REGISTER, user, -1, 0, 0));
+            ops.add(new Op(Phase.SETUP, client, Type.LOGIN, user, -1, 0, 0));
+            loggedIn.get(client).add(user);
+            List<Integer> accounts = new ArrayList<>();
+            for (int a = 0; a < settings.accountsPerUser; a++) {
+                ops.add(new Op(Phase.SETUP, client, Type.CREATE, user, nextAccount, 0, 0));
+                ops.add(new Op(Phase.SETUP, client, Type.DEPOSIT, user, nextAccount, OPENING_CENTS, 0));
+                accounts.add(nextAccount++);
+            }
+            accountsOf.add(accounts);
+            withAccounts.add(user);
+        }
+        
+        int totalWeight = 0;
+        for (int weight : settings.mix) {
+            totalWeight += weight;
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("Operation mix has no weight");
+        }
+        int nextUser = settings.users;
+        // Round-robin over clients so users and accounts appear in roughly the order they will at run time
+        for (int i = 0; i < settings.opsPerClient; i++) {
+            for (int client = 0; client < settings.clients; client++) {
+                Type type = pick(random, settings.mix, totalWeight);
+                int think = think(random, settings.thinkMillis);
+                Set<Integer> sessions = loggedIn.get(client);
+                if (type == Type.REGISTER) {
+                    accountsOf.add(new ArrayList<>());
+                    ops.add(new Op(Phase.MAIN, client, Type.REGISTER, nextUser++, -1, 0, think));
+                    continue;
+                }
+                int user;
+                if (type == Type.LOGIN || type == Type.CREATE) {
+                    user = skewed(random, nextUser, settings.skew);
+                } else {
+                    user = withAccounts.get(skewed(random, withAccounts.size(), settings.skew));
+                }
+                if (type == Type.LOGIN || !sessions.contains(user)) {
+                    ops.add(new Op(Phase.MAIN, client, Type.LOGIN, user, -1, 0, type == Type.LOGIN ? think : 0));
+                    sessions.add(user);
+                    if (type == Type.LOGIN) {
+                        continue;
+                    }
+                }
+                if (type == Type.CREATE) {
+                    List<Integer> accounts = accountsOf.get(user);
+                    if (accounts.isEmpty()) {
+                        withAccounts.add(user);
+                    }
+                    accounts.add(nextAccount);
+                    ops.add(new Op(Phase.MAIN, client, Type.CREATE, user, nextAccount++, 0, think));
+                    continue;
+                }
+                List<Integer> accounts = accountsOf.get(user);
+                int account = accounts.get(random.nextInt(accounts.size()));
+                long amount = type == Type.HISTORY ? 0 : 100 + random.nextInt(50000);
+                ops.add(new Op(Phase.MAIN, client, type, user, account, amount, think));
+            }
+        }
+        return new Workload(settings.toString(), settings.clients, ops);
+    }
+    
+    private static Type pick(Random random, int[] mix, int totalWeight) {
+        int draw = random.nextInt(totalWeight);
+        for (Type type : Type.values()) {
+            draw -= mix[type.ordinal()];
+            if (draw < 0) {
+                return type;
+            }
+        }
+        return Type.DEPOSIT;
+    }
+    
+    private static int skewed(Random random, int size, double skew) {
+        return Math.min(size - 1, (int) (size * Math.pow(random.nextDouble(), 1 + skew)));
+    }
+    
+    // Exponentially distributed, as from independent users
+    private static int think(Random random, double meanMillis) {
+        if (meanMillis <= 0) {
+            return 0;
+        }
+        return (int) Math.round(-meanMillis * Math.log(1 - random.nextDouble()));
+    }
+    
+    public void write(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("# " + description);
+            out.newLine();
+            for (Op op : ops) {
+                out.write(op.toString());
+                out.newLine();
+            }
+        }
+    }
+    
+    public static Workload read(Path path) throws IOException {
+        List<Op> ops = new ArrayList<>();
+        String description = path.toString();
+        int clients = 0;
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.startsWith("#")) {
+                    description = line.substring(1).trim();
+                    continue;
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    Op op = new Op(Phase.valueOf(fields[0]), Integer.parseInt(fields[1]), Type.valueOf(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), Long.parseLong(fields[5]),
+                        Integer.parseInt(fields[6]));
+                    ops.add(op);
+                    clients = Math.max(clients, op.client + 1);
+                } catch (RuntimeException e) {
+                    throw new IOException("Bad workload line " + lineNumber + ": " + line);
+                }
+            }
+        }
+        return new Workload(description, clients, ops);
+    }
+}
\ No newline at end of file
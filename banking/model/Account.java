@@ -1,63 +1,89 @@
-package com.banking.model;
-
-import java.io.Serializable;
-import java.time.LocalDateTime;
-
-public class Account implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
-    private String accountNumber;
-    private String username;
-    private double balance;
-    private AccountType type;
-    private LocalDateTime createdAt;
-    
-    public enum AccountType {
-        SAVINGS, CHECKING
-    }
-    
-    public Account(String accountNumber, String username, AccountType type) {
-        this.accountNumber = accountNumber;
-        this.username = username;
-        this.type = type;
-        this.balance = 0.0;
-        this.createdAt = LocalDateTime.now();
-    }
-    
-    // Getters
-    public String getAccountNumber() { return accountNumber; }
-    public String getUsername() { return username; }
-    public double getBalance() { return balance; }
-    public AccountType getType() { return type; }
-    public LocalDateTime getCreatedAt() { return createdAt; }
-    
-    public void deposit(double amount) {
-        if (amount > 0) {
-            this.balance += amount;
-        }
-    }
-    
-    public boolean withdraw(double amount) {
-        if (amount > 0 && amount <= balance) {
-            this.balance -= amount;
-            return true;
-        }
-        return false;
-    }
-    
-    @Override
-    public String toString() {
-        return accountNumber + "," + username + "," + balance + "," + type + "," + createdAt;
-    }
-    
-    public static Account fromString(String data) {
-        String[] parts = data.split(",");
-        if (parts.length == 5) {
-            Account account = new Account(parts[0], parts[1], AccountType.valueOf(parts[3]));
-            account.balance = Double.parseDouble(parts[2]);
-            account.createdAt = LocalDateTime.parse(parts[4]);
-            return account;
-        }
-        return null;
-    }
+package com.banking.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Account implements Serializable {
+    private static final long serialVersionUID = 2L;
+    
+    private String accountNumber;
+    private String username;
+    // Balance in cents, only ever changed by compare-and-set
+    private final AtomicLong balance = new AtomicLong();
+    private AccountType type;
+    private LocalDateTime createdAt;
+    
+    public enum AccountType {
+        SAVINGS, CHECKING
+    }
+    
+    // For subclasses that keep the balance elsewhere and override every accessor
+    protected Account() {
+    }
+    
+    public Account(String accountNumber, String username, AccountType type) {
+        this.accountNumber = accountNumber;
+        this.username = username;
+        this.type = type;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public Account(String accountNumber, String username, AccountType type, long balanceCents,
+                   LocalDateTime createdAt) {
+        this.accountNumber = accountNumber;
+        this.username = username;
+        this.type = type;
+        this.balance.set(balanceCents);
+        this.createdAt = createdAt;
+    }
+    
+    // Getters
+    public String getAccountNumber() { return accountNumber; }
+    public String getUsername() { return username; }
+    public double getBalance() { return Money.toDouble(getBalanceCents()); }
+    public long getBalanceCents() { return balance.get(); }
+    public AccountType getType() { return type; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    
+    public void deposit(long amountCents) {
+        if (amountCents > 0) {
+            balance.addAndGet(amountCents);
+        }
+    }
+    
+    // The overdraft check and the debit are one atomic step
+    public boolean withdraw(long amountCents) {
+        if (amountCents <= 0) {
+            return false;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (amountCents > current) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - amountCents));
+        return true;
+    }
+    
+    // Applies an already-approved change, used when replaying the journal
+    public void adjustBalance(long deltaCents) {
+        balance.addAndGet(deltaCents);
+    }
+    
+    @Override
+    public String toString() {
+        return getAccountNumber() + "," + getUsername() + "," + Money.format(getBalanceCents()) + "," +
+               getType() + "," + getCreatedAt();
+    }
+    
+    public static Account fromString(String data) {
+        String[] parts = data.split(",");
+        if (parts.length == 5) {
+            return new Account(parts[0], parts[1], AccountType.valueOf(parts[3]),
+                Money.parse(parts[2]), LocalDateTime.parse(parts[4]));
+        }
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.banking.model;
+
+import java.io.Serializable;
+
+// Outcome of applying a posting file
+public class BatchResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final long postings;
+    private final long applied;
+    private final long rejected;
+    private final long elapsedNanos;
+    
+    public BatchResult(long postings, long applied, long rejected, long elapsedNanos) {
+        this.postings = postings;
+        this.applied = applied;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    // Getters
+    public long getPostings() { return postings; }
+    public long getApplied() { return applied; }
+    public long getRejected() { return rejected; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    
+    // Postings read, applied or rejected, per second of wall time
+    public double getPostingsPerSecond() {
+        return elapsedNanos == 0 ? 0 : postings * 1e9 / elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("postings=%d applied=%d rejected=%d seconds=%.3f postingsPerSecond=%.0f",
+            postings, applied, rejected, elapsedNanos / 1e9, getPostingsPerSecond());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.banking.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Outcome of one day's interest accrual
+public class InterestResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final LocalDate day;
+    private final long accounts;
+    private final long posted;
+    private final long alreadyPaid;
+    private final long interestCents;
+    private final long elapsedNanos;
+    
+    public InterestResult(LocalDate day, long accounts, long posted, long alreadyPaid, long interestCents,
+                          long elapsedNanos) {
+        this.day = day;
+        this.accounts = accounts;
+        this.posted = posted;
+        this.alreadyPaid = alreadyPaid;
+        this.interestCents = interestCents;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    // Getters
+    public LocalDate getDay() { return day; }
+    public long getAccounts() { return accounts; }
+    public long getPosted() { return posted; }
+    public long getAlreadyPaid() { return alreadyPaid; }
+    public long getInterestCents() { return interestCents; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    
+    // Savings accounts examined per second of wall time
+    public double getAccountsPerSecond() {
+        return elapsedNanos == 0 ? 0 : accounts * 1e9 / elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("day=%s accounts=%d posted=%d alreadyPaid=%d interest=%s seconds=%.3f"
+            + " accountsPerSecond=%.0f", day, accounts, posted, alreadyPaid, Money.format(interestCents),
+            elapsedNanos / 1e9, getAccountsPerSecond());
+    }
+}
\ No newline at end of file
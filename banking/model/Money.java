@@ -0,0 +1,112 @@
+package com.banking.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Fixed-point money helpers. Amounts are held as long minor units (cents).
+public final class Money {
+    public static final int SCALE = 2;
+    public static final long CENTS_PER_UNIT = 100;
+    
+    private Money() {
+    }
+    
+    // Formats cents as a plain decimal with two fractional digits, e.g. 1050 -> "10.50"
+    public static String format(long cents) {
+        StringBuilder builder = new StringBuilder(20);
+        if (cents < 0) {
+            builder.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % CENTS_PER_UNIT;
+        builder.append(cents / CENTS_PER_UNIT).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction).toString();
+    }
+    
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+    
+    // cents * numerator / denominator rounded half-even to the cent, e.g. a balance
+    // times a rate held as a fraction. Exact: products that overflow a long are
+    // finished in BigDecimal.
+    public static long multiplyDivide(long cents, long numerator, long denominator) {
+        if (denominator <= 0) {
+            throw new IllegalArgumentException("Denominator must be positive");
+        }
+        long high = Math.multiplyHigh(cents, numerator);
+        long product = cents * numerator;
+        if ((high != 0 || product < 0) && (high != -1 || product >= 0)) {
+            return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(numerator))
+                .divide(BigDecimal.valueOf(denominator), 0, RoundingMode.HALF_EVEN).longValueExact();
+        }
+        long quotient = product / denominator;
+        long remainder = Math.abs(product % denominator);
+        long rest = denominator - remainder;
+        if (remainder > rest || (remainder == rest && (quotient & 1) != 0)) {
+            quotient += product < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+    
+    // Parses a stored amount. Plain decimals with up to two fractional digits are
+    // scanned directly; anything else (older files may hold "1.0E7") goes through
+    // BigDecimal and is rounded to the cent.
+    public static long parse(String value) {
+        long cents = parsePlain(value, 0, value.length());
+        if (cents != Long.MIN_VALUE) {
+            return cents;
+        }
+        return new BigDecimal(value.trim()).setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+    
+    // Scans [start, end) as [-]digits[.d[d]]; returns Long.MIN_VALUE if it is not in that form
+    public static long parsePlain(CharSequence value, int start, int end) {
+        boolean negative = false;
+        if (start < end && value.charAt(start) == '-') {
+            negative = true;
+            start++;
+        }
+        long units = 0;
+        int digits = 0;
+        int i = start;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (++digits > 16) {
+                return Long.MIN_VALUE;
+            }
+            units = units * 10 + (c - '0');
+        }
+        if (digits == 0) {
+            return Long.MIN_VALUE;
+        }
+        long fraction = 0;
+        if (i < end) {
+            if (value.charAt(i) != '.') {
+                return Long.MIN_VALUE;
+            }
+            int fractionDigits = 0;
+            for (i++; i < end; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9' || ++fractionDigits > SCALE) {
+                    return Long.MIN_VALUE;
+                }
+                fraction = fraction * 10 + (c - '0');
+            }
+            if (fractionDigits == 0) {
+                return Long.MIN_VALUE;
+            }
+            if (fractionDigits == 1) {
+                fraction *= 10;
+            }
+        }
+        long cents = units * CENTS_PER_UNIT + fraction;
+        return negative ? -cents : cents;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.banking.model;
+
+import java.io.Serializable;
+
+// Outcome of a reconciliation run: rows read from the log, accounts checked and
+// how many of them did not match
+public class ReconciliationResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final long fromRow;
+    private final long toRow;
+    private final long accounts;
+    private final long discrepancies;
+    private final long elapsedNanos;
+    
+    public ReconciliationResult(long fromRow, long toRow, long accounts, long discrepancies, long elapsedNanos) {
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.accounts = accounts;
+        this.discrepancies = discrepancies;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    // Getters
+    public long getFromRow() { return fromRow; }
+    public long getToRow() { return toRow; }
+    public long getAccounts() { return accounts; }
+    public long getDiscrepancies() { return discrepancies; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    
+    // Log rows read per second of wall time
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (toRow - fromRow) * 1e9 / elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("rows=%d-%d accounts=%d discrepancies=%d seconds=%.3f rowsPerSecond=%.0f",
+            fromRow, toRow, accounts, discrepancies, elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.banking.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+// An account's activity over a run of days: balances at both ends, totals, and the
+// transactions themselves, oldest first. Amounts are in cents.
+public class Statement implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final String accountNumber;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long openingBalanceCents;
+    private final long closingBalanceCents;
+    private final long creditsCents;
+    private final long debitsCents;
+    private final long count;
+    private final List<Transaction> transactions;
+    
+    public Statement(String accountNumber, LocalDate from, LocalDate to, long openingBalanceCents,
+                     long closingBalanceCents, long creditsCents, long debitsCents, long count,
+                     List<Transaction> transactions) {
+        this.accountNumber = accountNumber;
+        this.from = from;
+        this.to = to;
+        this.openingBalanceCents = openingBalanceCents;
+        this.closingBalanceCents = closingBalanceCents;
+        this.creditsCents = creditsCents;
+        this.debitsCents = debitsCents;
+        this.count = count;
+        this.transactions = transactions;
+    }
+    
+    // Getters
+    public String getAccountNumber() { return accountNumber; }
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public long getOpeningBalanceCents() { return openingBalanceCents; }
+    public long getClosingBalanceCents() { return closingBalanceCents; }
+    public long getCreditsCents() { return creditsCents; }
+    public long getDebitsCents() { return debitsCents; }
+    public long getCount() { return count; }
+    public List<Transaction> getTransactions() { return transactions; }
+    
+    @Override
+    public String toString() {
+        return String.format("%s %s to %s: opening=%s credits=%s debits=%s closing=%s transactions=%d",
+            accountNumber, from, to, Money.format(openingBalanceCents), Money.format(creditsCents),
+            Money.format(debitsCents), Money.format(closingBalanceCents), count);
+    }
+}
\ No newline at end of file
@@ -1,52 +1,72 @@
-package com.banking.model;
-
-import java.io.Serializable;
-import java.time.LocalDateTime;
-
-public class Transaction implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
-    private String transactionId;
-    private String accountNumber;
-    private TransactionType type;
-    private double amount;
-    private LocalDateTime timestamp;
-    private String description;
-    
-    public enum TransactionType {
-        DEPOSIT, WITHDRAWAL
-    }
-    
-    public Transaction(String transactionId, String accountNumber, TransactionType type, 
-                      double amount, String description) {
-        this.transactionId = transactionId;
-        this.accountNumber = accountNumber;
-        this.type = type;
-        this.amount = amount;
-        this.timestamp = LocalDateTime.now();
-        this.description = description;
-    }
-    
-    // Getters
-    public String getTransactionId() { return transactionId; }
-    public String getAccountNumber() { return accountNumber; }
-    public TransactionType getType() { return type; }
-    public double getAmount() { return amount; }
-    public LocalDateTime getTimestamp() { return timestamp; }
-    public String getDescription() { return description; }
-    
-    @Override
-    public String toString() {
-        return transactionId + "," + accountNumber + "," + type + "," + amount + "," + 
-               timestamp + "," + description;
-    }
-    
-    public static Transaction fromString(String data) {
-        String[] parts = data.split(",", 6);
-        if (parts.length == 6) {
-            return new Transaction(parts[0], parts[1], TransactionType.valueOf(parts[2]), 
-                                 Double.parseDouble(parts[3]), parts[5]);
-        }
-        return null;
-    }
+package com.banking.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+public class Transaction implements Serializable {
+    private static final long serialVersionUID = 2L;
+    
+    private String transactionId;
+    private String accountNumber;
+    private TransactionType type;
+    private long amount; // cents
+    private LocalDateTime timestamp;
+    private String description;
+    
+    public enum TransactionType {
+        DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT, INTEREST;
+        
+        // True if the amount is added to the account's balance
+        public boolean isCredit() {
+            return this == DEPOSIT || this == TRANSFER_IN || this == INTEREST;
+        }
+    }
+    
+    // For subclasses that supply every getter themselves
+    protected Transaction() {
+    }
+    
+    public Transaction(String transactionId, String accountNumber, TransactionType type, 
+                      long amountCents, String description) {
+        this.transactionId = transactionId;
+        this.accountNumber = accountNumber;
+        this.type = type;
+        this.amount = amountCents;
+        this.timestamp = LocalDateTime.now();
+        this.description = description;
+    }
+    
+    public Transaction(String transactionId, String accountNumber, TransactionType type,
+                      long amountCents, LocalDateTime timestamp, String description) {
+        this.transactionId = transactionId;
+        this.accountNumber = accountNumber;
+        this.type = type;
+        this.amount = amountCents;
+        this.timestamp = timestamp;
+        this.description = description;
+    }
+    
+    // Getters
+    public String getTransactionId() { return transactionId; }
+    public String getAccountNumber() { return accountNumber; }
+    public TransactionType getType() { return type; }
+    public double getAmount() { return Money.toDouble(getAmountCents()); }
+    public long getAmountCents() { return amount; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public String getDescription() { return description; }
+    
+    @Override
+    public String toString() {
+        return getTransactionId() + "," + getAccountNumber() + "," + getType() + "," +
+               Money.format(getAmountCents()) + "," + getTimestamp() + "," + getDescription();
+    }
+    
+    public static Transaction fromString(String data) {
+        String[] parts = data.split(",", 6);
+        if (parts.length == 6) {
+            return new Transaction(parts[0], parts[1], TransactionType.valueOf(parts[2]), 
+                                 Money.parse(parts[3]), LocalDateTime.parse(parts[4]), parts[5]);
+        }
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.banking.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class TransactionPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // Cursor value meaning there are no further pages
+    public static final int END = -1;
+    
+    private final List<Transaction> transactions;
+    private final int nextCursor;
+    
+    public TransactionPage(List<Transaction> transactions, int nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters
+    public List<Transaction> getTransactions() { return transactions; }
+    public int getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != END; }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.banking.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs password hashing on a fixed, bounded pool so that a burst of logins can use
+// at most the configured number of cores. When the queue is full new requests are
+// rejected with a RejectedExecutionException instead of piling up, so callers can
+// tell a busy server from a wrong password.
+public class HashingEngine {
+    private final ThreadPoolExecutor executor;
+    
+    public HashingEngine() {
+        this(Integer.getInteger("banking.hash.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+            Integer.getInteger("banking.hash.queue", 256));
+    }
+    
+    public HashingEngine(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "password-hasher-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    public String hash(String password, String salt) {
+        return call(() -> PasswordHasher.hashPassword(password, salt));
+    }
+    
+    // False for a wrong password, or if the calling thread is interrupted
+    public boolean verify(String password, String salt, String expectedHash) {
+        Boolean result = call(() -> PasswordHasher.verifyPassword(password, salt, expectedHash));
+        return result != null && result;
+    }
+    
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    private <T> T call(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new RejectedExecutionException("Password hashing is saturated", e);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
\ No newline at end of file
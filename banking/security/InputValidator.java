@@ -1,39 +1,61 @@
-package com.banking.security;
-
-import java.util.regex.Pattern;
-
-public class InputValidator {
-    private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_]{3,20}$");
-    private static final Pattern ACCOUNT_NUMBER_PATTERN = Pattern.compile("^ACC\\d{6}$");
-    private static final Pattern AMOUNT_PATTERN = Pattern.compile("^\\d+(\\.\\d{1,2})?$");
-    
-    public static boolean isValidUsername(String username) {
-        return username != null && USERNAME_PATTERN.matcher(username).matches();
-    }
-    
-    public static boolean isValidPassword(String password) {
-        return password != null && password.length() >= 8;
-    }
-    
-    public static boolean isValidAccountNumber(String accountNumber) {
-        return accountNumber != null && ACCOUNT_NUMBER_PATTERN.matcher(accountNumber).matches();
-    }
-    
-    public static boolean isValidAmount(String amount) {
-        if (amount == null) return false;
-        if (!AMOUNT_PATTERN.matcher(amount).matches()) return false;
-        
-        try {
-            double value = Double.parseDouble(amount);
-            return value > 0 && value <= 1000000; // Reasonable limit
-        } catch (NumberFormatException e) {
-            return false;
-        }
-    }
-    
-    public static String sanitizeInput(String input) {
-        if (input == null) return null;
-        // Remove potential XSS vectors
-        return input.replaceAll("[<>\"']", "");
-    }
+package com.banking.security;
+
+import com.banking.model.Money;
+
+import java.util.regex.Pattern;
+
+public class InputValidator {
+    private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_]{3,20}$");
+    private static final Pattern ACCOUNT_NUMBER_PATTERN = Pattern.compile("^ACC\\d{6}$");
+    private static final long MAX_AMOUNT_CENTS = 1000000 * Money.CENTS_PER_UNIT; // Reasonable limit
+    
+    public static boolean isValidUsername(String username) {
+        return username != null && USERNAME_PATTERN.matcher(username).matches();
+    }
+    
+    public static boolean isValidPassword(String password) {
+        return password != null && password.length() >= 8;
+    }
+    
+    public static boolean isValidAccountNumber(String accountNumber) {
+        return accountNumber != null && ACCOUNT_NUMBER_PATTERN.matcher(accountNumber).matches();
+    }
+    
+    public static boolean isValidAmount(String amount) {
+        return parseAmountCents(amount) > 0;
+    }
+    
+    // Parses digits with an optional one or two digit fraction straight into cents.
+    // Returns -1 if the amount is malformed, not positive or above the limit.
+    public static long parseAmountCents(String amount) {
+        if (amount == null || amount.isEmpty() || amount.charAt(0) == '-') return -1;
+        
+        long cents = Money.parsePlain(amount, 0, amount.length());
+        if (cents <= 0 || cents > MAX_AMOUNT_CENTS) return -1;
+        return cents;
+    }
+    
+    public static String sanitizeInput(String input) {
+        if (input == null) return null;
+        // Remove potential XSS vectors; clean input is returned as-is
+        int first = 0;
+        while (first < input.length() && !isUnsafe(input.charAt(first))) {
+            first++;
+        }
+        if (first == input.length()) return input;
+        
+        StringBuilder builder = new StringBuilder(input.length());
+        builder.append(input, 0, first);
+        for (int i = first + 1; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (!isUnsafe(c)) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+    
+    private static boolean isUnsafe(char c) {
+        return c == '<' || c == '>' || c == '"' || c == '\'';
+    }
 }
\ No newline at end of file
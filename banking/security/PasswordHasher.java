@@ -1,38 +1,121 @@
-package com.banking.security;
-
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.Base64;
-
-public class PasswordHasher {
-    private static final String ALGORITHM = "SHA-256";
-    private static final int SALT_LENGTH = 16;
-    
-    public static String generateSalt() {
-        SecureRandom random = new SecureRandom();
-        byte[] salt = new byte[SALT_LENGTH];
-        random.nextBytes(salt);
-        return Base64.getEncoder().encodeToString(salt);
-    }
-    
-    public static String hashPassword(String password, String salt) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
-            digest.reset();
-            digest.update(Base64.getDecoder().decode(salt));
-            byte[] hash = digest.digest(password.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Password hashing algorithm not available", e);
-        }
-    }
-    
-    public static boolean verifyPassword(String password, String salt, String expectedHash) {
-        String actualHash = hashPassword(password, salt);
-        return MessageDigest.isEqual(
-            Base64.getDecoder().decode(actualHash),
-            Base64.getDecoder().decode(expectedHash)
-        );
-    }
+package com.banking.security;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Password hashes are stored as "pbkdf2-sha256$<iterations>$<base64 key>". Hashes
+// without that prefix are the original salted SHA-256 digests; they still verify
+// and needsRehash reports them so they can be upgraded on the next login.
+public class PasswordHasher {
+    private static final String LEGACY_ALGORITHM = "SHA-256";
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PBKDF2_PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_BITS = 256;
+    
+    // Work factor for new hashes; raise it as hardware gets faster
+    private static volatile int iterations = Integer.getInteger("banking.pbkdf2.iterations", 100000);
+    
+    // Digest, key factory and random generator instances are reused per thread
+    private static final ThreadLocal<MessageDigest> LEGACY_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(LEGACY_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Password hashing algorithm not available", e);
+        }
+    });
+    private static final ThreadLocal<SecretKeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Password hashing algorithm not available", e);
+        }
+    });
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+    
+    public static int getIterations() {
+        return iterations;
+    }
+    
+    public static void setIterations(int newIterations) {
+        if (newIterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        iterations = newIterations;
+    }
+    
+    public static String generateSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.get().nextBytes(salt);
+        return Base64.getEncoder().encodeToString(salt);
+    }
+    
+    public static String hashPassword(String password, String salt) {
+        return hashPassword(password, salt, iterations);
+    }
+    
+    public static String hashPassword(String password, String salt, int iterations) {
+        return PBKDF2_PREFIX + iterations + "$"
+            + Base64.getEncoder().encodeToString(pbkdf2(password, salt, iterations));
+    }
+    
+    public static String hashPasswordLegacy(String password, String salt) {
+        return Base64.getEncoder().encodeToString(legacyDigest(password, salt));
+    }
+    
+    public static boolean verifyPassword(String password, String salt, String expectedHash) {
+        byte[] expected;
+        byte[] actual;
+        try {
+            if (expectedHash.startsWith(PBKDF2_PREFIX)) {
+                int separator = expectedHash.indexOf('$', PBKDF2_PREFIX.length());
+                int storedIterations = Integer.parseInt(expectedHash.substring(PBKDF2_PREFIX.length(), separator));
+                expected = Base64.getDecoder().decode(expectedHash.substring(separator + 1));
+                actual = pbkdf2(password, salt, storedIterations);
+            } else {
+                expected = Base64.getDecoder().decode(expectedHash);
+                actual = legacyDigest(password, salt);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return false; // Malformed stored hash
+        }
+        return MessageDigest.isEqual(actual, expected);
+    }
+    
+    // True for legacy SHA-256 hashes and PBKDF2 hashes below the current work factor
+    public static boolean needsRehash(String storedHash) {
+        if (!storedHash.startsWith(PBKDF2_PREFIX)) {
+            return true;
+        }
+        int separator = storedHash.indexOf('$', PBKDF2_PREFIX.length());
+        try {
+            return Integer.parseInt(storedHash.substring(PBKDF2_PREFIX.length(), separator)) < iterations;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return true;
+        }
+    }
+    
+    private static byte[] pbkdf2(String password, String salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), Base64.getDecoder().decode(salt),
+            iterations, KEY_BITS);
+        try {
+            return KEY_FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Password hashing failed", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+    
+    private static byte[] legacyDigest(String password, String salt) {
+        MessageDigest digest = LEGACY_DIGEST.get();
+        digest.reset();
+        digest.update(Base64.getDecoder().decode(salt));
+        return digest.digest(password.getBytes());
+    }
 }
\ No newline at end of file
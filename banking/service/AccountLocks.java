@@ -0,0 +1,50 @@
+package com.banking.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Striped locks over account numbers. Every posting holds its account's stripe from
+// the balance change until its row is appended, so a reader holding the stripe sees
+// a balance its rows explain. Whoever needs several stripes takes them lowest first,
+// so two holders cannot deadlock.
+final class AccountLocks {
+    // Number of stripes, a power of two
+    private static final int STRIPES = 256;
+    
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    
+    AccountLocks() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    ReentrantLock lockFor(String accountNumber) {
+        return locks[stripeOf(accountNumber)];
+    }
+    
+    // Locks the stripes of all the accounts; pass the result to unlockAll
+    int[] lockAll(List<String> accountNumbers) {
+        int[] stripes = new int[accountNumbers.size()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = stripeOf(accountNumbers.get(i));
+        }
+        stripes = Arrays.stream(stripes).sorted().distinct().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+    
+    void unlockAll(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+    
+    private static int stripeOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,347 @@
+package com.banking.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+// Daily and monthly totals of one account's transactions, its running balance
+// after each of its rows, and its rows sorted by timestamp. TransactionStore builds
+// it from the account's history the first time it is asked for and adds every
+// later row as it is appended while it stays in the store's cache, so a statement or a time-range query costs a
+// binary search plus the size of the result instead of a scan of the history.
+//
+// Copy-on-write: every append publishes a new immutable State, so readers take no
+// lock and an append never waits for a reader. The arrays are append-only and
+// shared between versions; a version only reads its own first count entries. Only a
+// row that lands before the last one in time (a backdated posting, or two postings
+// to the account racing) copies the arrays it changes.
+//
+// Everything can be read as of a commit sequence number (see ReadView): rows at or
+// after it are taken back out, newest first.
+public class AccountRollup {
+    
+    // Totals of a run of days or months; opening and closing are the balances
+    // before its first and after its last transaction
+    public static final class Period {
+        private final long opening;
+        private final long closing;
+        private final long credits;
+        private final long debits;
+        private final long count;
+        
+        Period(long opening, long closing, long credits, long debits, long count) {
+            this.opening = opening;
+            this.closing = closing;
+            this.credits = credits;
+            this.debits = debits;
+            this.count = count;
+        }
+        
+        // Getters
+        public long getOpeningCents() { return opening; }
+        public long getClosingCents() { return closing; }
+        public long getCreditsCents() { return credits; }
+        public long getDebitsCents() { return debits; }
+        public long getCount() { return count; }
+        
+        private Period plus(long signedCents) {
+            return new Period(opening, closing + signedCents, credits + Math.max(0, signedCents),
+                debits + Math.max(0, -signedCents), count + 1);
+        }
+    }
+    
+    // Periods in key order. The last one changes with almost every row, so it is held
+    // outside the shared arrays and replaced; the arrays are only appended to.
+    private static final class Periods {
+        final long[] keys;
+        final Period[] periods;
+        final int count;
+        final long lastKey;
+        final Period last;
+        
+        Periods(long[] keys, Period[] periods, int count, long lastKey, Period last) {
+            this.keys = keys;
+            this.periods = periods;
+            this.count = count;
+            this.lastKey = lastKey;
+            this.last = last;
+        }
+        
+        Periods add(long key, long signedCents) {
+            if (last == null) {
+                return new Periods(keys, periods, 0, key, new Period(0, 0, 0, 0, 0).plus(signedCents));
+            }
+            if (key == lastKey) {
+                return new Periods(keys, periods, count, key, last.plus(signedCents));
+            }
+            if (key > lastKey) {
+                long[] newKeys = keys;
+                Period[] newPeriods = periods;
+                if (count == keys.length) {
+                    newKeys = Arrays.copyOf(keys, Math.max(4, count * 2));
+                    newPeriods = Arrays.copyOf(periods, newKeys.length);
+                }
+                newKeys[count] = lastKey;
+                newPeriods[count] = last;
+                return new Periods(newKeys, newPeriods, count + 1, key,
+                    new Period(last.closing, last.closing, 0, 0, 0).plus(signedCents));
+            }
+            
+            // Backdated: rebuild with the row added and every later closing moved
+            long[] all = Arrays.copyOf(keys, count + 2);
+            Period[] values = Arrays.copyOf(periods, count + 2);
+            int size = count;
+            all[size] = lastKey;
+            values[size++] = last;
+            int at = Arrays.binarySearch(all, 0, size, key);
+            if (at < 0) {
+                at = -at - 1;
+                long opening = at == 0 ? 0 : values[at - 1].closing;
+                System.arraycopy(all, at, all, at + 1, size - at);
+                System.arraycopy(values, at, values, at + 1, size - at);
+                all[at] = key;
+                values[at] = new Period(opening, opening, 0, 0, 0);
+                size++;
+            }
+            values[at] = values[at].plus(signedCents);
+            for (int i = at + 1; i < size; i++) {
+                Period p = values[i];
+                values[i] = new Period(p.opening + signedCents, p.closing + signedCents, p.credits, p.debits,
+                    p.count);
+            }
+            return new Periods(all, values, size - 1, all[size - 1], values[size - 1]);
+        }
+        
+        // Totals of the periods with from <= key <= to
+        Period sum(long from, long to) {
+            int size = last == null ? 0 : count + 1;
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (key(middle) < from) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            long opening = low == 0 ? 0 : period(low - 1).closing;
+            long closing = opening;
+            long credits = 0;
+            long debits = 0;
+            long rows = 0;
+            for (int i = low; i < size && key(i) <= to; i++) {
+                Period period = period(i);
+                credits += period.credits;
+                debits += period.debits;
+                rows += period.count;
+                closing = period.closing;
+            }
+            return new Period(opening, closing, credits, debits, rows);
+        }
+        
+        private long key(int i) {
+            return i < count ? keys[i] : lastKey;
+        }
+        
+        private Period period(int i) {
+            return i < count ? periods[i] : last;
+        }
+    }
+    
+    private static final class State {
+        // Balance before the first row, for accounts that were imported with one
+        final long base;
+        // The account's rows in commit order, their timestamps and the running balance
+        // after each, without base
+        final int[] rowOrder;
+        final long[] rowTimes;
+        final long[] running;
+        final int count;
+        // The same rows ordered by timestamp, then row
+        final long[] times;
+        final int[] rows;
+        final Periods days;
+        final Periods months;
+        
+        State(long base, int[] rowOrder, long[] rowTimes, long[] running, int count, long[] times, int[] rows,
+              Periods days, Periods months) {
+            this.base = base;
+            this.rowOrder = rowOrder;
+            this.rowTimes = rowTimes;
+            this.running = running;
+            this.count = count;
+            this.times = times;
+            this.rows = rows;
+            this.days = days;
+            this.months = months;
+        }
+        
+        // Index of the first row at or after sequence in commit order
+        int firstAtOrAfter(long sequence) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (rowOrder[middle] < sequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+    
+    private static final long MICROS_PER_DAY = 86400L * 1000000L;
+    private static final Periods NO_PERIODS = new Periods(new long[0], new Period[0], 0, 0, null);
+    
+    private volatile State state = new State(0, new int[8], new long[8], new long[8], 0, new long[8], new int[8],
+        NO_PERIODS, NO_PERIODS);
+    
+    // Rows must arrive in ascending order; the caller serializes appends
+    void add(int row, long timestampMicros, long signedCents) {
+        State current = state;
+        int count = current.count;
+        int[] rowOrder = current.rowOrder;
+        long[] rowTimes = current.rowTimes;
+        long[] running = current.running;
+        long[] times = current.times;
+        int[] rows = current.rows;
+        if (count == rowOrder.length) {
+            rowOrder = Arrays.copyOf(rowOrder, count * 2);
+            rowTimes = Arrays.copyOf(rowTimes, count * 2);
+            running = Arrays.copyOf(running, count * 2);
+            times = Arrays.copyOf(times, count * 2);
+            rows = Arrays.copyOf(rows, count * 2);
+        }
+        rowOrder[count] = row;
+        rowTimes[count] = timestampMicros;
+        running[count] = (count == 0 ? 0 : running[count - 1]) + signedCents;
+        
+        int at = count;
+        while (at > 0 && times[at - 1] > timestampMicros) {
+            at--;
+        }
+        if (at < count) {
+            // Entries move, so older versions must keep their own copy
+            if (times == current.times) {
+                times = times.clone();
+                rows = rows.clone();
+            }
+            System.arraycopy(times, at, times, at + 1, count - at);
+            System.arraycopy(rows, at, rows, at + 1, count - at);
+        }
+        times[at] = timestampMicros;
+        rows[at] = row;
+        
+        long day = Math.floorDiv(timestampMicros, MICROS_PER_DAY);
+        LocalDate date = LocalDate.ofEpochDay(day);
+        state = new State(current.base, rowOrder, rowTimes, running, count + 1, times, rows,
+            current.days.add(day, signedCents), current.months.add(monthKey(YearMonth.from(date)), signedCents));
+    }
+    
+    // Sets the balance before the first row; only before the rollup is published
+    void setBase(long baseCents) {
+        State s = state;
+        state = new State(baseCents, s.rowOrder, s.rowTimes, s.running, s.count, s.times, s.rows, s.days,
+            s.months);
+    }
+    
+    // Sum of the rows, without base
+    long getTotal() {
+        State s = state;
+        return s.count == 0 ? 0 : s.running[s.count - 1];
+    }
+    
+    private static long monthKey(YearMonth month) {
+        return month.getYear() * 12L + month.getMonthValue() - 1;
+    }
+    
+    // Balance after every row committed before sequence
+    public long getBalanceCents(long sequence) {
+        State s = state;
+        int end = s.firstAtOrAfter(sequence);
+        return s.base + (end == 0 ? 0 : s.running[end - 1]);
+    }
+    
+    // Totals of the days from to to, inclusive
+    public Period getDays(LocalDate from, LocalDate to) {
+        return getDays(from, to, Long.MAX_VALUE);
+    }
+    
+    public Period getDays(LocalDate from, LocalDate to, long sequence) {
+        State s = state;
+        return asOf(s, s.days.sum(from.toEpochDay(), to.toEpochDay()), from.toEpochDay(), to.toEpochDay(),
+            sequence);
+    }
+    
+    public Period getMonth(YearMonth month) {
+        return getMonth(month, Long.MAX_VALUE);
+    }
+    
+    public Period getMonth(YearMonth month, long sequence) {
+        State s = state;
+        return asOf(s, s.months.sum(monthKey(month), monthKey(month)), month.atDay(1).toEpochDay(),
+            month.atEndOfMonth().toEpochDay(), sequence);
+    }
+    
+    // Adds base and takes out the rows committed at or after sequence, newest first
+    private static Period asOf(State s, Period now, long fromDay, long toDay, long sequence) {
+        long opening = now.opening + s.base;
+        long closing = now.closing + s.base;
+        long credits = now.credits;
+        long debits = now.debits;
+        long count = now.count;
+        for (int i = s.count - 1; i >= 0 && s.rowOrder[i] >= sequence; i--) {
+            long signed = s.running[i] - (i == 0 ? 0 : s.running[i - 1]);
+            long day = Math.floorDiv(s.rowTimes[i], MICROS_PER_DAY);
+            if (day > toDay) {
+                continue;
+            }
+            closing -= signed;
+            if (day < fromDay) {
+                opening -= signed;
+            } else {
+                credits -= Math.max(0, signed);
+                debits -= Math.max(0, -signed);
+                count--;
+            }
+        }
+        return new Period(opening, closing, credits, debits, count);
+    }
+    
+    // Rows with fromMicros <= timestamp < toMicros, oldest first
+    public int[] getRowsBetween(long fromMicros, long toMicros) {
+        return getRowsBetween(fromMicros, toMicros, Long.MAX_VALUE);
+    }
+    
+    // The same, only rows committed before sequence
+    public int[] getRowsBetween(long fromMicros, long toMicros, long sequence) {
+        State s = state;
+        int start = lowerBound(s, fromMicros);
+        int end = Math.max(start, lowerBound(s, toMicros));
+        int[] result = new int[end - start];
+        int size = 0;
+        for (int i = start; i < end; i++) {
+            if (s.rows[i] < sequence) {
+                result[size++] = s.rows[i];
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+    
+    private static int lowerBound(State s, long micros) {
+        int low = 0;
+        int high = s.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (s.times[middle] < micros) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
\ No newline at end of file
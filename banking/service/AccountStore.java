@@ -0,0 +1,381 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Accounts in a fixed-slot table, data/accounts.bin, mapped into memory so only the
+// pages of recently used accounts stay resident. ACC100000-ACC999999 map straight to
+// a slot. Balances are updated in place with compare-and-set, so the Account objects
+// handed out are views that can be dropped at any time; a bounded LRU cache keeps
+// the views of active accounts so their fields are decoded once.
+//
+// The table is a working copy. It is rebuilt from the snapshot and journal at
+// startup and written into the snapshot at each checkpoint. Each owner's accounts
+// are linked through their slots, starting from the owner's UserStore entry.
+//
+// Slot layout (128 bytes, big-endian):
+//   0  byte  1 if the slot holds an account
+//   1  byte  account type ordinal
+//   2  short username length in bytes
+//   8  long  balance in cents
+//   16 long  created at, microseconds since the epoch in UTC
+//   24 long  first ledger record of the account's history, or -1
+//   32 long  last ledger record of the account's history, or -1
+//   40 int   slot of the owner's next account, or -1
+//   44       username, UTF-8
+public class AccountStore {
+    public static final String TABLE_FILE = "accounts.bin";
+    
+    private static final int SLOT_SIZE = 128;
+    private static final int USED = 0;
+    private static final int TYPE = 1;
+    private static final int NAME_LENGTH = 2;
+    private static final int BALANCE = 8;
+    private static final int CREATED = 16;
+    private static final int FIRST_ROW = 24;
+    private static final int LAST_ROW = 32;
+    private static final int NEXT_OWNED = 40;
+    private static final int NAME = 44;
+    private static final int MAX_NAME_BYTES = SLOT_SIZE - NAME;
+    private static final int CACHE_SEGMENTS = 16;
+    private static final Account.AccountType[] TYPES = Account.AccountType.values();
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    
+    // Account backed by a slot of the table
+    private final class Slot extends Account {
+        private static final long serialVersionUID = 1L;
+        
+        private final String accountNumber;
+        private final String username;
+        private final AccountType type;
+        private final LocalDateTime createdAt;
+        private final int balanceOffset;
+        
+        private Slot(String accountNumber, String username, AccountType type, LocalDateTime createdAt,
+                     int slotOffset) {
+            this.accountNumber = accountNumber;
+            this.username = username;
+            this.type = type;
+            this.createdAt = createdAt;
+            this.balanceOffset = slotOffset + BALANCE;
+        }
+        
+        @Override public String getAccountNumber() { return accountNumber; }
+        @Override public String getUsername() { return username; }
+        @Override public AccountType getType() { return type; }
+        @Override public LocalDateTime getCreatedAt() { return createdAt; }
+        
+        @Override
+        public long getBalanceCents() {
+            return (long) LONGS.getVolatile(table, balanceOffset);
+        }
+        
+        @Override
+        public void deposit(long amountCents) {
+            if (amountCents > 0) {
+                LONGS.getAndAdd(table, balanceOffset, amountCents);
+            }
+        }
+        
+        @Override
+        public boolean withdraw(long amountCents) {
+            if (amountCents <= 0) {
+                return false;
+            }
+            long current;
+            do {
+                current = getBalanceCents();
+                if (amountCents > current) {
+                    return false;
+                }
+            } while (!LONGS.compareAndSet(table, balanceOffset, current, current - amountCents));
+            return true;
+        }
+        
+        @Override
+        public void adjustBalance(long deltaCents) {
+            LONGS.getAndAdd(table, balanceOffset, deltaCents);
+        }
+        
+        // Serialized as a plain Account, the table stays behind
+        private Object writeReplace() throws ObjectStreamException {
+            return new Account(accountNumber, username, type, getBalanceCents(), createdAt);
+        }
+    }
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final BitSet used = new BitSet(IdGenerator.ACCOUNT_SPACE); // guarded by this
+    // Accounts whose number or username does not fit a slot, with their ledger rows
+    private final Map<String, Account> overflow = new ConcurrentHashMap<>();
+    private final Map<String, long[]> overflowRows = new ConcurrentHashMap<>();
+    private final List<Map<String, Account>> cache = new ArrayList<>(CACHE_SEGMENTS);
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public AccountStore(Path directory, int capacity) throws IOException {
+        this.capacity = capacity;
+        int segmentCapacity = Math.max(1, capacity / CACHE_SEGMENTS);
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            cache.add(new LinkedHashMap<String, Account>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Account> eldest) {
+                    return size() > segmentCapacity;
+                }
+            });
+        }
+        this.channel = FileChannel.open(directory.resolve(TABLE_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Start from an empty (sparse) table; the caller loads the durable state into it
+        channel.truncate(0);
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) IdGenerator.ACCOUNT_SPACE * SLOT_SIZE);
+    }
+    
+    // Adds an account unless one with the same number exists; returns false if it does
+    public synchronized boolean insert(Account account) {
+        return insert(account, -1, -1);
+    }
+    
+    public synchronized boolean insert(Account account, long firstLedgerRow, long lastLedgerRow) {
+        String accountNumber = account.getAccountNumber();
+        int slot = IdGenerator.accountOffset(accountNumber);
+        byte[] name = account.getUsername().getBytes(StandardCharsets.UTF_8);
+        if (slot < 0 || name.length > MAX_NAME_BYTES) {
+            if (overflow.containsKey(accountNumber) || (slot >= 0 && used.get(slot))) {
+                return false;
+            }
+            overflow.put(accountNumber, new Account(accountNumber, account.getUsername(), account.getType(),
+                account.getBalanceCents(), account.getCreatedAt()));
+            overflowRows.put(accountNumber, new long[] {firstLedgerRow, lastLedgerRow});
+            return true;
+        }
+        if (used.get(slot) || overflow.containsKey(accountNumber)) {
+            return false;
+        }
+        int offset = slot * SLOT_SIZE;
+        table.put(offset + TYPE, (byte) account.getType().ordinal());
+        table.putShort(offset + NAME_LENGTH, (short) name.length);
+        table.put(offset + NAME, name);
+        table.putLong(offset + BALANCE, account.getBalanceCents());
+        table.putLong(offset + CREATED, BinaryLedger.toMicros(account.getCreatedAt()));
+        table.putLong(offset + FIRST_ROW, firstLedgerRow);
+        table.putLong(offset + LAST_ROW, lastLedgerRow);
+        table.putInt(offset + NEXT_OWNED, -1);
+        // Readers check the flag before anything else in the slot
+        VarHandle.releaseFence();
+        table.put(offset + USED, (byte) 1);
+        used.set(slot);
+        return true;
+    }
+    
+    // The account with this number, or null
+    public Account get(String accountNumber) {
+        Account account = overflow.get(accountNumber);
+        if (account != null) {
+            return account;
+        }
+        int slot = IdGenerator.accountOffset(accountNumber);
+        if (slot < 0) {
+            return null;
+        }
+        Map<String, Account> segment = cache.get(slot & (CACHE_SEGMENTS - 1));
+        synchronized (segment) {
+            account = segment.get(accountNumber);
+        }
+        if (account != null) {
+            hits.increment();
+            return account;
+        }
+        misses.increment();
+        account = read(accountNumber, slot);
+        if (account != null) {
+            synchronized (segment) {
+                segment.put(accountNumber, account);
+            }
+        }
+        return account;
+    }
+    
+    private Account read(String accountNumber, int slot) {
+        int offset = slot * SLOT_SIZE;
+        if (table.get(offset + USED) == 0) {
+            return null;
+        }
+        VarHandle.acquireFence();
+        byte[] name = new byte[table.getShort(offset + NAME_LENGTH)];
+        table.get(offset + NAME, name);
+        return new Slot(accountNumber, new String(name, StandardCharsets.UTF_8), TYPES[table.get(offset + TYPE)],
+            BinaryLedger.fromMicros(table.getLong(offset + CREATED)), offset);
+    }
+    
+    // Calls the action for every account, in account number order, without caching them
+    public void forEach(Consumer<Account> action) {
+        forEach(total -> { }, action);
+    }
+    
+    // Calls total with the number of accounts, then the action for each of them; both
+    // see the same accounts, those that existed when the call began
+    public void forEach(IntConsumer total, Consumer<Account> action) {
+        BitSet slots;
+        List<Account> outside;
+        synchronized (this) {
+            slots = (BitSet) used.clone();
+            outside = new ArrayList<>(overflow.values());
+        }
+        total.accept(slots.cardinality() + outside.size());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            action.accept(read(IdGenerator.accountNumber(slot), slot));
+        }
+        outside.forEach(action);
+    }
+    
+    // The account's slot, or -1 if it is kept outside the table
+    public int slotOf(String accountNumber) {
+        int slot = IdGenerator.accountOffset(accountNumber);
+        if (slot < 0 || overflow.containsKey(accountNumber) || table.get(slot * SLOT_SIZE + USED) == 0) {
+            return -1;
+        }
+        return slot;
+    }
+    
+    // Slot of the owner's account after the one in this slot, or -1
+    public int getNextOwnedSlot(int slot) {
+        return (int) INTS.getVolatile(table, slot * SLOT_SIZE + NEXT_OWNED);
+    }
+    
+    public void setNextOwnedSlot(int slot, int nextSlot) {
+        INTS.setVolatile(table, slot * SLOT_SIZE + NEXT_OWNED, nextSlot);
+    }
+    
+    // When the account in a used slot was opened, in microseconds since the epoch
+    public long getCreatedMicros(int slot) {
+        return table.getLong(slot * SLOT_SIZE + CREATED);
+    }
+    
+    // Slots are numbered from 0 to getSlotCount() - 1; forEach(from, to, ...) covers a range
+    public int getSlotCount() {
+        return IdGenerator.ACCOUNT_SPACE;
+    }
+    
+    // Calls the action for every account of the given type in slots [fromSlot, toSlot),
+    // without caching them. Other types are skipped before their names are decoded.
+    public void forEach(int fromSlot, int toSlot, Account.AccountType type, Consumer<Account> action) {
+        BitSet slots;
+        synchronized (this) {
+            slots = used.get(fromSlot, toSlot);
+        }
+        for (int i = slots.nextSetBit(0); i >= 0; i = slots.nextSetBit(i + 1)) {
+            int slot = fromSlot + i;
+            if (table.get(slot * SLOT_SIZE + TYPE) == type.ordinal()) {
+                action.accept(read(IdGenerator.accountNumber(slot), slot));
+            }
+        }
+    }
+    
+    // The same for the accounts kept outside the table
+    public void forEachOverflow(Account.AccountType type, Consumer<Account> action) {
+        for (Account account : overflow.values()) {
+            if (account.getType() == type) {
+                action.accept(account);
+            }
+        }
+    }
+    
+    // The accounts of one owner kept outside the table; there are few of them
+    public void forEachOverflowOwnedBy(String username, Consumer<Account> action) {
+        for (Account account : overflow.values()) {
+            if (account.getUsername().equals(username)) {
+                action.accept(account);
+            }
+        }
+    }
+    
+    // Slots holding an account at the time of the call
+    public synchronized BitSet getUsedSlots() {
+        return (BitSet) used.clone();
+    }
+    
+    // Balance of the account in a used slot
+    public long getBalanceCents(int slot) {
+        return (long) LONGS.getVolatile(table, slot * SLOT_SIZE + BALANCE);
+    }
+    
+    // Every account kept outside the table
+    public void forEachOverflow(Consumer<Account> action) {
+        overflow.values().forEach(action);
+    }
+    
+    public synchronized int size() {
+        return used.cardinality() + overflow.size();
+    }
+    
+    // First and last ledger record of the account's history, -1 if it has none yet
+    public long getFirstLedgerRow(String accountNumber) {
+        return ledgerRow(accountNumber, FIRST_ROW, 0);
+    }
+    
+    public long getLastLedgerRow(String accountNumber) {
+        return ledgerRow(accountNumber, LAST_ROW, 1);
+    }
+    
+    private long ledgerRow(String accountNumber, int field, int overflowIndex) {
+        long[] rows = overflowRows.get(accountNumber);
+        if (rows != null) {
+            return rows[overflowIndex];
+        }
+        int slot = IdGenerator.accountOffset(accountNumber);
+        if (slot < 0 || table.get(slot * SLOT_SIZE + USED) == 0) {
+            return -1;
+        }
+        return (long) LONGS.getVolatile(table, slot * SLOT_SIZE + field);
+    }
+    
+    // Only the checkpoint, which links ledger records, moves these
+    public void setLedgerRows(String accountNumber, long firstLedgerRow, long lastLedgerRow) {
+        if (overflowRows.containsKey(accountNumber)) {
+            overflowRows.put(accountNumber, new long[] {firstLedgerRow, lastLedgerRow});
+            return;
+        }
+        int slot = IdGenerator.accountOffset(accountNumber);
+        if (slot >= 0) {
+            LONGS.setVolatile(table, slot * SLOT_SIZE + FIRST_ROW, firstLedgerRow);
+            LONGS.setVolatile(table, slot * SLOT_SIZE + LAST_ROW, lastLedgerRow);
+        }
+    }
+    
+    public CacheStats getCacheStats() {
+        int cached = 0;
+        for (Map<String, Account> segment : cache) {
+            synchronized (segment) {
+                cached += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), cached, capacity);
+    }
+    
+    public void close() throws IOException {
+        channel.close();
+    }
+}
\ No newline at end of file
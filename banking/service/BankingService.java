@@ -1,196 +1,947 @@
-package com.banking.service;
-
-import com.banking.model.*;
-import com.banking.security.PasswordHasher;
-import com.banking.security.InputValidator;
-
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Random;
-
-public class BankingService {
-    private List<User> users;
-    private List<Account> accounts;
-    private List<Transaction> transactions;
-    private FileDataService dataService;
-    private User currentUser;
-    
-    public BankingService() {
-        this.dataService = new FileDataService();
-        loadAllData();
-    }
-    
-    private void loadAllData() {
-        this.users = dataService.loadUsers();
-        this.accounts = dataService.loadAccounts();
-        this.transactions = dataService.loadTransactions();
-    }
-    
-    private void saveAllData() {
-        dataService.saveUsers(users);
-        dataService.saveAccounts(accounts);
-        dataService.saveTransactions(transactions);
-    }
-    
-    public boolean registerUser(String username, String password) {
-        // Input validation
-        if (!InputValidator.isValidUsername(username) || 
-            !InputValidator.isValidPassword(password)) {
-            return false;
-        }
-        
-        // Check if username already exists
-        if (users.stream().anyMatch(u -> u.getUsername().equals(username))) {
-            return false;
-        }
-        
-        // Create new user with hashed password
-        String salt = PasswordHasher.generateSalt();
-        String passwordHash = PasswordHasher.hashPassword(password, salt);
-        User newUser = new User(username, passwordHash, salt);
-        
-        users.add(newUser);
-        saveAllData();
-        return true;
-    }
-    
-    public boolean login(String username, String password) {
-        // Input validation
-        if (!InputValidator.isValidUsername(username)) {
-            return false;
-        }
-        
-        Optional<User> userOpt = users.stream()
-            .filter(u -> u.getUsername().equals(username) && u.isActive())
-            .findFirst();
-            
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            if (PasswordHasher.verifyPassword(password, user.getSalt(), user.getPasswordHash())) {
-                currentUser = user;
-                return true;
-            }
-        }
-        return false;
-    }
-    
-    public void logout() {
-        currentUser = null;
-    }
-    
-    public User getCurrentUser() {
-        return currentUser;
-    }
-    
-    public String createAccount(Account.AccountType type) {
-        if (currentUser == null) {
-            throw new IllegalStateException("User not logged in");
-        }
-        
-        String accountNumber = generateAccountNumber();
-        Account newAccount = new Account(accountNumber, currentUser.getUsername(), type);
-        accounts.add(newAccount);
-        saveAllData();
-        
-        return accountNumber;
-    }
-    
-    private String generateAccountNumber() {
-        Random random = new Random();
-        int number = random.nextInt(900000) + 100000; // 6-digit number
-        return "ACC" + number;
-    }
-    
-    public Optional<Account> getAccount(String accountNumber) {
-        if (currentUser == null) {
-            return Optional.empty();
-        }
-        
-        return accounts.stream()
-            .filter(a -> a.getAccountNumber().equals(accountNumber) && 
-                        a.getUsername().equals(currentUser.getUsername()))
-            .findFirst();
-    }
-    
-    public boolean deposit(String accountNumber, double amount) {
-        if (currentUser == null || amount <= 0) {
-            return false;
-        }
-        
-        Optional<Account> accountOpt = getAccount(accountNumber);
-        if (accountOpt.isPresent()) {
-            Account account = accountOpt.get();
-            account.deposit(amount);
-            
-            // Record transaction
-            String transactionId = "TXN" + System.currentTimeMillis();
-            Transaction transaction = new Transaction(transactionId, accountNumber, 
-                Transaction.TransactionType.DEPOSIT, amount, "Deposit");
-            transactions.add(transaction);
-            
-            saveAllData();
-            return true;
-        }
-        return false;
-    }
-    
-    public boolean withdraw(String accountNumber, double amount) {
-        if (currentUser == null || amount <= 0) {
-            return false;
-        }
-        
-        Optional<Account> accountOpt = getAccount(accountNumber);
-        if (accountOpt.isPresent()) {
-            Account account = accountOpt.get();
-            boolean success = account.withdraw(amount);
-            
-            if (success) {
-                // Record transaction
-                String transactionId = "TXN" + System.currentTimeMillis();
-                Transaction transaction = new Transaction(transactionId, accountNumber, 
-                    Transaction.TransactionType.WITHDRAWAL, amount, "Withdrawal");
-                transactions.add(transaction);
-                
-                saveAllData();
-            }
-            return success;
-        }
-        return false;
-    }
-    
-    public List<Account> getUserAccounts() {
-        if (currentUser == null) {
-            return new ArrayList<>();
-        }
-        
-        List<Account> userAccounts = new ArrayList<>();
-        for (Account account : accounts) {
-            if (account.getUsername().equals(currentUser.getUsername())) {
-                userAccounts.add(account);
-            }
-        }
-        return userAccounts;
-    }
-    
-    public List<Transaction> getAccountTransactions(String accountNumber) {
-        if (currentUser == null) {
-            return new ArrayList<>();
-        }
-        
-        // Verify the account belongs to current user
-        Optional<Account> accountOpt = getAccount(accountNumber);
-        if (!accountOpt.isPresent()) {
-            return new ArrayList<>();
-        }
-        
-        List<Transaction> accountTransactions = new ArrayList<>();
-        for (Transaction transaction : transactions) {
-            if (transaction.getAccountNumber().equals(accountNumber)) {
-                accountTransactions.add(transaction);
-            }
-        }
-        return accountTransactions;
-    }
+package com.banking.service;
+
+import com.banking.model.*;
+import com.banking.security.HashingEngine;
+import com.banking.security.PasswordHasher;
+import com.banking.security.InputValidator;
+import com.banking.service.CommitPipeline.Durability;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Thread-safe banking operations. Every operation takes the caller's Session, so any
+// number of users can work against one instance; the session-less methods act on a
+// single console session for the interactive menu. Amounts are in cents.
+public class BankingService {
+    // Journal records written between automatic checkpoints
+    private static final long CHECKPOINT_INTERVAL = Long.getLong("banking.checkpointInterval", 10000);
+    // Accounts kept as cached views; balances live in the account table either way
+    private static final int ACCOUNT_CACHE = Integer.getInteger("banking.cache.accounts", 10000);
+    // Initial slots of the user table, which doubles as it fills
+    private static final int USER_CAPACITY = Integer.getInteger("banking.users.capacity", 1 << 16);
+    // Transaction rows kept in memory past a checkpoint; older ones are read from the ledger
+    private static final int HOT_ROWS = Integer.getInteger("banking.cache.historyRows", 1000000);
+    // Where and how often (seconds, 0 for never) the metrics report is written
+    private static final String METRICS_FILE = System.getProperty("banking.metrics.file", "data/metrics.txt");
+    private static final long METRICS_INTERVAL = Long.getLong("banking.metrics.interval", 60);
+    // Threads of the interest and reconciliation jobs; banking.interest.parallelism, the
+    // name from before reconciliation shared the setting, is still read
+    private static final int JOB_PARALLELISM = Integer.getInteger("banking.jobs.parallelism",
+        Integer.getInteger("banking.interest.parallelism", Runtime.getRuntime().availableProcessors()));
+    
+    private final FileDataService dataService;
+    private volatile Session currentSession;
+    
+    // Users and accounts live in memory-mapped tables; accounts also have a bounded view
+    // cache. Each user's entry links to their accounts.
+    private final UserStore users;
+    private final AccountStore accounts;
+    // Transactions in posting order; recent rows in memory, older ones in the ledger
+    private final TransactionStore transactions;
+    // Journal mode: rows before this are in the binary ledger, the next checkpoint adds the rest
+    private long ledgerCount; // guarded by checkpointMonitor
+    // Rows before this are covered by the installed snapshot, so a restart numbers them the same
+    private long installedLedgerCount; // guarded by checkpointMonitor
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final IdGenerator idGenerator = new IdGenerator();
+    // Jobs and reports, each in its own class
+    private final PostingIngestion postingIngestion;
+    private final InterestAccrual interestAccrual;
+    private final Reconciliation reconciliation;
+    private final Statements statements;
+    private final HashingEngine hashingEngine = new HashingEngine();
+    // Unknown and inactive usernames are checked against this, so a failed login takes
+    // as long whether or not the name exists
+    private final String dummySalt = PasswordHasher.generateSalt();
+    private final String dummyHash = PasswordHasher.hashPassword(dummySalt, dummySalt);
+    
+    // Latency and I/O share of every operation; the data service adds its file and journal timers
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Operation registerOperation = metrics.operation("service.register");
+    private final Metrics.Operation loginOperation = metrics.operation("service.login");
+    private final Metrics.Operation createAccountOperation = metrics.operation("service.createAccount");
+    private final Metrics.Operation depositOperation = metrics.operation("service.deposit");
+    private final Metrics.Operation withdrawOperation = metrics.operation("service.withdraw");
+    private final Metrics.Operation transferOperation = metrics.operation("service.transfer");
+    private final Metrics.Operation accountsOperation = metrics.operation("service.accounts");
+    private final Metrics.Operation historyOperation = metrics.operation("service.history");
+    private final Metrics.Operation batchOperation = metrics.operation("service.batch");
+    private final Metrics.Operation checkpointOperation = metrics.operation("service.checkpoint");
+    private final Metrics.Operation interestOperation = metrics.operation("service.interest");
+    private final Metrics.Operation reconcileOperation = metrics.operation("service.reconcile");
+    private final Metrics.Operation statementOperation = metrics.operation("service.statement");
+    private final LatencyHistogram journalWait = metrics.timer("service.journalWait");
+    private final LatencyHistogram checkpointPause = metrics.timer("service.checkpointPause");
+    private final ScheduledExecutorService metricsDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "metrics-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Every posting holds its account's stripe until its row is appended (see
+    // AccountLocks); a transfer holds both accounts' stripes so concurrent transfers
+    // between them apply in order
+    private final AccountLocks accountLocks = new AccountLocks();
+    
+    // Mutations hold the read side so a checkpoint sees no half-applied change
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Object checkpointMonitor = new Object();
+    private final AtomicLong recordsSinceCheckpoint = new AtomicLong();
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public BankingService() {
+        this.dataService = new FileDataService(metrics);
+        try {
+            this.accounts = dataService.openAccountStore(ACCOUNT_CACHE);
+            this.users = dataService.openUserStore(USER_CAPACITY);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open account and user tables", e);
+        }
+        try {
+            this.transactions = loadAllData();
+        } catch (RuntimeException e) {
+            // Nothing is half started: the tables, the data directory lock and the
+            // worker threads are all let go
+            closeTables();
+            dataService.close();
+            metricsDumper.shutdown();
+            checkpointExecutor.shutdown();
+            hashingEngine.shutdown();
+            throw e;
+        }
+        this.postingIngestion = new PostingIngestion(dataService, accounts, transactions, idGenerator,
+            checkpointLock, accountLocks, this::persistPosted);
+        this.interestAccrual = new InterestAccrual(dataService, accounts, transactions, idGenerator,
+            checkpointLock, accountLocks, JOB_PARALLELISM, this::persistPosted);
+        this.reconciliation = new Reconciliation(dataService, accounts, transactions, accountLocks,
+            JOB_PARALLELISM, this::getInstalledLedgerCount);
+        this.statements = new Statements(accounts, transactions, accountLocks);
+        
+        metrics.gauge("service.sessions", sessions::size);
+        metrics.gauge("service.hashQueueDepth", hashingEngine::getQueueDepth);
+        metrics.gauge("service.residentTransactions", transactions::getResidentRows);
+        metrics.gauge("service.accounts", accounts::size);
+        metrics.gauge("service.users", users::size);
+        if (METRICS_INTERVAL > 0) {
+            metricsDumper.scheduleAtFixedRate(this::dumpMetrics, METRICS_INTERVAL, METRICS_INTERVAL,
+                TimeUnit.SECONDS);
+        }
+    }
+    
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    // An operation's body; E is the checked exception it may throw, if any
+    private interface Timed<T, E extends Exception> {
+        T run() throws E;
+    }
+    
+    // Runs an operation, recording its latency and I/O share
+    private <T, E extends Exception> T timed(Metrics.Operation operation, Timed<T, E> body) throws E {
+        long started = System.nanoTime();
+        long ioBefore = metrics.ioNanos();
+        try {
+            return body.run();
+        } finally {
+            operation.finish(started, ioBefore);
+        }
+    }
+    
+    // Replaces the metrics file with the current report
+    public void dumpMetrics() {
+        Path target = Paths.get(METRICS_FILE);
+        Path temp = Paths.get(METRICS_FILE + ".tmp");
+        try {
+            Files.write(temp, (LocalDateTime.now() + System.lineSeparator() + metrics.format())
+                .getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+    
+    // A snapshot that exists but cannot be read stops startup: the text files may be
+    // long out of date, and the ledger must not be touched. They are only read when
+    // there is no snapshot at all.
+    private TransactionStore loadAllData() {
+        FileDataService.Snapshot snapshot;
+        try {
+            snapshot = dataService.isJournaling() ? dataService.loadSnapshot(accounts, users) : null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load snapshot: " + e.getMessage()
+                + "; restore it from a backup before starting", e);
+        }
+        TransactionStore loaded;
+        BinaryLedger ledger = null;
+        long coveredSegment = 0;
+        if (snapshot != null) {
+            ledger = dataService.getLedger();
+            ledgerCount = snapshot.getLedgerCount();
+            installedLedgerCount = ledgerCount;
+            // The ledger is read in place, only rows after it are held in memory
+            loaded = new TransactionStore(ledger, (int) ledgerCount);
+            loaded.observeHighestId(snapshot.getHighestTransactionId());
+            coveredSegment = snapshot.getCoveredSegment();
+        } else {
+            // The three files load side by side; transactions are also split across the pool
+            CompletableFuture<List<User>> userLoad = CompletableFuture.supplyAsync(dataService::loadUsers);
+            CompletableFuture<List<Account>> accountLoad = CompletableFuture.supplyAsync(dataService::loadAccounts);
+            loaded = dataService.loadTransactions();
+            for (User user : userLoad.join()) {
+                users.insert(user);
+            }
+            for (Account account : accountLoad.join()) {
+                accounts.insert(account);
+            }
+            if (dataService.isJournaling()) {
+                try {
+                    ledger = dataService.openEmptyLedger();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to open ledger: " + e.getMessage(), e);
+                }
+            }
+        }
+        if (dataService.isJournaling()) {
+            dataService.replayJournal(users, accounts, loaded, coveredSegment);
+        }
+        loaded.setLedger(ledger);
+        
+        accounts.forEach(account -> {
+            linkInCreationOrder(account);
+            idGenerator.observeAccountNumber(account.getAccountNumber());
+        });
+        if (dataService.isJournaling()) {
+            // Anything past the ledger (text files, older snapshots, the journal) goes in next
+            recordsSinceCheckpoint.addAndGet(loaded.size() - ledgerCount);
+        }
+        // New IDs must not repeat ones issued before a restart, even if the clock went back
+        idGenerator.observeTransactionValue(loaded.getHighestId());
+        return loaded;
+    }
+    
+    // Appends the account to its owner's list; accounts kept outside the table are
+    // found by accountsOf without a link
+    private void linkOwner(Account account) {
+        int slot = accounts.slotOf(account.getAccountNumber());
+        if (slot >= 0) {
+            int previous = users.addAccount(account.getUsername(), slot);
+            if (previous >= 0) {
+                accounts.setNextOwnedSlot(previous, slot);
+            }
+        }
+    }
+    
+    // At startup accounts arrive in table order, so each one is inserted into its
+    // owner's list after the accounts opened no later than it; lists are short
+    private void linkInCreationOrder(Account account) {
+        int slot = accounts.slotOf(account.getAccountNumber());
+        if (slot < 0) {
+            return;
+        }
+        long created = BinaryLedger.toMicros(account.getCreatedAt());
+        int previous = -1;
+        int next = users.getFirstAccount(account.getUsername());
+        while (next >= 0 && accounts.getCreatedMicros(next) <= created) {
+            previous = next;
+            next = accounts.getNextOwnedSlot(next);
+        }
+        int first = previous < 0 ? slot : users.getFirstAccount(account.getUsername());
+        int last = next < 0 ? slot : users.getLastAccount(account.getUsername());
+        if (!users.setAccounts(account.getUsername(), first, last)) {
+            return;
+        }
+        accounts.setNextOwnedSlot(slot, next);
+        if (previous >= 0) {
+            accounts.setNextOwnedSlot(previous, slot);
+        }
+    }
+    
+    // The user's account numbers, oldest first
+    private List<String> accountsOf(String username) {
+        List<String> accountNumbers = new ArrayList<>();
+        for (int slot = users.getFirstAccount(username); slot >= 0; slot = accounts.getNextOwnedSlot(slot)) {
+            accountNumbers.add(IdGenerator.accountNumber(slot));
+        }
+        accounts.forEachOverflowOwnedBy(username, account -> accountNumbers.add(account.getAccountNumber()));
+        return accountNumbers;
+    }
+    
+    // Balances are updated lock-free before this is called. Journal records are deltas,
+    // so their order across accounts is free.
+    private CommitPipeline.Entry recordTransaction(Transaction transaction, Durability durability) {
+        transactions.append(transaction);
+        return saveTransaction(transaction, durability);
+    }
+    
+    // Moves new transactions into the binary ledger, writes a snapshot of users and
+    // accounts that points at it, drops the journal segments it covers and releases
+    // transaction rows beyond the hot window
+    public void checkpoint() {
+        if (dataService.isJournaling()) {
+            timed(checkpointOperation, () -> {
+                writeCheckpoint();
+                return null;
+            });
+        }
+    }
+    
+    private void writeCheckpoint() {
+        synchronized (checkpointMonitor) {
+            long coveredSegment;
+            int cut;
+            long highestId;
+            long records;
+            checkpointLock.writeLock().lock();
+            long paused = System.nanoTime();
+            try {
+                // Writers pause only to fix the cut: every row below it has its journal
+                // record in a segment up to coveredSegment, and none after it does
+                coveredSegment = dataService.rotateJournal();
+                cut = transactions.size();
+                highestId = transactions.getHighestId();
+                records = recordsSinceCheckpoint.getAndSet(0);
+            } finally {
+                checkpointLock.writeLock().unlock();
+                checkpointPause.record(System.nanoTime() - paused);
+            }
+            
+            // Rows below the cut never change, and only a checkpoint moves the ledger
+            // bounds, so the ledger and the snapshot are written while postings go on
+            try {
+                dataService.appendToLedger(transactions.rows((int) ledgerCount, cut), accounts);
+            } catch (IOException e) {
+                System.err.println("Error writing ledger: " + e.getMessage());
+                recordsSinceCheckpoint.addAndGet(records);
+                return;
+            }
+            ledgerCount = cut;
+            Path pending = dataService.writeSnapshot(users, accounts, account -> balanceAt(account, cut),
+                ledgerCount, highestId, coveredSegment);
+            
+            // The journal stays until both the ledger and the snapshot are on disk
+            if (pending != null && dataService.forceLedger() && dataService.installSnapshot(pending)) {
+                installedLedgerCount = ledgerCount;
+                dataService.compactJournal(coveredSegment);
+                if (transactions.getResidentRows() > HOT_ROWS) {
+                    transactions.evictBefore(transactions.size() - HOT_ROWS / 4 * 3);
+                }
+            }
+        }
+    }
+    
+    // The account's balance before row cut: its live balance less what the rows posted
+    // since have moved it by, both read under its stripe
+    private long balanceAt(Account account, int cut) {
+        ReentrantLock lock = accountLocks.lockFor(account.getAccountNumber());
+        lock.lock();
+        try {
+            return account.getBalanceCents() - transactions.sumSince(account.getAccountNumber(), cut);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private long getInstalledLedgerCount() {
+        synchronized (checkpointMonitor) {
+            return installedLedgerCount;
+        }
+    }
+    
+    private void closeTables() {
+        try {
+            users.close();
+            accounts.close();
+        } catch (IOException e) {
+            System.err.println("Error closing user and account tables: " + e.getMessage());
+        }
+    }
+    
+    // Makes a job's postings durable with one journal flush, or one rewrite in
+    // FULL_REWRITE mode
+    private void persistPosted(long records) {
+        if (dataService.isJournaling()) {
+            dataService.syncJournal();
+            maybeCheckpoint(records);
+        } else {
+            saveAllData();
+        }
+    }
+    
+    private void maybeCheckpoint() {
+        maybeCheckpoint(1);
+    }
+    
+    private void maybeCheckpoint(long records) {
+        if (recordsSinceCheckpoint.addAndGet(records) >= CHECKPOINT_INTERVAL
+                && checkpointScheduled.compareAndSet(false, true)) {
+            checkpointExecutor.execute(() -> {
+                try {
+                    checkpoint();
+                } finally {
+                    checkpointScheduled.set(false);
+                }
+            });
+        }
+    }
+    
+    private void saveAllData() {
+        synchronized (dataService) {
+            List<User> userList = new ArrayList<>(users.size());
+            users.forEach(userList::add);
+            dataService.saveUsers(userList);
+            List<Account> accountList = new ArrayList<>(accounts.size());
+            accounts.forEach(accountList::add);
+            dataService.saveAccounts(accountList);
+            dataService.saveTransactions(transactions.rows(0, transactions.size()));
+        }
+    }
+    
+    // In journal mode only the changed record is enqueued; otherwise every file is rewritten.
+    // Callers pass the returned entry to awaitDurable once they have released their locks.
+    private CommitPipeline.Entry saveUser(User user) {
+        if (dataService.isJournaling()) {
+            return dataService.appendUser(user, dataService.getDefaultDurability());
+        }
+        saveAllData();
+        return null;
+    }
+    
+    private CommitPipeline.Entry saveAccount(Account account) {
+        if (dataService.isJournaling()) {
+            return dataService.appendAccount(account, dataService.getDefaultDurability());
+        }
+        saveAllData();
+        return null;
+    }
+    
+    private CommitPipeline.Entry saveTransaction(Transaction transaction, Durability durability) {
+        if (dataService.isJournaling()) {
+            return dataService.appendTransaction(transaction, durability);
+        }
+        saveAllData();
+        return null;
+    }
+    
+    private void awaitDurable(CommitPipeline.Entry entry) {
+        if (entry != null) {
+            long started = System.nanoTime();
+            entry.await();
+            metrics.recordIo(journalWait, started);
+            maybeCheckpoint();
+        }
+    }
+    
+    // Returns once every change made before the call is on disk. With write-behind
+    // durability (-Dbanking.durability=NONE) this is how a caller waits for persistence.
+    public void flush() {
+        if (dataService.isJournaling()) {
+            dataService.syncJournal();
+        }
+    }
+    
+    public void shutdown() {
+        metricsDumper.shutdown();
+        checkpointExecutor.shutdown();
+        try {
+            checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // A final checkpoint keeps the next startup to a snapshot load
+        if (recordsSinceCheckpoint.get() > 0) {
+            checkpoint();
+        }
+        if (METRICS_INTERVAL > 0) {
+            dumpMetrics();
+        }
+        // The tables go first; closing the data service lets another instance in
+        closeTables();
+        dataService.close();
+        hashingEngine.shutdown();
+    }
+    
+    // Throws RejectedExecutionException when password hashing is saturated
+    public boolean registerUser(String username, String password) {
+        return timed(registerOperation, () -> {
+            // Input validation
+            if (!InputValidator.isValidUsername(username) || 
+                !InputValidator.isValidPassword(password)) {
+                return false;
+            }
+            
+            // Check if username already exists
+            if (users.get(username) != null) {
+                return false;
+            }
+            
+            // Create new user with hashed password
+            String salt = PasswordHasher.generateSalt();
+            String passwordHash = hashingEngine.hash(password, salt);
+            if (passwordHash == null) {
+                return false; // Interrupted
+            }
+            User newUser = new User(username, passwordHash, salt);
+            
+            CommitPipeline.Entry entry;
+            checkpointLock.readLock().lock();
+            try {
+                // Two registrations of the same name may race past the check above
+                if (!users.insert(newUser)) {
+                    return false;
+                }
+                entry = saveUser(newUser);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable(entry);
+            return true;
+        });
+    }
+    
+    // Throws RejectedExecutionException when password hashing is saturated
+    public Optional<Session> openSession(String username, String password) {
+        return timed(loginOperation, () -> {
+            // Input validation
+            if (!InputValidator.isValidUsername(username) || password == null) {
+                return Optional.empty();
+            }
+            
+            User user = users.get(username);
+            if (user == null || !user.isActive()) {
+                hashingEngine.verify(password, dummySalt, dummyHash);
+                return Optional.empty();
+            }
+            if (!hashingEngine.verify(password, user.getSalt(), user.getPasswordHash())) {
+                return Optional.empty();
+            }
+            if (PasswordHasher.needsRehash(user.getPasswordHash())) {
+                user = upgradePasswordHash(user, password);
+            }
+            Session session = new Session(user);
+            sessions.put(session.getToken(), session);
+            return Optional.of(session);
+        });
+    }
+    
+    // Re-hashes a verified password with the current algorithm and work factor
+    private User upgradePasswordHash(User user, String password) {
+        String passwordHash;
+        try {
+            passwordHash = hashingEngine.hash(password, user.getSalt());
+        } catch (RejectedExecutionException e) {
+            passwordHash = null;
+        }
+        if (passwordHash == null) {
+            return user; // Try again on a later login
+        }
+        User upgraded = new User(user.getUsername(), passwordHash, user.getSalt());
+        upgraded.setActive(user.isActive());
+        
+        CommitPipeline.Entry entry;
+        checkpointLock.readLock().lock();
+        try {
+            if (!users.replace(user, upgraded)) {
+                return users.get(user.getUsername()); // Upgraded concurrently
+            }
+            entry = saveUser(upgraded);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        awaitDurable(entry);
+        return upgraded;
+    }
+    
+    // Looks up an open session by its token, or null
+    public Session getSession(String token) {
+        return token == null ? null : sessions.get(token);
+    }
+    
+    public void closeSession(Session session) {
+        if (session != null) {
+            session.close();
+            sessions.remove(session.getToken());
+        }
+    }
+    
+    public int getOpenSessionCount() {
+        return sessions.size();
+    }
+    
+    public boolean login(String username, String password) {
+        Optional<Session> session = openSession(username, password);
+        if (session.isPresent()) {
+            closeSession(currentSession);
+            currentSession = session.get();
+            return true;
+        }
+        return false;
+    }
+    
+    public void logout() {
+        closeSession(currentSession);
+        currentSession = null;
+    }
+    
+    public User getCurrentUser() {
+        Session session = currentSession;
+        return session == null ? null : session.getUser();
+    }
+    
+    public String createAccount(Account.AccountType type) {
+        return createAccount(currentSession, type);
+    }
+    
+    public String createAccount(Session session, Account.AccountType type) {
+        return timed(createAccountOperation, () -> {
+            if (!isOpen(session)) {
+                throw new IllegalStateException("User not logged in");
+            }
+            
+            CommitPipeline.Entry entry;
+            Account newAccount;
+            checkpointLock.readLock().lock();
+            try {
+                newAccount = new Account(idGenerator.nextAccountNumber(), session.getUsername(), type);
+                accounts.insert(newAccount);
+                linkOwner(newAccount);
+                entry = saveAccount(newAccount);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable(entry);
+            
+            return newAccount.getAccountNumber();
+        });
+    }
+    
+    private static boolean isOpen(Session session) {
+        return session != null && session.isOpen();
+    }
+    
+    public Optional<Account> getAccount(String accountNumber) {
+        return getAccount(currentSession, accountNumber);
+    }
+    
+    public Optional<Account> getAccount(Session session, String accountNumber) {
+        return Optional.ofNullable(findOwnedAccount(session, accountNumber));
+    }
+    
+    // Returns the account only if it belongs to the session's user, otherwise null
+    private Account findOwnedAccount(Session session, String accountNumber) {
+        if (!isOpen(session) || accountNumber == null) {
+            return null;
+        }
+        Account account = accounts.get(accountNumber);
+        if (account == null || !account.getUsername().equals(session.getUsername())) {
+            return null;
+        }
+        return account;
+    }
+    
+    public boolean deposit(String accountNumber, long amountCents) {
+        return deposit(currentSession, accountNumber, amountCents, dataService.getDefaultDurability());
+    }
+    
+    public boolean deposit(String accountNumber, long amountCents, Durability durability) {
+        return deposit(currentSession, accountNumber, amountCents, durability);
+    }
+    
+    public boolean deposit(Session session, String accountNumber, long amountCents) {
+        return deposit(session, accountNumber, amountCents, dataService.getDefaultDurability());
+    }
+    
+    public boolean deposit(Session session, String accountNumber, long amountCents, Durability durability) {
+        return timed(depositOperation, () -> {
+            if (amountCents <= 0) {
+                return false;
+            }
+            
+            Account account = findOwnedAccount(session, accountNumber);
+            if (account != null) {
+                CommitPipeline.Entry entry;
+                ReentrantLock lock = accountLocks.lockFor(accountNumber);
+                checkpointLock.readLock().lock();
+                lock.lock();
+                try {
+                    account.deposit(amountCents);
+                    
+                    // Record transaction
+                    Transaction transaction = new Transaction(idGenerator.nextTransactionId(), accountNumber, 
+                        Transaction.TransactionType.DEPOSIT, amountCents, "Deposit");
+                    entry = recordTransaction(transaction, durability);
+                } finally {
+                    lock.unlock();
+                    checkpointLock.readLock().unlock();
+                }
+                awaitDurable(entry);
+                return true;
+            }
+            return false;
+        });
+    }
+    
+    public boolean withdraw(String accountNumber, long amountCents) {
+        return withdraw(currentSession, accountNumber, amountCents, dataService.getDefaultDurability());
+    }
+    
+    public boolean withdraw(String accountNumber, long amountCents, Durability durability) {
+        return withdraw(currentSession, accountNumber, amountCents, durability);
+    }
+    
+    public boolean withdraw(Session session, String accountNumber, long amountCents) {
+        return withdraw(session, accountNumber, amountCents, dataService.getDefaultDurability());
+    }
+    
+    public boolean withdraw(Session session, String accountNumber, long amountCents, Durability durability) {
+        return timed(withdrawOperation, () -> {
+            if (amountCents <= 0) {
+                return false;
+            }
+            
+            Account account = findOwnedAccount(session, accountNumber);
+            if (account != null) {
+                boolean success;
+                CommitPipeline.Entry entry = null;
+                ReentrantLock lock = accountLocks.lockFor(accountNumber);
+                checkpointLock.readLock().lock();
+                lock.lock();
+                try {
+                    success = account.withdraw(amountCents);
+                    
+                    if (success) {
+                        // Record transaction
+                        Transaction transaction = new Transaction(idGenerator.nextTransactionId(), accountNumber, 
+                            Transaction.TransactionType.WITHDRAWAL, amountCents, "Withdrawal");
+                        entry = recordTransaction(transaction, durability);
+                    }
+                } finally {
+                    lock.unlock();
+                    checkpointLock.readLock().unlock();
+                }
+                awaitDurable(entry);
+                return success;
+            }
+            return false;
+        });
+    }
+    
+    public boolean transfer(String fromAccount, String toAccount, long amountCents) {
+        return transfer(currentSession, fromAccount, toAccount, amountCents, dataService.getDefaultDurability());
+    }
+    
+    public boolean transfer(Session session, String fromAccount, String toAccount, long amountCents) {
+        return transfer(session, fromAccount, toAccount, amountCents, dataService.getDefaultDurability());
+    }
+    
+    // Moves money from one of the session's accounts to any other account. Both legs are
+    // posted under both accounts' stripe locks and journaled as one record.
+    public boolean transfer(Session session, String fromAccount, String toAccount, long amountCents,
+                            Durability durability) {
+        return timed(transferOperation, () -> {
+            if (amountCents <= 0 || toAccount == null || toAccount.equals(fromAccount)) {
+                return false;
+            }
+            
+            Account source = findOwnedAccount(session, fromAccount);
+            Account target = accounts.get(toAccount);
+            if (source == null || target == null) {
+                return false;
+            }
+            
+            CommitPipeline.Entry entry;
+            checkpointLock.readLock().lock();
+            // Lowest stripe first, so opposite transfers cannot deadlock
+            int[] stripes = accountLocks.lockAll(Arrays.asList(fromAccount, toAccount));
+            try {
+                if (!source.withdraw(amountCents)) {
+                    return false;
+                }
+                target.deposit(amountCents);
+                
+                Transaction debit = new Transaction(idGenerator.nextTransactionId(), fromAccount,
+                    Transaction.TransactionType.TRANSFER_OUT, amountCents, "Transfer to " + toAccount);
+                Transaction credit = new Transaction(idGenerator.nextTransactionId(), toAccount,
+                    Transaction.TransactionType.TRANSFER_IN, amountCents, "Transfer from " + fromAccount);
+                transactions.append(debit, credit);
+                
+                if (dataService.isJournaling()) {
+                    entry = dataService.appendTransfer(debit, credit, durability);
+                } else {
+                    saveAllData();
+                    entry = null;
+                }
+            } finally {
+                accountLocks.unlockAll(stripes);
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable(entry);
+            return true;
+        });
+    }
+    
+    // Applies a posting file of "account,DEPOSIT|WITHDRAWAL,amount[,description]" lines
+    // to any account (see PostingIngestion); everything is made durable with one
+    // journal flush, or one rewrite in FULL_REWRITE mode, at the end
+    public BatchResult ingestPostings(Path postingFile, Path rejectFile) throws IOException {
+        return timed(batchOperation, () -> postingIngestion.ingest(postingFile, rejectFile));
+    }
+    
+    // Posts one day's interest to every SAVINGS account (see InterestAccrual) and makes
+    // it durable the same way. Returns null if the day cannot be accrued: it, or a
+    // later day, was already done, or an earlier run is unfinished.
+    public InterestResult accrueInterest(LocalDate day) {
+        return timed(interestOperation, () -> interestAccrual.accrue(day));
+    }
+    
+    // Checks every balance against the transaction log (see Reconciliation) and writes
+    // the mismatches to the report
+    public ReconciliationResult reconcile(Path reportFile) throws IOException {
+        return timed(reconcileOperation, () -> reconciliation.run(reportFile));
+    }
+    
+    public List<Account> getUserAccounts() {
+        return getUserAccounts(currentSession);
+    }
+    
+    public List<Account> getUserAccounts(Session session) {
+        return timed(accountsOperation, () -> {
+            if (!isOpen(session)) {
+                return new ArrayList<>();
+            }
+            
+            List<String> accountNumbers = accountsOf(session.getUsername());
+            if (accountNumbers.isEmpty()) {
+                return new ArrayList<>();
+            }
+            // Copies with the balances of one read view, so money in flight between two
+            // of the user's accounts is never missing from both or counted in both.
+            // Nothing waits for postings and no posting waits for this.
+            ReadView view = statements.openReadView();
+            List<Account> userAccounts = new ArrayList<>(accountNumbers.size());
+            for (String accountNumber : accountNumbers) {
+                Account account = accounts.get(accountNumber);
+                userAccounts.add(new Account(accountNumber, account.getUsername(), account.getType(),
+                    view.getBalanceCents(accountNumber), account.getCreatedAt()));
+            }
+            return Collections.unmodifiableList(userAccounts);
+        });
+    }
+    
+    public List<Transaction> getAccountTransactions(String accountNumber) {
+        return getAccountTransactions(currentSession, accountNumber);
+    }
+    
+    public List<Transaction> getAccountTransactions(Session session, String accountNumber) {
+        return timed(historyOperation, () -> {
+            if (findOwnedAccount(session, accountNumber) == null) {
+                return new ArrayList<>();
+            }
+            
+            return transactions.views(transactions.historyRows(accountNumber,
+                accounts.getFirstLedgerRow(accountNumber), -1, Integer.MAX_VALUE));
+        });
+    }
+    
+    public TransactionPage getAccountTransactions(String accountNumber, int cursor, int limit) {
+        return getAccountTransactions(currentSession, accountNumber, cursor, limit);
+    }
+    
+    // Returns up to limit transactions starting at cursor, oldest first. Pass 0 for the
+    // first page and the returned next cursor for the following ones; cursors are
+    // positions in the transaction log, not counts.
+    public TransactionPage getAccountTransactions(Session session, String accountNumber,
+                                                  int cursor, int limit) {
+        return timed(historyOperation, () -> {
+            if (findOwnedAccount(session, accountNumber) == null || cursor < 0 || limit <= 0) {
+                return new TransactionPage(new ArrayList<>(), TransactionPage.END);
+            }
+            
+            // One extra row tells whether another page follows and where it starts
+            int[] rows = transactions.historyRows(accountNumber, accounts.getFirstLedgerRow(accountNumber),
+                cursor - 1, (int) Math.min(Integer.MAX_VALUE, limit + 1L));
+            if (rows.length <= limit) {
+                return new TransactionPage(transactions.views(rows), TransactionPage.END);
+            }
+            return new TransactionPage(transactions.views(Arrays.copyOf(rows, limit)), rows[limit] + 1);
+        });
+    }
+    
+    public List<Transaction> getAccountTransactions(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        return getAccountTransactions(currentSession, accountNumber, from, to);
+    }
+    
+    // Transactions with from <= timestamp < to, oldest first, found through the
+    // account's time index rather than by walking its history
+    public List<Transaction> getAccountTransactions(Session session, String accountNumber,
+                                                    LocalDateTime from, LocalDateTime to) {
+        return timed(historyOperation, () -> {
+            if (findOwnedAccount(session, accountNumber) == null || from == null || to == null) {
+                return new ArrayList<>();
+            }
+            return openReadView().getTransactions(accountNumber, from, to);
+        });
+    }
+    
+    public Statement getStatement(String accountNumber, YearMonth month) {
+        return getStatement(currentSession, accountNumber, month);
+    }
+    
+    public Statement getStatement(Session session, String accountNumber, YearMonth month) {
+        return getStatement(session, accountNumber, month.atDay(1), month.atEndOfMonth());
+    }
+    
+    // Opening and closing balances, totals and transactions for the days from to to,
+    // inclusive. Totals come from the account's daily rollups, the transactions from
+    // its time index. Returns null if the account is not the session's.
+    public Statement getStatement(Session session, String accountNumber, LocalDate from, LocalDate to) {
+        return timed(statementOperation, () -> {
+            if (findOwnedAccount(session, accountNumber) == null || from == null || to == null) {
+                return null;
+            }
+            return statements.statement(accountNumber, from, to);
+        });
+    }
+    
+    // A consistent point-in-time view of balances and history for reports; see ReadView
+    public ReadView openReadView() {
+        return statements.openReadView();
+    }
+    
+    public CacheStats getAccountCacheStats() {
+        return accounts.getCacheStats();
+    }
+    
+    public CacheStats getHistoryCacheStats() {
+        return transactions.getCacheStats();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,420 @@
+package com.banking.service;
+
+import com.banking.model.Transaction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Append-only transaction ledger of fixed-width binary records, read and written
+// through memory-mapped regions of ledger.bin. Account numbers are stored as
+// ordinals into ledger.dict, a dictionary with one entry per line. Descriptions and
+// transaction IDs that are not "TXN" digits are free text and go to ledger.text
+// instead, as a length-prefixed entry each, so the dictionary only grows with the
+// number of accounts. Each account's records form a doubly linked list, so its
+// history can be read from disk without an index.
+//
+// Header (64 bytes): magic, version, then the record count, the dictionary length
+// and the text length, all three as of the last force(). Opening the ledger cuts
+// the dictionary back to its committed length, so a line torn by a crash can never
+// shift the ordinals of the entries after it.
+//
+// Record layout (56 bytes, big-endian):
+//   0  long  transaction ID (the digits after "TXN", or -(text offset + 1) for other IDs)
+//   8  long  timestamp, microseconds since the epoch in UTC
+//   16 long  amount in cents
+//   24 long  previous record of the same account, or -1
+//   32 long  next record of the same account, or -1
+//   40 int   account number ordinal
+//   44 byte  transaction type ordinal
+//   45       padding
+//   48 long  description text offset
+//
+// Readers access fields straight from the mapping. The files can grow far beyond the
+// heap; only the dictionary is held in memory. There is a single writer at a time.
+public class BinaryLedger {
+    public static final String LEDGER_FILE = "ledger.bin";
+    public static final String DICTIONARY_FILE = "ledger.dict";
+    public static final String TEXT_FILE = "ledger.text";
+    
+    private static final int MAGIC = 0x4C454447; // "LEDG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+    private static final int DICTIONARY_OFFSET = 16;
+    private static final int TEXT_OFFSET = 24;
+    static final int RECORD_SIZE = 56;
+    private static final int REGION_SHIFT = 20; // 1M records, 56 MB per mapped region
+    private static final int REGION_RECORDS = 1 << REGION_SHIFT;
+    private static final long REGION_BYTES = (long) REGION_RECORDS * RECORD_SIZE;
+    // Text entries never straddle a region; longer ones are cut
+    private static final int TEXT_REGION_SHIFT = 24; // 16 MB per mapped region
+    private static final long TEXT_REGION_BYTES = 1L << TEXT_REGION_SHIFT;
+    private static final int MAX_TEXT_BYTES = 0xFFFF;
+    // Recently written descriptions, so repeated ones such as "Deposit" are stored once
+    private static final int TEXT_CACHE_ENTRIES = 1024;
+    
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    // Grows while readers index into it
+    private final List<MappedByteBuffer> regions = new CopyOnWriteArrayList<>();
+    private final FileChannel dictionary;
+    private final FileChannel text;
+    private final List<MappedByteBuffer> textRegions = new CopyOnWriteArrayList<>();
+    // Entries are published before any record refers to them
+    private volatile String[] strings = new String[64];
+    private int stringCount;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // Writer-side state, guarded by this. Dictionary entries from committedStrings on
+    // and text past the committed length are written by the next force().
+    private int committedStrings;
+    private long dictionaryLength;
+    private long textLength;
+    private final Map<String, Long> recentText = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > TEXT_CACHE_ENTRIES;
+        }
+    };
+    private volatile long count;
+    
+    private BinaryLedger(Path directory) throws IOException {
+        Path path = directory.resolve(LEDGER_FILE);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(COUNT_OFFSET, 0);
+            header.putLong(DICTIONARY_OFFSET, 0);
+            header.putLong(TEXT_OFFSET, 0);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Unrecognized ledger format");
+        }
+        this.count = header.getLong(COUNT_OFFSET);
+        if (count > 0) {
+            region(count - 1);
+        }
+        
+        this.dictionaryLength = header.getLong(DICTIONARY_OFFSET);
+        this.textLength = header.getLong(TEXT_OFFSET);
+        Path dictionaryPath = directory.resolve(DICTIONARY_FILE);
+        this.dictionary = FileChannel.open(dictionaryPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.text = FileChannel.open(directory.resolve(TEXT_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (dictionary.size() < dictionaryLength) {
+            close();
+            throw new IOException("Ledger dictionary is shorter than its header");
+        }
+        // Anything past the committed length was written after the last force()
+        dictionary.truncate(dictionaryLength);
+        try (BufferedReader reader = Files.newBufferedReader(dictionaryPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                addString(line);
+            }
+        }
+        committedStrings = stringCount;
+        if (textLength > 0) {
+            textRegion(textLength - 1);
+        }
+    }
+    
+    public static BinaryLedger open(Path directory) throws IOException {
+        return new BinaryLedger(directory);
+    }
+    
+    public static boolean exists(Path directory) {
+        return Files.exists(directory.resolve(LEDGER_FILE));
+    }
+    
+    // Number of committed records
+    public long size() {
+        return count;
+    }
+    
+    // Writes a record after the last one, linked after previous (the account's last
+    // record, or -1). The caller links previous forward with setNext. The record
+    // becomes durable and visible to a reopened ledger with the next force().
+    public synchronized long append(Transaction transaction, long previous) throws IOException {
+        long index = count;
+        MappedByteBuffer region = region(index);
+        int offset = offset(index);
+        
+        long id = IdGenerator.transactionValue(transaction.getTransactionId());
+        if (id < 0) {
+            id = -(appendText(transaction.getTransactionId(), false) + 1L);
+        }
+        region.putLong(offset, id);
+        region.putLong(offset + 8, toMicros(transaction.getTimestamp()));
+        region.putLong(offset + 16, transaction.getAmountCents());
+        region.putLong(offset + 24, previous);
+        region.putLong(offset + 32, -1);
+        region.putInt(offset + 40, ordinal(transaction.getAccountNumber()));
+        region.put(offset + 44, (byte) transaction.getType().ordinal());
+        region.putLong(offset + 48, appendText(transaction.getDescription(), true));
+        count = index + 1;
+        return index;
+    }
+    
+    public synchronized void setNext(long index, long next) {
+        record(index).putLong(offset(index) + 32, next);
+    }
+    
+    // Flushes records, text and the new dictionary entries, then publishes the new
+    // record count together with the dictionary and text lengths
+    public synchronized void force() throws IOException {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        for (MappedByteBuffer region : textRegions) {
+            region.force();
+        }
+        if (committedStrings < stringCount) {
+            StringBuilder entries = new StringBuilder();
+            for (int i = committedStrings; i < stringCount; i++) {
+                entries.append(strings[i]).append('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(entries.toString().getBytes(StandardCharsets.UTF_8));
+            long position = dictionaryLength;
+            while (bytes.hasRemaining()) {
+                position += dictionary.write(bytes, position);
+            }
+            dictionary.force(false);
+            dictionaryLength = position;
+            committedStrings = stringCount;
+        }
+        header.putLong(COUNT_OFFSET, count);
+        header.putLong(DICTIONARY_OFFSET, dictionaryLength);
+        header.putLong(TEXT_OFFSET, textLength);
+        header.force();
+    }
+    
+    // Forgets records at and after newCount, e.g. ones appended by an unfinished
+    // checkpoint, and the dictionary entries only they used. Text they used stays as
+    // unreferenced bytes.
+    public synchronized void truncate(long newCount) throws IOException {
+        newCount = Math.max(0, newCount);
+        if (newCount >= count) {
+            return;
+        }
+        long committedCount = header.getLong(COUNT_OFFSET);
+        count = newCount;
+        // Entries are added in record order, so the remaining records use exactly the
+        // entries up to the highest ordinal they refer to
+        int kept = newCount >= committedCount
+            ? Math.max(committedStrings, stringsUsed(committedCount, newCount)) : stringsUsed(0, newCount);
+        for (int i = kept; i < stringCount; i++) {
+            ordinals.remove(strings[i]);
+            strings[i] = null;
+        }
+        stringCount = kept;
+        if (newCount < committedCount) {
+            if (kept < committedStrings) {
+                long length = 0;
+                for (int i = 0; i < kept; i++) {
+                    length += strings[i].getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+                dictionaryLength = length;
+                committedStrings = kept;
+            }
+            header.putLong(COUNT_OFFSET, count);
+            header.putLong(DICTIONARY_OFFSET, dictionaryLength);
+            header.force();
+            dictionary.truncate(dictionaryLength);
+        }
+    }
+    
+    // One past the highest account ordinal used by records [from, to)
+    private int stringsUsed(long from, long to) {
+        int used = 0;
+        for (long i = from; i < to; i++) {
+            used = Math.max(used, getAccountOrdinal(i) + 1);
+        }
+        return used;
+    }
+    
+    public long getTransactionIdValue(long index) {
+        return record(index).getLong(offset(index));
+    }
+    
+    public String getTransactionId(long index) {
+        long id = getTransactionIdValue(index);
+        return id >= 0 ? IdGenerator.TRANSACTION_PREFIX + id : readText(-id - 1);
+    }
+    
+    public long getTimestampMicros(long index) {
+        return record(index).getLong(offset(index) + 8);
+    }
+    
+    public LocalDateTime getTimestamp(long index) {
+        return fromMicros(getTimestampMicros(index));
+    }
+    
+    public long getAmountCents(long index) {
+        return record(index).getLong(offset(index) + 16);
+    }
+    
+    public long getPrevious(long index) {
+        return record(index).getLong(offset(index) + 24);
+    }
+    
+    // The account's next record, or -1. A link left behind by a truncated checkpoint
+    // does not point back here and is ignored.
+    public long getNext(long index) {
+        long next = record(index).getLong(offset(index) + 32);
+        return next > index && next < count && getPrevious(next) == index ? next : -1;
+    }
+    
+    public int getAccountOrdinal(long index) {
+        return record(index).getInt(offset(index) + 40);
+    }
+    
+    public String getAccountNumber(long index) {
+        return strings[getAccountOrdinal(index)];
+    }
+    
+    public String getDescription(long index) {
+        return readText(record(index).getLong(offset(index) + 48));
+    }
+    
+    public Transaction.TransactionType getType(long index) {
+        return TYPES[record(index).get(offset(index) + 44)];
+    }
+    
+    // Builds a Transaction object for callers that need one
+    public Transaction get(long index) {
+        return new Transaction(getTransactionId(index), getAccountNumber(index), getType(index),
+            getAmountCents(index), getTimestamp(index), getDescription(index));
+    }
+    
+    // Dictionary entry for an ordinal, e.g. from getAccountOrdinal
+    public String getString(int ordinal) {
+        return strings[ordinal];
+    }
+    
+    public synchronized void close() throws IOException {
+        dictionary.close();
+        text.close();
+        channel.close();
+    }
+    
+    public static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000;
+    }
+    
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+    
+    // Entries are written to the dictionary file by force()
+    private int ordinal(String value) {
+        // Entries are one per line, so line breaks inside a value are flattened
+        String entry = value.replace('\n', ' ').replace('\r', ' ');
+        Integer existing = ordinals.get(entry);
+        return existing != null ? existing : addString(entry);
+    }
+    
+    // Writes a text entry through the mapping and returns its offset; it becomes
+    // durable with the next force(). Repeated values are written once while they are
+    // among the recently written ones.
+    private long appendText(String value, boolean reuse) throws IOException {
+        if (reuse) {
+            Long existing = recentText.get(value);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_TEXT_BYTES);
+        // Never cut inside a character
+        while (length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        long position = textLength;
+        if ((position & (TEXT_REGION_BYTES - 1)) + 2 + length > TEXT_REGION_BYTES) {
+            position = (position | (TEXT_REGION_BYTES - 1)) + 1;
+        }
+        MappedByteBuffer region = textRegion(position);
+        int offset = (int) (position & (TEXT_REGION_BYTES - 1));
+        region.putShort(offset, (short) length);
+        region.put(offset + 2, bytes, 0, length);
+        textLength = position + 2 + length;
+        if (reuse) {
+            recentText.put(value, position);
+        }
+        return position;
+    }
+    
+    private String readText(long position) {
+        MappedByteBuffer region = textRegions.get((int) (position >>> TEXT_REGION_SHIFT));
+        int offset = (int) (position & (TEXT_REGION_BYTES - 1));
+        byte[] bytes = new byte[region.getShort(offset) & 0xFFFF];
+        region.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private int addString(String value) {
+        String[] current = strings;
+        if (stringCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[stringCount] = value;
+        strings = current;
+        ordinals.put(value, stringCount);
+        return stringCount++;
+    }
+    
+    private MappedByteBuffer record(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Ledger record " + index);
+        }
+        return regions.get((int) (index >>> REGION_SHIFT));
+    }
+    
+    private static int offset(long index) {
+        return (int) (index & (REGION_RECORDS - 1)) * RECORD_SIZE;
+    }
+    
+    // Maps regions up to and including the one holding index; mapping past the end
+    // of the file grows it
+    private synchronized MappedByteBuffer region(long index) throws IOException {
+        int wanted = (int) (index >>> REGION_SHIFT);
+        while (regions.size() <= wanted) {
+            long position = HEADER_SIZE + regions.size() * REGION_BYTES;
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, position, REGION_BYTES));
+        }
+        return regions.get(wanted);
+    }
+    
+    // The same for the text region holding position
+    private synchronized MappedByteBuffer textRegion(long position) throws IOException {
+        int wanted = (int) (position >>> TEXT_REGION_SHIFT);
+        while (textRegions.size() <= wanted) {
+            textRegions.add(text.map(FileChannel.MapMode.READ_WRITE, textRegions.size() * TEXT_REGION_BYTES,
+                TEXT_REGION_BYTES));
+        }
+        return textRegions.get(wanted);
+    }
+}
\ No newline at end of file
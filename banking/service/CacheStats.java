@@ -0,0 +1,32 @@
+package com.banking.service;
+
+// Point-in-time counters of one cache tier
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long size;
+    private final long capacity;
+    
+    public CacheStats(long hits, long misses, long size, long capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+        this.capacity = capacity;
+    }
+    
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getSize() { return size; }
+    public long getCapacity() { return capacity; }
+    
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.3f size=%d capacity=%d",
+            hits, misses, getHitRate(), size, capacity);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,467 @@
+package com.banking.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// Group-commit writer for the journal. Callers enqueue records from any thread,
+// a single writer thread drains everything that is queued, writes it with one
+// call and forces it to disk once for the whole batch.
+//
+// The journal is split into numbered segments (journal-000001.log, ...). Every
+// process start and every checkpoint begins a new segment, so a torn record can
+// only ever be the last line of a segment. Each record is framed as
+// ~<crc32>|<record> so replay can tell a torn or damaged record from a valid one.
+//
+// With Durability.NONE the journal is write-behind: the caller returns as soon as
+// its change is applied in memory and queued. The queue is bounded
+// (-Dbanking.journal.queueCapacity, in queued writes); when the disk falls behind,
+// callers block until the writer makes room instead of queueing without limit.
+// sync() and close() return once everything queued before them is on disk; what
+// was still queued when the process died is lost, and replay restores the state
+// as of the last complete record.
+public class CommitPipeline {
+    
+    public enum Durability {
+        FSYNC,  // Return once the record is on stable storage
+        WRITE,  // Return once the record has been handed to the OS
+        NONE    // Return immediately, the record is written with the next batch
+    }
+    
+    private static final int QUEUE_CAPACITY = Integer.getInteger("banking.journal.queueCapacity", 16384);
+    
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    private static final int QUEUED = 0;
+    private static final int WRITTEN = 1;
+    private static final int SYNCED = 2;
+    private static final int FAILED = -1;
+    private static final int MAX_BATCH = 4096;
+    
+    private static final int RECORD = 0;
+    private static final int ROTATE = 1;
+    private static final int CLOSE = 2;
+    
+    private static final char FRAMED = '~';
+    // "~" + 8 hex digits + "|"
+    private static final int FRAME_LENGTH = 10;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    
+    // A queued record; callers may wait on it after releasing their own locks
+    public final class Entry {
+        private final byte[] bytes;
+        private final Durability durability;
+        private final int kind;
+        private final long queuedAt = System.nanoTime();
+        private volatile int state = QUEUED;
+        
+        private Entry(byte[] bytes, Durability durability, int kind) {
+            this.bytes = bytes;
+            this.durability = durability;
+            this.kind = kind;
+        }
+        
+        // Throws if the record failed or the wait was interrupted, so the caller
+        // never acknowledges a change that may not be durable
+        public void await() {
+            if (durability == Durability.NONE) {
+                return;
+            }
+            int target = durability == Durability.FSYNC ? SYNCED : WRITTEN;
+            synchronized (CommitPipeline.this) {
+                while (state >= QUEUED && state < target) {
+                    try {
+                        CommitPipeline.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted waiting for journal write");
+                    }
+                }
+            }
+            if (state == FAILED) {
+                throw new IllegalStateException("Journal write failed");
+            }
+        }
+    }
+    
+    private final Path directory;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private FileChannel channel;
+    private Thread writer;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private volatile long segment;
+    private volatile boolean closed;
+    // Enqueuers hold the read side while they check closed and queue their entry;
+    // close() holds the write side, so nothing can be queued behind its marker
+    private final ReentrantReadWriteLock enqueueLock = new ReentrantReadWriteLock();
+    // Oldest entry of the batch being written, null while the writer is idle
+    private volatile Entry writing;
+    
+    private final LatencyHistogram writeTime;
+    private final LatencyHistogram fsyncTime;
+    private final LatencyHistogram lag;
+    private final LatencyHistogram backpressure;
+    private final LongAdder bytesWritten;
+    private final LongAdder batches;
+    private final LongAdder records;
+    private final LongAdder errors;
+    
+    public CommitPipeline(Path directory) {
+        this(directory, new Metrics());
+    }
+    
+    public CommitPipeline(Path directory, Metrics metrics) {
+        this.directory = directory;
+        List<Long> existing = listSegments(directory);
+        this.segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        this.writeTime = metrics.timer("journal.write");
+        this.fsyncTime = metrics.timer("journal.fsync");
+        this.lag = metrics.timer("journal.lag");
+        this.backpressure = metrics.timer("journal.backpressure");
+        this.bytesWritten = metrics.counter("journal.bytesWritten");
+        this.batches = metrics.counter("journal.batches");
+        this.records = metrics.counter("journal.records");
+        this.errors = metrics.counter("journal.errors");
+        metrics.gauge("journal.queueDepth", queue::size);
+        metrics.gauge("journal.lagMicros", this::lagMicros);
+    }
+    
+    public void append(String record, Durability durability) {
+        enqueue(record, durability).await();
+    }
+    
+    public Entry enqueue(String record, Durability durability) {
+        return enqueueAll(Collections.singletonList(record), durability);
+    }
+    
+    // Queues several records as one write, e.g. a chunk of a batch
+    public Entry enqueueAll(List<String> records, Durability durability) {
+        Entry entry = new Entry(frame(records), durability, RECORD);
+        submit(entry);
+        return entry;
+    }
+    
+    // Fails with IllegalStateException once the pipeline is closed
+    private void submit(Entry entry) {
+        enqueueLock.readLock().lock();
+        try {
+            ensureStarted();
+            put(entry);
+        } finally {
+            enqueueLock.readLock().unlock();
+        }
+    }
+    
+    // Blocks while the queue is full. The caller's change is already applied in
+    // memory, so an interrupt does not abandon the record; it is kept for the caller.
+    private void put(Entry entry) {
+        if (queue.offer(entry)) {
+            return;
+        }
+        long started = System.nanoTime();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(entry);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        backpressure.record(System.nanoTime() - started);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // How long the oldest record not yet written has been waiting, 0 when caught up
+    private long lagMicros() {
+        Entry oldest = writing;
+        if (oldest == null) {
+            oldest = queue.peek();
+        }
+        return oldest == null ? 0 : (System.nanoTime() - oldest.queuedAt) / 1000;
+    }
+    
+    private static byte[] frame(List<String> records) {
+        byte[][] payloads = new byte[records.size()][];
+        int size = 0;
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = records.get(i).getBytes(StandardCharsets.UTF_8);
+            size += FRAME_LENGTH + payloads[i].length + 1;
+        }
+        byte[] framed = new byte[size];
+        CRC32 crc = new CRC32();
+        int position = 0;
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            long value = crc.getValue();
+            framed[position++] = FRAMED;
+            for (int shift = 28; shift >= 0; shift -= 4) {
+                framed[position++] = HEX[(int) (value >>> shift) & 0xF];
+            }
+            framed[position++] = '|';
+            System.arraycopy(payload, 0, framed, position, payload.length);
+            position += payload.length;
+            framed[position++] = '\n';
+        }
+        return framed;
+    }
+    
+    // Checks journal lines during replay. Lines written before records were
+    // framed are taken as they are.
+    public static final class RecordCheck {
+        private final CRC32 crc = new CRC32();
+        private byte[] scratch = new byte[256];
+        
+        // Where the record in chars[start, end) begins, or -1 if it is torn or damaged
+        public int recordStart(char[] chars, int start, int end) {
+            if (start == end || chars[start] != FRAMED) {
+                return start;
+            }
+            if (end - start < FRAME_LENGTH || chars[start + FRAME_LENGTH - 1] != '|') {
+                return -1;
+            }
+            long expected = 0;
+            for (int i = start + 1; i < start + FRAME_LENGTH - 1; i++) {
+                int digit = Character.digit(chars[i], 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                expected = expected << 4 | digit;
+            }
+            int from = start + FRAME_LENGTH;
+            int length = end - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            crc.reset();
+            int i = 0;
+            while (i < length && chars[from + i] < 0x80) {
+                scratch[i] = (byte) chars[from + i];
+                i++;
+            }
+            if (i == length) {
+                crc.update(scratch, 0, length);
+            } else {
+                crc.update(new String(chars, from, length).getBytes(StandardCharsets.UTF_8));
+            }
+            return crc.getValue() == expected ? from : -1;
+        }
+    }
+    
+    // Returns once everything queued before this call is on stable storage
+    public void sync() {
+        enqueueAll(Collections.emptyList(), Durability.FSYNC).await();
+    }
+    
+    // Seals the current segment once everything queued before this call is on
+    // disk and starts a new one. Returns the number of the sealed segment.
+    public long rotate() {
+        long sealed = segment;
+        Entry marker = new Entry(null, Durability.FSYNC, ROTATE);
+        submit(marker);
+        marker.await();
+        return sealed;
+    }
+    
+    public long currentSegment() {
+        return segment;
+    }
+    
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+    
+    public static List<Long> listSegments(Path directory) {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                 Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(
+                        SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        } catch (IOException e) {
+            // Missing directory means no segments
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+    
+    private synchronized void ensureStarted() {
+        if (closed) {
+            throw new IllegalStateException("Commit pipeline is closed");
+        }
+        if (writer != null) {
+            return;
+        }
+        try {
+            channel = openSegment(segment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open journal", e);
+        }
+        writer = new Thread(this::runWriter, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    private void runWriter() {
+        List<Entry> drained = new ArrayList<>();
+        List<Entry> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(drained, MAX_BATCH - 1);
+            writing = drained.get(0);
+            for (Entry entry : drained) {
+                if (entry.kind == RECORD) {
+                    batch.add(entry);
+                    continue;
+                }
+                // Markers apply to everything queued ahead of them
+                commit(batch, true);
+                batch.clear();
+                if (entry.kind == ROTATE) {
+                    entry.state = switchSegment() ? SYNCED : FAILED;
+                } else {
+                    // close() keeps anything from being queued after its marker
+                    running = false;
+                }
+            }
+            commit(batch, !running);
+            batch.clear();
+            drained.clear();
+            writing = null;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+    
+    private boolean switchSegment() {
+        try {
+            channel.force(false);
+            channel.close();
+            channel = openSegment(segment + 1);
+            segment++;
+            return true;
+        } catch (IOException e) {
+            errors.increment();
+            System.err.println("Error rotating journal: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void commit(List<Entry> batch, boolean forceSync) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean needsSync = forceSync;
+        int size = 0;
+        for (Entry entry : batch) {
+            size += entry.bytes.length;
+            needsSync |= entry.durability == Durability.FSYNC;
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        for (Entry entry : batch) {
+            buffer.put(entry.bytes);
+        }
+        buffer.flip();
+        
+        int state;
+        try {
+            long started = System.nanoTime();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            writeTime.record(System.nanoTime() - started);
+            bytesWritten.add(size);
+            batches.increment();
+            records.add(batch.size());
+            lag.record(System.nanoTime() - batch.get(0).queuedAt);
+            markAll(batch, WRITTEN);
+            if (needsSync) {
+                started = System.nanoTime();
+                channel.force(false);
+                fsyncTime.record(System.nanoTime() - started);
+            }
+            state = SYNCED;
+        } catch (IOException e) {
+            errors.increment();
+            System.err.println("Error writing journal batch: " + e.getMessage());
+            state = FAILED;
+        }
+        markAll(batch, state);
+    }
+    
+    private void markAll(List<Entry> batch, int state) {
+        for (Entry entry : batch) {
+            entry.state = state;
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+    
+    // Writes and forces everything still queued, then releases the file
+    public void close() {
+        Thread toJoin;
+        enqueueLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                toJoin = writer;
+            }
+            if (toJoin == null) {
+                return;
+            }
+            put(new Entry(null, Durability.NONE, CLOSE));
+        } finally {
+            enqueueLock.writeLock().unlock();
+        }
+        try {
+            toJoin.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -1,112 +1,801 @@
-package com.banking.service;
-
-import com.banking.model.User;
-import com.banking.model.Account;
-import com.banking.model.Transaction;
-import com.banking.security.InputValidator;
-
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-
-public class FileDataService {
-    private static final String DATA_DIR = "data";
-    private static final String USERS_FILE = DATA_DIR + "/users.txt";
-    private static final String ACCOUNTS_FILE = DATA_DIR + "/accounts.txt";
-    private static final String TRANSACTIONS_FILE = DATA_DIR + "/transactions.txt";
-    
-    static {
-        // Create data directory if it doesn't exist
-        new File(DATA_DIR).mkdirs();
-    }
-    
-    public List<User> loadUsers() {
-        List<User> users = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    User user = User.fromString(InputValidator.sanitizeInput(line));
-                    if (user != null) {
-                        users.add(user);
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
-        } catch (IOException e) {
-            System.err.println("Error loading users: " + e.getMessage());
-        }
-        return users;
-    }
-    
-    public void saveUsers(List<User> users) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USERS_FILE))) {
-            for (User user : users) {
-                writer.println(user.toString());
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
-        }
-    }
-    
-    public List<Account> loadAccounts() {
-        List<Account> accounts = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(ACCOUNTS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    Account account = Account.fromString(InputValidator.sanitizeInput(line));
-                    if (account != null) {
-                        accounts.add(account);
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
-        } catch (IOException e) {
-            System.err.println("Error loading accounts: " + e.getMessage());
-        }
-        return accounts;
-    }
-    
-    public void saveAccounts(List<Account> accounts) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(ACCOUNTS_FILE))) {
-            for (Account account : accounts) {
-                writer.println(account.toString());
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving accounts: " + e.getMessage());
-        }
-    }
-    
-    public List<Transaction> loadTransactions() {
-        List<Transaction> transactions = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(TRANSACTIONS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    Transaction transaction = Transaction.fromString(InputValidator.sanitizeInput(line));
-                    if (transaction != null) {
-                        transactions.add(transaction);
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
-        } catch (IOException e) {
-            System.err.println("Error loading transactions: " + e.getMessage());
-        }
-        return transactions;
-    }
-    
-    public void saveTransactions(List<Transaction> transactions) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(TRANSACTIONS_FILE))) {
-            for (Transaction transaction : transactions) {
-                writer.println(transaction.toString());
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving transactions: " + e.getMessage());
-        }
-    }
+package com.banking.service;
+
+import com.banking.model.User;
+import com.banking.model.Account;
+import com.banking.model.Transaction;
+import com.banking.service.CommitPipeline.Durability;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+public class FileDataService {
+    private static final String DATA_DIR = "data";
+    private static final String USERS_FILE = DATA_DIR + "/users.txt";
+    private static final String ACCOUNTS_FILE = DATA_DIR + "/accounts.txt";
+    private static final String TRANSACTIONS_FILE = DATA_DIR + "/transactions.txt";
+    private static final String SNAPSHOT_FILE = DATA_DIR + "/snapshot.bin";
+    private static final String INTEREST_FILE = DATA_DIR + "/interest.txt";
+    private static final String RECONCILE_FILE = DATA_DIR + "/reconciled.bin";
+    private static final String LOCK_FILE = DATA_DIR + "/lock";
+    private static final int SNAPSHOT_MAGIC = 0x42414E4B; // "BANK"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MIGRATION_BATCH = 64 * 1024;
+    
+    // Journal record prefixes, one record per line
+    private static final String USER_RECORD = "U|";
+    private static final String ACCOUNT_RECORD = "A|";
+    private static final String TRANSACTION_RECORD = "T|";
+    // Both legs of a transfer in one record, separated by a tab
+    private static final String TRANSFER_RECORD = "X|";
+    
+    public enum PersistenceMode {
+        FULL_REWRITE, JOURNAL
+    }
+    
+    static {
+        // Create data directory if it doesn't exist
+        new File(DATA_DIR).mkdirs();
+    }
+    
+    // What a snapshot holds besides the users and accounts, which load straight into
+    // a UserStore and an AccountStore. Transactions live in the first ledgerCount
+    // ledger records.
+    public static class Snapshot {
+        private final long ledgerCount;
+        private final long highestTransactionId;
+        private final long coveredSegment;
+        
+        private Snapshot(long ledgerCount, long highestTransactionId, long coveredSegment) {
+            this.ledgerCount = ledgerCount;
+            this.highestTransactionId = highestTransactionId;
+            this.coveredSegment = coveredSegment;
+        }
+        
+        public long getLedgerCount() { return ledgerCount; }
+        public long getHighestTransactionId() { return highestTransactionId; }
+        public long getCoveredSegment() { return coveredSegment; }
+    }
+    
+    private final PersistenceMode mode;
+    private final Durability defaultDurability;
+    private final CommitPipeline journal;
+    private BinaryLedger ledger;
+    // Held until close(): the working tables under data/ are rebuilt at startup, which
+    // would pull them out from under a second instance
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    
+    private final Metrics metrics;
+    private final LatencyHistogram loadTime;
+    private final LatencyHistogram saveTime;
+    private final LatencyHistogram ledgerAppendTime;
+    private final LatencyHistogram ledgerForceTime;
+    private final LatencyHistogram snapshotWriteTime;
+    private final LatencyHistogram snapshotInstallTime;
+    private final LatencyHistogram replayTime;
+    private final LongAdder bytesWritten;
+    private final LongAdder errors;
+    private final LongAdder tornRecords;
+    
+    public FileDataService() {
+        this(new Metrics());
+    }
+    
+    public FileDataService(Metrics metrics) {
+        this(PersistenceMode.valueOf(
+                System.getProperty("banking.persistence", "JOURNAL").toUpperCase()),
+            Durability.valueOf(
+                System.getProperty("banking.durability", "FSYNC").toUpperCase()),
+            metrics);
+    }
+    
+    public FileDataService(PersistenceMode mode, Durability defaultDurability) {
+        this(mode, defaultDurability, new Metrics());
+    }
+    
+    public FileDataService(PersistenceMode mode, Durability defaultDurability, Metrics metrics) {
+        this.mode = mode;
+        this.defaultDurability = defaultDurability;
+        this.metrics = metrics;
+        try {
+            this.lockChannel = FileChannel.open(Paths.get(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open " + LOCK_FILE, e);
+        }
+        this.lock = lockDataDirectory(lockChannel);
+        this.journal = new CommitPipeline(Paths.get(DATA_DIR), metrics);
+        this.loadTime = metrics.timer("file.load");
+        this.saveTime = metrics.timer("file.save");
+        this.ledgerAppendTime = metrics.timer("file.ledger.append");
+        this.ledgerForceTime = metrics.timer("file.ledger.force");
+        this.snapshotWriteTime = metrics.timer("file.snapshot.write");
+        this.snapshotInstallTime = metrics.timer("file.snapshot.install");
+        this.replayTime = metrics.timer("file.journal.replay");
+        this.bytesWritten = metrics.counter("file.bytesWritten");
+        this.errors = metrics.counter("file.errors");
+        this.tornRecords = metrics.counter("file.journal.tornRecords");
+    }
+    
+    // Fails fast if another process, or another service in this one, has the directory
+    private static FileLock lockDataDirectory(FileChannel channel) {
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (OverlappingFileLockException | IOException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already failing
+            }
+            throw new IllegalStateException("Data directory " + DATA_DIR + " is in use by another instance");
+        }
+        return acquired;
+    }
+    
+    public PersistenceMode getMode() { return mode; }
+    public Durability getDefaultDurability() { return defaultDurability; }
+    
+    public boolean isJournaling() {
+        return mode == PersistenceMode.JOURNAL;
+    }
+    
+    public List<User> loadUsers() {
+        long started = System.nanoTime();
+        List<User> users = new ArrayList<>();
+        RecordParser parser = new RecordParser();
+        try (Reader reader = new FileReader(USERS_FILE)) {
+            parser.readLines(reader, (chars, start, end) -> {
+                User user = parser.parseUser(chars, start, end);
+                if (user != null) {
+                    users.add(user);
+                }
+            });
+        } catch (FileNotFoundException e) {
+            // File doesn't exist yet, return empty list
+        } catch (IOException e) {
+            error("Error loading users: " + e.getMessage());
+        }
+        metrics.recordIo(loadTime, started);
+        return users;
+    }
+    
+    public void saveUsers(List<User> users) {
+        long started = System.nanoTime();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(USERS_FILE))) {
+            for (User user : users) {
+                writer.println(user.toString());
+            }
+        } catch (IOException e) {
+            error("Error saving users: " + e.getMessage());
+        }
+        recordSave(started, Paths.get(USERS_FILE));
+    }
+    
+    public List<Account> loadAccounts() {
+        long started = System.nanoTime();
+        List<Account> accounts = new ArrayList<>();
+        RecordParser parser = new RecordParser();
+        try (Reader reader = new FileReader(ACCOUNTS_FILE)) {
+            parser.readLines(reader, (chars, start, end) -> {
+                Account account = parser.parseAccount(chars, start, end);
+                if (account != null) {
+                    accounts.add(account);
+                }
+            });
+        } catch (FileNotFoundException e) {
+            // File doesn't exist yet, return empty list
+        } catch (IOException e) {
+            error("Error loading accounts: " + e.getMessage());
+        }
+        metrics.recordIo(loadTime, started);
+        return accounts;
+    }
+    
+    public void saveAccounts(List<Account> accounts) {
+        long started = System.nanoTime();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(ACCOUNTS_FILE))) {
+            for (Account account : accounts) {
+                writer.println(account.toString());
+            }
+        } catch (IOException e) {
+            error("Error saving accounts: " + e.getMessage());
+        }
+        recordSave(started, Paths.get(ACCOUNTS_FILE));
+    }
+    
+    // Parses transactions.txt in parallel chunks
+    public TransactionStore loadTransactions() {
+        Path path = Paths.get(TRANSACTIONS_FILE);
+        if (!Files.exists(path)) {
+            // File doesn't exist yet, return empty result
+            return new TransactionStore();
+        }
+        long started = System.nanoTime();
+        try {
+            return TransactionLoader.loadText(path);
+        } catch (IOException e) {
+            error("Error loading transactions: " + e.getMessage());
+            return new TransactionStore();
+        } finally {
+            metrics.recordIo(loadTime, started);
+        }
+    }
+    
+    public void saveTransactions(List<Transaction> transactions) {
+        long started = System.nanoTime();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(TRANSACTIONS_FILE))) {
+            for (Transaction transaction : transactions) {
+                writer.println(transaction.toString());
+            }
+        } catch (IOException e) {
+            error("Error saving transactions: " + e.getMessage());
+        }
+        recordSave(started, Paths.get(TRANSACTIONS_FILE));
+    }
+    
+    // Appends transactions to the binary ledger, linking each one after its account's
+    // last record and moving the account's history bounds. Nothing is forced; on
+    // failure the ledger and the bounds are left as they were.
+    public synchronized void appendToLedger(List<Transaction> transactions, AccountStore accounts)
+            throws IOException {
+        long started = System.nanoTime();
+        BinaryLedger target = ledger();
+        long start = target.size();
+        Map<String, long[]> previousBounds = new HashMap<>();
+        try {
+            for (Transaction transaction : transactions) {
+                String accountNumber = transaction.getAccountNumber();
+                long first = accounts.getFirstLedgerRow(accountNumber);
+                long last = accounts.getLastLedgerRow(accountNumber);
+                previousBounds.putIfAbsent(accountNumber, new long[] {first, last});
+                long row = target.append(transaction, last);
+                if (last >= 0) {
+                    target.setNext(last, row);
+                }
+                accounts.setLedgerRows(accountNumber, first >= 0 ? first : row, row);
+            }
+        } catch (IOException | RuntimeException e) {
+            target.truncate(start);
+            for (Map.Entry<String, long[]> entry : previousBounds.entrySet()) {
+                accounts.setLedgerRows(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+            throw e;
+        }
+        metrics.recordIo(ledgerAppendTime, started);
+        bytesWritten.add((target.size() - start) * BinaryLedger.RECORD_SIZE);
+    }
+    
+    // Makes everything appended so far durable
+    public synchronized boolean forceLedger() {
+        long started = System.nanoTime();
+        try {
+            ledger().force();
+            return true;
+        } catch (IOException e) {
+            error("Error writing ledger: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.recordIo(ledgerForceTime, started);
+        }
+    }
+    
+    // Opens the ledger with its first count records; later ones were never covered
+    // by a snapshot and are dropped
+    public synchronized BinaryLedger openLedger(long count) throws IOException {
+        BinaryLedger source = ledger();
+        if (source.size() < count) {
+            throw new IOException("Ledger is missing " + (count - source.size()) + " records");
+        }
+        source.truncate(count);
+        return source;
+    }
+    
+    // Opens the ledger for a data directory loaded from text files. Without a snapshot
+    // nothing refers to ledger records, so any found here are left for an operator:
+    // they are never dropped on the way to starting up.
+    public synchronized BinaryLedger openEmptyLedger() throws IOException {
+        BinaryLedger source = ledger();
+        if (source.size() > 0) {
+            throw new IOException("Ledger has " + source.size() + " records but there is no snapshot;"
+                + " restore " + SNAPSHOT_FILE + " or rerun the ledger conversion");
+        }
+        return source;
+    }
+    
+    // The ledger opened by loadSnapshot or openLedger, or null
+    public synchronized BinaryLedger getLedger() {
+        return ledger;
+    }
+    
+    private BinaryLedger ledger() throws IOException {
+        if (ledger == null) {
+            ledger = BinaryLedger.open(Paths.get(DATA_DIR));
+        }
+        return ledger;
+    }
+    
+    // A fresh working account table; the caller fills it from a snapshot or text files
+    public AccountStore openAccountStore(int cacheCapacity) throws IOException {
+        return new AccountStore(Paths.get(DATA_DIR), cacheCapacity);
+    }
+    
+    // A fresh working user table; the caller fills it the same way
+    public UserStore openUserStore(int initialCapacity) throws IOException {
+        return new UserStore(Paths.get(DATA_DIR), initialCapacity);
+    }
+    
+    // Per-account ledger totals kept between reconciliation runs
+    public Reconciler openReconciler() {
+        return new Reconciler(Paths.get(RECONCILE_FILE));
+    }
+    
+    // Converts a text data directory to the snapshot and ledger format. Transactions
+    // stream from transactions.txt into the ledger, so the file may exceed the heap.
+    // Journal segments are left in place and replay on top of the new snapshot.
+    public synchronized long migrateToLedger() throws IOException {
+        if (Files.exists(Paths.get(SNAPSHOT_FILE))) {
+            throw new IOException("Data directory already has a snapshot");
+        }
+        BinaryLedger target = ledger();
+        target.truncate(0);
+        AccountStore accounts = openAccountStore(0);
+        UserStore users = openUserStore(0);
+        try {
+            for (User user : loadUsers()) {
+                users.insert(user);
+            }
+            for (Account account : loadAccounts()) {
+                accounts.insert(account);
+            }
+            RecordParser parser = new RecordParser();
+            List<Transaction> batch = new ArrayList<>();
+            long[] highestId = {-1};
+            IOException[] failure = new IOException[1];
+            try (Reader reader = new FileReader(TRANSACTIONS_FILE)) {
+                parser.readLines(reader, (chars, start, end) -> {
+                    Transaction transaction = parser.parseTransaction(chars, start, end);
+                    if (transaction == null || failure[0] != null) {
+                        return;
+                    }
+                    highestId[0] = Math.max(highestId[0],
+                        IdGenerator.transactionValue(transaction.getTransactionId()));
+                    batch.add(transaction);
+                    if (batch.size() == MIGRATION_BATCH) {
+                        try {
+                            appendToLedger(batch, accounts);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                        batch.clear();
+                    }
+                });
+            } catch (FileNotFoundException e) {
+                // No transactions yet
+            }
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            appendToLedger(batch, accounts);
+            target.force();
+            Path pending = writeSnapshot(users, accounts, Account::getBalanceCents, target.size(), highestId[0],
+                0);
+            if (!installSnapshot(pending)) {
+                throw new IOException("Unable to install snapshot");
+            }
+            return target.size();
+        } finally {
+            users.close();
+            accounts.close();
+        }
+    }
+    
+    // Journal appends only enqueue; callers wait on the returned entry for durability
+    public CommitPipeline.Entry appendUser(User user, Durability durability) {
+        return journal.enqueue(USER_RECORD + user.toString(), durability);
+    }
+    
+    public CommitPipeline.Entry appendAccount(Account account, Durability durability) {
+        return journal.enqueue(ACCOUNT_RECORD + account.toString(), durability);
+    }
+    
+    public CommitPipeline.Entry appendTransaction(Transaction transaction, Durability durability) {
+        return journal.enqueue(TRANSACTION_RECORD + transaction.toString(), durability);
+    }
+    
+    // Journals a batch of transactions as one write
+    public CommitPipeline.Entry appendTransactions(List<Transaction> transactions, Durability durability) {
+        List<String> records = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            records.add(TRANSACTION_RECORD + transaction.toString());
+        }
+        return journal.enqueueAll(records, durability);
+    }
+    
+    // Forces every record appended so far to disk
+    public void syncJournal() {
+        journal.sync();
+    }
+    
+    public CommitPipeline.Entry appendTransfer(Transaction debit, Transaction credit, Durability durability) {
+        return journal.enqueue(TRANSFER_RECORD + debit.toString() + "\t" + credit.toString(), durability);
+    }
+    
+    // Applies the journal segments written after afterSegment on top of the loaded
+    // state. User records replace an earlier version with the same username, account
+    // records are inserted unless the number exists, transaction records are appended
+    // and applied to their account's balance.
+    public void replayJournal(UserStore users, AccountStore accounts, TransactionStore transactions,
+                              long afterSegment) {
+        long started = System.nanoTime();
+        RecordParser parser = new RecordParser();
+        CommitPipeline.RecordCheck check = new CommitPipeline.RecordCheck();
+        for (long segment : CommitPipeline.listSegments(Paths.get(DATA_DIR))) {
+            if (segment <= afterSegment) {
+                continue;
+            }
+            Path path = CommitPipeline.segmentPath(Paths.get(DATA_DIR), segment);
+            long[] torn = new long[1];
+            try (Reader reader = Files.newBufferedReader(path)) {
+                parser.readLines(reader, (chars, start, end) -> {
+                    int record = check.recordStart(chars, start, end);
+                    if (record < 0) {
+                        torn[0]++;
+                    } else {
+                        applyJournalRecord(parser, chars, record, end, users, accounts, transactions);
+                    }
+                });
+            } catch (IOException e) {
+                error("Error replaying journal: " + e.getMessage());
+            }
+            // Expected once after a crash: the last write of a segment was cut short
+            if (torn[0] > 0) {
+                tornRecords.add(torn[0]);
+                System.err.println("Skipped " + torn[0] + " torn journal record(s) in " + path.getFileName());
+            }
+        }
+        metrics.recordIo(replayTime, started);
+    }
+    
+    // Records that fail their checksum were skipped by the caller; unparseable
+    // unframed records (a torn final write in an older journal) are skipped here
+    private void applyJournalRecord(RecordParser parser, char[] chars, int start, int end,
+                                    UserStore users, AccountStore accounts, TransactionStore transactions) {
+        if (end - start < 2 || chars[start + 1] != '|') {
+            return;
+        }
+        char kind = chars[start];
+        int payload = start + 2;
+        if (kind == USER_RECORD.charAt(0)) {
+            User user = parser.parseUser(chars, payload, end);
+            if (user != null) {
+                users.put(user);
+            }
+        } else if (kind == ACCOUNT_RECORD.charAt(0)) {
+            Account account = parser.parseAccount(chars, payload, end);
+            if (account != null) {
+                accounts.insert(account);
+            }
+        } else if (kind == TRANSACTION_RECORD.charAt(0)) {
+            Transaction transaction = parser.parseTransaction(chars, payload, end);
+            if (transaction != null) {
+                replayTransaction(transaction, transactions, accounts);
+            }
+        } else if (kind == TRANSFER_RECORD.charAt(0)) {
+            int split = payload;
+            while (split < end && chars[split] != '\t') {
+                split++;
+            }
+            Transaction debit = split < end ? parser.parseTransaction(chars, payload, split) : null;
+            Transaction credit = split < end ? parser.parseTransaction(chars, split + 1, end) : null;
+            // Both legs or neither
+            if (debit != null && credit != null) {
+                replayTransaction(debit, transactions, accounts);
+                replayTransaction(credit, transactions, accounts);
+            }
+        }
+    }
+    
+    private void replayTransaction(Transaction transaction, TransactionStore transactions,
+                                   AccountStore accounts) {
+        Account account = accounts.get(transaction.getAccountNumber());
+        if (account != null) {
+            // Already approved when it was posted, so no overdraft check here
+            if (transaction.getType().isCredit()) {
+                account.adjustBalance(transaction.getAmountCents());
+            } else {
+                account.adjustBalance(-transaction.getAmountCents());
+            }
+        }
+        transactions.append(transaction);
+    }
+    
+    // Seals the active journal segment; returns the last segment a snapshot taken
+    // now would cover
+    public long rotateJournal() {
+        return journal.rotate();
+    }
+    
+    // Removes journal segments whose contents are already part of the snapshot
+    public void compactJournal(long coveredSegment) {
+        for (long segment : CommitPipeline.listSegments(Paths.get(DATA_DIR))) {
+            if (segment > coveredSegment) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(CommitPipeline.segmentPath(Paths.get(DATA_DIR), segment));
+            } catch (IOException e) {
+                error("Error compacting journal: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Writes a snapshot to a temporary file without forcing it. balanceAt gives each
+    // account's balance as of ledgerCount, so the snapshot can be streamed while
+    // postings go on; users and accounts added since replay from the journal over it.
+    // Returns null on failure.
+    public Path writeSnapshot(UserStore users, AccountStore accounts, ToLongFunction<Account> balanceAt,
+                              long ledgerCount, long highestTransactionId, long coveredSegment) {
+        long started = System.nanoTime();
+        Path temp = Paths.get(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp.toFile()), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(coveredSegment);
+            out.writeLong(ledgerCount);
+            out.writeLong(highestTransactionId);
+            
+            IOException[] failure = new IOException[1];
+            // Each count is taken with the records it announces, so users and accounts
+            // added while the snapshot is written cannot make them disagree
+            users.forEach(count -> {
+                try {
+                    out.writeInt(count);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }, user -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeUTF(user.getUsername());
+                    out.writeUTF(user.getPasswordHash());
+                    out.writeUTF(user.getSalt());
+                    out.writeBoolean(user.isActive());
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            
+            accounts.forEach(count -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeInt(count);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }, account -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    String accountNumber = account.getAccountNumber();
+                    out.writeUTF(accountNumber);
+                    out.writeUTF(account.getUsername());
+                    out.writeByte(account.getType().ordinal());
+                    out.writeLong(balanceAt.applyAsLong(account));
+                    writeTimestamp(out, account.getCreatedAt());
+                    out.writeLong(accounts.getFirstLedgerRow(accountNumber));
+                    out.writeLong(accounts.getLastLedgerRow(accountNumber));
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        } catch (IOException e) {
+            error("Error writing snapshot: " + e.getMessage());
+            return null;
+        }
+        metrics.recordIo(snapshotWriteTime, started);
+        try {
+            bytesWritten.add(Files.size(temp));
+        } catch (IOException e) {
+            // Size is informational only
+        }
+        return temp;
+    }
+    
+    // Forces a snapshot written by writeSnapshot and puts it in place of the current one
+    public boolean installSnapshot(Path pending) {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(pending, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException e) {
+            error("Error writing snapshot: " + e.getMessage());
+            return false;
+        }
+        
+        try {
+            Files.move(pending, Paths.get(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            error("Error installing snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.recordIo(snapshotInstallTime, started);
+        }
+    }
+    
+    // The last interest run as {day, STARTED|DONE, first transaction row}, or null if
+    // interest has never been accrued
+    public String[] readInterestMarker() {
+        Path path = Paths.get(INTEREST_FILE);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            String[] fields = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim().split(",");
+            return fields.length == 3 ? fields : null;
+        } catch (IOException e) {
+            error("Error loading interest marker: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    // Replaces the interest marker; it is forced before it is moved into place
+    public boolean writeInterestMarker(String day, String state, long firstRow) {
+        Path temp = Paths.get(INTEREST_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            String line = day + "," + state + "," + firstRow + "\n";
+            channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        } catch (IOException e) {
+            error("Error saving interest marker: " + e.getMessage());
+            return false;
+        }
+        try {
+            Files.move(temp, Paths.get(INTEREST_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            error("Error saving interest marker: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Loads the snapshot's users and accounts into the given stores and opens the
+    // ledger at the snapshot's record count. Returns null only when there is no
+    // snapshot; one that cannot be read whole throws, and the stores are left empty.
+    public Snapshot loadSnapshot(AccountStore accounts, UserStore users) throws IOException {
+        long started = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(SNAPSHOT_FILE), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Snapshot has an unknown format");
+            }
+            long coveredSegment = in.readLong();
+            long ledgerCount = in.readLong();
+            long highestId = in.readLong();
+            
+            // Everything is read before the first insert, so a short or corrupt file
+            // leaves nothing half loaded
+            int userCount = in.readInt();
+            List<User> loadedUsers = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                User user = new User(in.readUTF(), in.readUTF(), in.readUTF());
+                user.setActive(in.readBoolean());
+                loadedUsers.add(user);
+            }
+            
+            int accountCount = in.readInt();
+            List<Account> loadedAccounts = new ArrayList<>();
+            long[] ledgerRows = new long[Math.max(0, accountCount) * 2];
+            Account.AccountType[] types = Account.AccountType.values();
+            for (int i = 0; i < accountCount; i++) {
+                String accountNumber = in.readUTF();
+                String username = in.readUTF();
+                int type = in.readByte();
+                if (type < 0 || type >= types.length) {
+                    throw new IOException("Snapshot has an unknown account type " + type);
+                }
+                long balance = in.readLong();
+                loadedAccounts.add(new Account(accountNumber, username, types[type], balance, readTimestamp(in)));
+                ledgerRows[i * 2] = in.readLong();
+                ledgerRows[i * 2 + 1] = in.readLong();
+            }
+            
+            // Ledger records past the snapshot's count were never covered by it
+            BinaryLedger source = openLedger(ledgerCount);
+            for (User user : loadedUsers) {
+                users.insert(user);
+            }
+            for (int i = 0; i < loadedAccounts.size(); i++) {
+                accounts.insert(loadedAccounts.get(i), ledgerRows[i * 2], ledgerRows[i * 2 + 1]);
+            }
+            return new Snapshot(source.size(), highestId, coveredSegment);
+        } catch (EOFException e) {
+            throw new IOException("Snapshot is cut short", e);
+        } catch (FileNotFoundException e) {
+            if (Files.exists(Paths.get(SNAPSHOT_FILE))) {
+                throw e;
+            }
+            return null;
+        } finally {
+            metrics.recordIo(loadTime, started);
+        }
+    }
+    
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime timestamp) throws IOException {
+        out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(timestamp.getNano());
+    }
+    
+    private static LocalDateTime readTimestamp(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+    
+    // Errors are counted as well as printed so they show up in the metrics
+    private void error(String message) {
+        errors.increment();
+        System.err.println(message);
+    }
+    
+    // Records a finished write in the save timer and the byte count
+    private void recordSave(long started, Path path) {
+        metrics.recordIo(saveTime, started);
+        try {
+            bytesWritten.add(Files.size(path));
+        } catch (IOException e) {
+            // Size is informational only
+        }
+    }
+    
+    public synchronized void close() {
+        journal.close();
+        if (ledger != null) {
+            try {
+                ledger.close();
+            } catch (IOException e) {
+                error("Error closing ledger: " + e.getMessage());
+            }
+            ledger = null;
+        }
+        if (lockChannel.isOpen()) {
+            try {
+                lock.release();
+                lockChannel.close();
+            } catch (IOException e) {
+                error("Error releasing data directory: " + e.getMessage());
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.banking.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Transaction IDs and account numbers.
+//
+// Transaction IDs are "TXN" followed by a 64-bit value laid out as
+// [milliseconds since 2020][12-bit sequence][6-bit stripe]. Threads are spread
+// over 64 independently advancing stripes, so generation is a single CAS on a
+// mostly uncontended counter and two stripes can never produce the same value.
+// A stripe that issues more than 4096 IDs in one millisecond borrows from the
+// next millisecond, which keeps its IDs unique and increasing.
+//
+// Account numbers are drawn at random from the free part of a permutation of
+// the ACC100000-ACC999999 space, so allocation stays O(1) however full it gets.
+public class IdGenerator {
+    public static final String TRANSACTION_PREFIX = "TXN";
+    public static final String ACCOUNT_PREFIX = "ACC";
+    
+    private static final long EPOCH_MILLIS = 1577836800000L; // 2020-01-01T00:00:00Z
+    private static final int SEQUENCE_BITS = 12;
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    
+    private static final int FIRST_ACCOUNT = 100000;
+    static final int ACCOUNT_SPACE = 900000; // 6-digit numbers
+    
+    private final AtomicLong[] stripes = new AtomicLong[STRIPES];
+    
+    // free[0, freeCount) holds the unused account offsets, position[] is their index in free
+    private final int[] free = new int[ACCOUNT_SPACE];
+    private final int[] position = new int[ACCOUNT_SPACE];
+    private int freeCount = ACCOUNT_SPACE;
+    
+    public IdGenerator() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLong();
+        }
+        for (int i = 0; i < ACCOUNT_SPACE; i++) {
+            free[i] = i;
+            position[i] = i;
+        }
+    }
+    
+    public String nextTransactionId() {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLong counter = stripes[stripe];
+        long floor = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long current;
+        long next;
+        do {
+            current = counter.get();
+            next = Math.max(floor, current + 1);
+        } while (!counter.compareAndSet(current, next));
+        return TRANSACTION_PREFIX + ((next << STRIPE_BITS) | stripe);
+    }
+    
+    // Numeric part of a transaction ID, or -1 if it is not in the TXN<digits> form
+    public static long transactionValue(String transactionId) {
+        if (transactionId == null || !transactionId.startsWith(TRANSACTION_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(transactionId.substring(TRANSACTION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    // Makes sure IDs issued from now on sort after a value loaded from disk
+    public void observeTransactionValue(long value) {
+        if (value < 0) {
+            return;
+        }
+        long sequence = value >>> STRIPE_BITS;
+        for (AtomicLong counter : stripes) {
+            long current;
+            do {
+                current = counter.get();
+            } while (current < sequence && !counter.compareAndSet(current, sequence));
+        }
+    }
+    
+    public synchronized String nextAccountNumber() {
+        if (freeCount == 0) {
+            throw new IllegalStateException("Account number space exhausted");
+        }
+        int offset = free[ThreadLocalRandom.current().nextInt(freeCount)];
+        remove(offset);
+        return ACCOUNT_PREFIX + (FIRST_ACCOUNT + offset);
+    }
+    
+    // Marks an existing account number as taken; numbers outside the space are ignored
+    public synchronized void observeAccountNumber(String accountNumber) {
+        int offset = accountOffset(accountNumber);
+        if (offset >= 0 && position[offset] < freeCount) {
+            remove(offset);
+        }
+    }
+    
+    // Account number at a position of the account space
+    public static String accountNumber(int offset) {
+        return ACCOUNT_PREFIX + (FIRST_ACCOUNT + offset);
+    }
+    
+    // Position of an ACC<6 digits> number in the account space, or -1 for any other string
+    public static int accountOffset(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != ACCOUNT_PREFIX.length() + 6
+                || !accountNumber.startsWith(ACCOUNT_PREFIX)) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = ACCOUNT_PREFIX.length(); i < accountNumber.length(); i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        int offset = number - FIRST_ACCOUNT;
+        return offset >= 0 && offset < ACCOUNT_SPACE ? offset : -1;
+    }
+    
+    public synchronized int getFreeAccountNumbers() {
+        return freeCount;
+    }
+    
+    private void remove(int offset) {
+        int index = position[offset];
+        int last = free[--freeCount];
+        free[index] = last;
+        position[last] = index;
+        free[freeCount] = offset;
+        position[offset] = freeCount;
+    }
+}
\ No newline at end of file
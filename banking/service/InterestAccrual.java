@@ -0,0 +1,207 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.InterestResult;
+import com.banking.model.Money;
+import com.banking.model.Transaction;
+import com.banking.service.CommitPipeline.Durability;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Posts one day's interest to every SAVINGS account: the balance times the annual
+// rate over 365, rounded half-even to the cent, as an INTEREST transaction. Slices
+// of the account table are accrued in parallel on a fork-join pool. Each slice
+// holds only the shared side of the checkpoint lock, like a deposit, so live
+// operations keep running, and queues its records as one unforced journal write.
+// The caller makes the run durable once it is done.
+//
+// Each day is paid once. A marker file records when a run starts and finishes;
+// running the same day again after a run died part way skips the accounts whose
+// interest for that day was already posted.
+final class InterestAccrual {
+    // Annual rate paid on SAVINGS balances, accrued daily on an actual/365 basis
+    private static final String SAVINGS_RATE = System.getProperty("banking.interest.savingsRate", "0.02");
+    // Account table slots each task covers (-Dbanking.interest.partition)
+    private static final int PARTITION = Math.max(1, Integer.getInteger("banking.interest.partition", 16384));
+    
+    private final FileDataService dataService;
+    private final AccountStore accounts;
+    private final TransactionStore transactions;
+    private final IdGenerator idGenerator;
+    private final ReentrantReadWriteLock checkpointLock;
+    private final AccountLocks accountLocks;
+    private final int parallelism;
+    // Called with the number of postings, once all of them are queued
+    private final LongConsumer persist;
+    
+    InterestAccrual(FileDataService dataService, AccountStore accounts, TransactionStore transactions,
+                    IdGenerator idGenerator, ReentrantReadWriteLock checkpointLock, AccountLocks accountLocks,
+                    int parallelism, LongConsumer persist) {
+        this.dataService = dataService;
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.idGenerator = idGenerator;
+        this.checkpointLock = checkpointLock;
+        this.accountLocks = accountLocks;
+        this.parallelism = parallelism;
+        this.persist = persist;
+    }
+    
+    // Returns null if the day cannot be accrued: it, or a later day, was already done,
+    // or an earlier run is unfinished
+    InterestResult accrue(LocalDate day) {
+        long started = System.nanoTime();
+        String description = "Interest for " + day;
+        long firstRow;
+        Set<String> paid = new HashSet<>();
+        String[] marker = dataService.readInterestMarker();
+        LocalDate last = marker == null ? null : LocalDate.parse(marker[0]);
+        if (marker != null && marker[1].equals("STARTED") && day.equals(last)) {
+            // Resume: rows from firstRow on include everything the failed run posted
+            firstRow = Long.parseLong(marker[2]);
+            for (int row = (int) firstRow; row < transactions.size(); row++) {
+                if (transactions.getType(row) == Transaction.TransactionType.INTEREST
+                    && description.equals(transactions.getDescription(row))) {
+                    paid.add(transactions.getAccountNumber(row));
+                }
+            }
+        } else if (last != null && (!day.isAfter(last) || marker[1].equals("STARTED"))) {
+            System.err.println("Error accruing interest: " + (marker[1].equals("STARTED")
+                ? "the run for " + last + " did not finish" : last + " is already accrued"));
+            return null;
+        } else {
+            // No mutation is half-done while the write lock is held, so every row
+            // before this one is journaled ahead of the first interest record
+            checkpointLock.writeLock().lock();
+            try {
+                firstRow = transactions.size();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            if (!dataService.writeInterestMarker(day.toString(), "STARTED", firstRow)) {
+                return null;
+            }
+        }
+        
+        BigDecimal rate = new BigDecimal(SAVINGS_RATE);
+        rate = rate.setScale(Math.max(0, rate.scale()));
+        long numerator = rate.unscaledValue().longValueExact();
+        long denominator = BigDecimal.TEN.pow(rate.scale()).longValueExact() * 365;
+        
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long[] totals;
+        try {
+            totals = pool.invoke(new InterestTask(0, accounts.getSlotCount(), numerator, denominator,
+                description, paid));
+            InterestTask.add(totals, pool.invoke(new InterestTask(InterestTask.OVERFLOW, 0, numerator,
+                denominator, description, paid)));
+        } finally {
+            pool.shutdown();
+        }
+        
+        if (totals[1] > 0) {
+            persist.accept(totals[1]);
+        }
+        dataService.writeInterestMarker(day.toString(), "DONE", firstRow);
+        return new InterestResult(day, totals[0], totals[1], totals[3], totals[2], System.nanoTime() - started);
+    }
+    
+    // Accrues a range of account table slots, splitting it until it fits one partition,
+    // or the accounts kept outside the table. Returns {accounts, posted, interest cents,
+    // already paid}.
+    private final class InterestTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+        static final int OVERFLOW = -1;
+        
+        private final int fromSlot;
+        private final int toSlot;
+        private final long numerator;
+        private final long denominator;
+        private final String description;
+        private final Set<String> paid;
+        
+        InterestTask(int fromSlot, int toSlot, long numerator, long denominator, String description,
+                     Set<String> paid) {
+            this.fromSlot = fromSlot;
+            this.toSlot = toSlot;
+            this.numerator = numerator;
+            this.denominator = denominator;
+            this.description = description;
+            this.paid = paid;
+        }
+        
+        @Override
+        protected long[] compute() {
+            if (toSlot - fromSlot > PARTITION) {
+                int middle = (fromSlot + toSlot) >>> 1;
+                InterestTask left = new InterestTask(fromSlot, middle, numerator, denominator, description, paid);
+                InterestTask right = new InterestTask(middle, toSlot, numerator, denominator, description, paid);
+                left.fork();
+                return add(right.compute(), left.join());
+            }
+            
+            long[] totals = new long[4];
+            List<Transaction> posted = new ArrayList<>();
+            Consumer<Account> accrue = account -> {
+                totals[0]++;
+                if (paid.contains(account.getAccountNumber())) {
+                    totals[3]++;
+                    return;
+                }
+                // The balance is read under the stripe, so no posting can land between
+                // the interest being worked out and its row
+                long interest;
+                Transaction transaction;
+                ReentrantLock lock = accountLocks.lockFor(account.getAccountNumber());
+                lock.lock();
+                try {
+                    interest = Money.multiplyDivide(account.getBalanceCents(), numerator, denominator);
+                    if (interest <= 0) {
+                        return;
+                    }
+                    transaction = new Transaction(idGenerator.nextTransactionId(), account.getAccountNumber(),
+                        Transaction.TransactionType.INTEREST, interest, description);
+                    account.deposit(interest);
+                    transactions.append(transaction);
+                } finally {
+                    lock.unlock();
+                }
+                posted.add(transaction);
+                totals[2] += interest;
+            };
+            checkpointLock.readLock().lock();
+            try {
+                if (fromSlot == OVERFLOW) {
+                    accounts.forEachOverflow(Account.AccountType.SAVINGS, accrue);
+                } else {
+                    accounts.forEach(fromSlot, toSlot, Account.AccountType.SAVINGS, accrue);
+                }
+                if (dataService.isJournaling() && !posted.isEmpty()) {
+                    dataService.appendTransactions(posted, Durability.NONE);
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            totals[1] = posted.size();
+            return totals;
+        }
+        
+        static long[] add(long[] a, long[] b) {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.banking.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Named latency histograms, counters and gauges for one service instance.
+// Lookups by name happen once, when a component starts; the hot paths keep the
+// returned objects in fields, so recording is allocation-free.
+//
+// Time a thread spends blocked on disk is added to its I/O clock; an Operation
+// reads the clock before and after a call to report what share of the call's
+// latency was I/O.
+public class Metrics {
+    
+    // Latency of one kind of call plus the part of it spent on I/O
+    public static final class Operation {
+        private final Metrics metrics;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder ioNanos = new LongAdder();
+        
+        private Operation(Metrics metrics) {
+            this.metrics = metrics;
+        }
+        
+        // Pass the value of start() when the call began
+        public void finish(long started, long ioBefore) {
+            latency.record(System.nanoTime() - started);
+            ioNanos.add(metrics.ioNanos() - ioBefore);
+        }
+        
+        public LatencyHistogram getLatency() { return latency; }
+        public long getIoNanos() { return ioNanos.sum(); }
+    }
+    
+    private final Map<String, Operation> operations = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final ThreadLocal<long[]> threadIo = ThreadLocal.withInitial(() -> new long[1]);
+    
+    public Operation operation(String name) {
+        return operations.computeIfAbsent(name, k -> new Operation(this));
+    }
+    
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+    
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+    
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+    
+    // The calling thread's I/O clock
+    public long ioNanos() {
+        return threadIo.get()[0];
+    }
+    
+    // Records time the calling thread spent blocked on I/O in a timer and on its I/O clock
+    public void recordIo(LatencyHistogram timer, long started) {
+        long elapsed = System.nanoTime() - started;
+        timer.record(elapsed);
+        threadIo.get()[0] += elapsed;
+    }
+    
+    // Plain-text report of everything recorded so far; latencies in milliseconds
+    public String format() {
+        StringBuilder report = new StringBuilder(4096);
+        report.append(String.format("%-32s %10s %9s %9s %9s %9s %9s %6s%n",
+            "operation", "count", "mean", "p50", "p99", "p99.9", "max", "io%"));
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            Operation operation = entry.getValue();
+            LatencyHistogram latency = operation.latency;
+            long total = latency.getTotalNanos();
+            appendLatency(report, entry.getKey(), latency);
+            report.append(String.format(" %5.1f%%%n", total == 0 ? 0.0 : 100.0 * operation.getIoNanos() / total));
+        }
+        if (!timers.isEmpty()) {
+            report.append(String.format("%n%-32s %10s %9s %9s %9s %9s %9s%n",
+                "timer", "count", "mean", "p50", "p99", "p99.9", "max"));
+            for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+                appendLatency(report, entry.getKey(), entry.getValue());
+                report.append(System.lineSeparator());
+            }
+        }
+        if (!counters.isEmpty() || !gauges.isEmpty()) {
+            report.append(String.format("%n%-32s %14s%n", "counter", "value"));
+            for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+                report.append(String.format("%-32s %14d%n", entry.getKey(), entry.getValue().sum()));
+            }
+            for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+                report.append(String.format("%-32s %14d%n", entry.getKey(), entry.getValue().getAsLong()));
+            }
+        }
+        return report.toString();
+    }
+    
+    private static void appendLatency(StringBuilder report, String name, LatencyHistogram latency) {
+        report.append(String.format("%-32s %10d %9.3f %9.3f %9.3f %9.3f %9.3f", name, latency.getCount(),
+            latency.getMeanNanos() / 1e6, latency.getPercentileNanos(0.5) / 1e6,
+            latency.getPercentileNanos(0.99) / 1e6, latency.getPercentileNanos(0.999) / 1e6,
+            latency.getMaxNanos() / 1e6));
+    }
+}
\ No newline at end of file
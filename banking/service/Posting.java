@@ -0,0 +1,58 @@
+package com.banking.service;
+
+import com.banking.model.Transaction;
+import com.banking.security.InputValidator;
+
+// One line of a posting file, "account,DEPOSIT|WITHDRAWAL,amount[,description]";
+// reason is set once the line is rejected
+final class Posting {
+    final long lineNumber;
+    final String text;
+    String accountNumber;
+    Transaction.TransactionType type;
+    long amountCents;
+    String description;
+    String reason;
+    
+    private Posting(long lineNumber, String text) {
+        this.lineNumber = lineNumber;
+        this.text = text;
+    }
+    
+    static Posting parse(long lineNumber, String line) {
+        Posting posting = new Posting(lineNumber, line);
+        String[] fields = line.split(",", 4);
+        if (fields.length < 3) {
+            return posting.reject("Expected account,type,amount[,description]");
+        }
+        posting.accountNumber = fields[0].trim();
+        if (!InputValidator.isValidAccountNumber(posting.accountNumber)) {
+            return posting.reject("Invalid account number");
+        }
+        String type = fields[1].trim().toUpperCase();
+        if (type.equals("DEPOSIT")) {
+            posting.type = Transaction.TransactionType.DEPOSIT;
+        } else if (type.equals("WITHDRAWAL")) {
+            posting.type = Transaction.TransactionType.WITHDRAWAL;
+        } else {
+            return posting.reject("Invalid posting type");
+        }
+        posting.amountCents = InputValidator.parseAmountCents(fields[2].trim());
+        if (posting.amountCents <= 0) {
+            return posting.reject("Invalid amount");
+        }
+        String description = fields.length > 3 ? InputValidator.sanitizeInput(fields[3].trim()) : "";
+        if (description.indexOf('\t') >= 0) {
+            return posting.reject("Invalid description");
+        }
+        posting.description = description.isEmpty()
+            ? (posting.type == Transaction.TransactionType.DEPOSIT ? "Batch deposit" : "Batch withdrawal")
+            : description;
+        return posting;
+    }
+    
+    Posting reject(String reason) {
+        this.reason = reason;
+        return this;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.BatchResult;
+import com.banking.model.Transaction;
+import com.banking.service.CommitPipeline.Durability;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+// Applies a posting file (see Posting) to any account; this is an operator function,
+// so no session is involved. The file is streamed in chunks whose postings are
+// applied grouped by account, and the caller makes everything durable at the end.
+// Lines that fail validation or would overdraw their account go to the reject
+// report as "line<TAB>reason<TAB>text".
+final class PostingIngestion {
+    // Postings applied per group-by-account pass
+    private static final int CHUNK = 16384;
+    
+    private final FileDataService dataService;
+    private final AccountStore accounts;
+    private final TransactionStore transactions;
+    private final IdGenerator idGenerator;
+    private final ReentrantReadWriteLock checkpointLock;
+    private final AccountLocks accountLocks;
+    // Called with the number of postings applied, once all of them are queued
+    private final LongConsumer persist;
+    
+    PostingIngestion(FileDataService dataService, AccountStore accounts, TransactionStore transactions,
+                     IdGenerator idGenerator, ReentrantReadWriteLock checkpointLock, AccountLocks accountLocks,
+                     LongConsumer persist) {
+        this.dataService = dataService;
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.idGenerator = idGenerator;
+        this.checkpointLock = checkpointLock;
+        this.accountLocks = accountLocks;
+        this.persist = persist;
+    }
+    
+    BatchResult ingest(Path postingFile, Path rejectFile) throws IOException {
+        long started = System.nanoTime();
+        long lines = 0;
+        long applied = 0;
+        long rejectedCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(postingFile, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+            List<Posting> chunk = new ArrayList<>(CHUNK);
+            List<Posting> rejected = new ArrayList<>();
+            String line;
+            long lineNumber = 0;
+            while (true) {
+                line = reader.readLine();
+                if (line != null) {
+                    lineNumber++;
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    lines++;
+                    Posting posting = Posting.parse(lineNumber, line);
+                    if (posting.reason == null) {
+                        chunk.add(posting);
+                    } else {
+                        rejected.add(posting);
+                    }
+                }
+                if (chunk.size() == CHUNK || (line == null && !chunk.isEmpty())) {
+                    applied += apply(chunk, rejected);
+                    chunk.clear();
+                }
+                if (chunk.isEmpty() && !rejected.isEmpty()) {
+                    // Report in file order; a chunk's rejects come from both passes
+                    rejected.sort(Comparator.comparingLong(posting -> posting.lineNumber));
+                    for (Posting posting : rejected) {
+                        rejects.write(posting.lineNumber + "\t" + posting.reason + "\t" + posting.text);
+                        rejects.newLine();
+                    }
+                    rejectedCount += rejected.size();
+                    rejected.clear();
+                }
+                if (line == null) {
+                    break;
+                }
+            }
+        }
+        
+        if (applied > 0) {
+            persist.accept(applied);
+        }
+        return new BatchResult(lines, applied, rejectedCount, System.nanoTime() - started);
+    }
+    
+    // Applies one chunk, looking each account up once, and queues its journal records
+    // as a single unforced write. Returns the number of postings applied.
+    private int apply(List<Posting> postings, List<Posting> rejected) {
+        Map<String, List<Posting>> byAccount = new LinkedHashMap<>();
+        for (Posting posting : postings) {
+            byAccount.computeIfAbsent(posting.accountNumber, k -> new ArrayList<>()).add(posting);
+        }
+        
+        List<Transaction> posted = new ArrayList<>(postings.size());
+        checkpointLock.readLock().lock();
+        try {
+            for (Map.Entry<String, List<Posting>> group : byAccount.entrySet()) {
+                Account account = accounts.get(group.getKey());
+                ReentrantLock lock = accountLocks.lockFor(group.getKey());
+                lock.lock();
+                try {
+                    for (Posting posting : group.getValue()) {
+                        if (account == null) {
+                            rejected.add(posting.reject("Unknown account"));
+                            continue;
+                        }
+                        if (posting.type == Transaction.TransactionType.DEPOSIT) {
+                            account.deposit(posting.amountCents);
+                        } else if (!account.withdraw(posting.amountCents)) {
+                            rejected.add(posting.reject("Insufficient funds"));
+                            continue;
+                        }
+                        Transaction transaction = new Transaction(idGenerator.nextTransactionId(), group.getKey(),
+                            posting.type, posting.amountCents, posting.description);
+                        transactions.append(transaction);
+                        posted.add(transaction);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (dataService.isJournaling() && !posted.isEmpty()) {
+                dataService.appendTransactions(posted, Durability.NONE);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return posted.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.banking.service;
+
+import com.banking.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Function;
+
+// A consistent point-in-time view for queries and reports. It sees every commit
+// before its sequence number and none after: balances, totals and transactions
+// all agree, and a transfer is seen whole or not at all. It reads copy-on-write
+// rollups and append-only rows; only building an account's rollup, on its first
+// use, briefly holds that account's lock stripe. A long report never delays
+// postings. Views are cheap; open one per query or report.
+public class ReadView {
+    private final long sequence;
+    private final TransactionStore transactions;
+    private final Function<String, AccountRollup> rollups;
+    
+    ReadView(long sequence, TransactionStore transactions, Function<String, AccountRollup> rollups) {
+        this.sequence = sequence;
+        this.transactions = transactions;
+        this.rollups = rollups;
+    }
+    
+    // Number of transaction rows the view includes
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public long getBalanceCents(String accountNumber) {
+        return rollup(accountNumber).getBalanceCents(sequence);
+    }
+    
+    // Transactions with from <= timestamp < to, oldest first
+    public List<Transaction> getTransactions(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        return transactions.views(rollup(accountNumber).getRowsBetween(boundMicros(from), boundMicros(to),
+            sequence));
+    }
+    
+    // Totals of the days from to to, inclusive
+    public AccountRollup.Period getDays(String accountNumber, LocalDate from, LocalDate to) {
+        return rollup(accountNumber).getDays(from, to, sequence);
+    }
+    
+    public AccountRollup.Period getMonth(String accountNumber, YearMonth month) {
+        return rollup(accountNumber).getMonth(month, sequence);
+    }
+    
+    // Open-ended ranges such as LocalDateTime.MIN fall outside the ledger's clock
+    private static long boundMicros(LocalDateTime timestamp) {
+        long seconds = timestamp.toEpochSecond(ZoneOffset.UTC);
+        if (seconds >= Long.MAX_VALUE / 1_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= Long.MIN_VALUE / 1_000_000L) {
+            return Long.MIN_VALUE;
+        }
+        return BinaryLedger.toMicros(timestamp);
+    }
+    
+    private AccountRollup rollup(String accountNumber) {
+        AccountRollup rollup = rollups.apply(accountNumber);
+        if (rollup == null) {
+            throw new IllegalArgumentException("Unknown account: " + accountNumber);
+        }
+        return rollup;
+    }
+}
\ No newline at end of file
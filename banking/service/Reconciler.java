@@ -0,0 +1,180 @@
+package com.banking.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Per-account running totals of the transaction log for reconciliation: every
+// credit minus every debit up to a row. Numbered accounts are kept in an array
+// indexed by account table slot and the rest in a map, so memory is bounded by
+// the number of accounts however long the log grows. The totals and the row they
+// reach can be saved, so the next run only reads the rows added since.
+//
+// State file (big-endian):
+//   int magic, int version, long rows
+//   int count, then count x {int slot, long total}
+//   int count, then count x {UTF account number, long total}
+public class Reconciler {
+    private static final int MAGIC = 0x5245434E; // "RECN"
+    private static final int VERSION = 1;
+    // Rows one task streams before it stops splitting
+    private static final int PARTITION = 65536;
+    
+    private final Path stateFile;
+    private final AtomicLongArray slotTotals = new AtomicLongArray(IdGenerator.ACCOUNT_SPACE);
+    private final Map<String, AtomicLong> otherTotals = new ConcurrentHashMap<>();
+    private long rows;
+    
+    public Reconciler(Path stateFile) {
+        this.stateFile = stateFile;
+    }
+    
+    // Rows of the log included in the totals
+    public long getRows() {
+        return rows;
+    }
+    
+    public long getTotal(int slot) {
+        return slotTotals.get(slot);
+    }
+    
+    public Map<String, AtomicLong> getOtherTotals() {
+        return otherTotals;
+    }
+    
+    // Adds rows [getRows(), to) of the log, split across the pool's threads
+    public void advance(TransactionStore transactions, int to, ForkJoinPool pool) {
+        if (to > rows) {
+            pool.invoke(new Pass(transactions, (int) rows, to));
+            rows = to;
+        }
+    }
+    
+    private final class Pass extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final TransactionStore transactions;
+        private final int from;
+        private final int to;
+        
+        Pass(TransactionStore transactions, int from, int to) {
+            this.transactions = transactions;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > PARTITION) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Pass(transactions, from, middle), new Pass(transactions, middle, to));
+                return;
+            }
+            for (int row = from; row < to; row++) {
+                long amount = transactions.getAmountCents(row);
+                long signed = transactions.getType(row).isCredit() ? amount : -amount;
+                String accountNumber = transactions.getAccountNumber(row);
+                int slot = IdGenerator.accountOffset(accountNumber);
+                if (slot >= 0) {
+                    slotTotals.getAndAdd(slot, signed);
+                } else {
+                    otherTotals.computeIfAbsent(accountNumber, k -> new AtomicLong()).addAndGet(signed);
+                }
+            }
+        }
+    }
+    
+    // Loads saved totals. Returns false and starts from row 0 if there are none, or
+    // if they reach past the given row count, e.g. after the ledger was rebuilt.
+    public boolean load(long maxRows) {
+        clear();
+        if (!Files.exists(stateFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Error loading reconciliation state: unknown format");
+                return false;
+            }
+            long savedRows = in.readLong();
+            if (savedRows > maxRows) {
+                return false;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                slotTotals.set(in.readInt(), in.readLong());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                otherTotals.put(in.readUTF(), new AtomicLong(in.readLong()));
+            }
+            rows = savedRows;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading reconciliation state: " + e.getMessage());
+            clear();
+            return false;
+        }
+    }
+    
+    // Writes the totals to a temporary file, forces it and moves it into place
+    public boolean save() {
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp.toFile()), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(rows);
+            int count = 0;
+            for (int slot = 0; slot < slotTotals.length(); slot++) {
+                if (slotTotals.get(slot) != 0) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int slot = 0; slot < slotTotals.length(); slot++) {
+                long total = slotTotals.get(slot);
+                if (total != 0) {
+                    out.writeInt(slot);
+                    out.writeLong(total);
+                }
+            }
+            out.writeInt(otherTotals.size());
+            for (Map.Entry<String, AtomicLong> entry : otherTotals.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().get());
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving reconciliation state: " + e.getMessage());
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving reconciliation state: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void clear() {
+        for (int slot = 0; slot < slotTotals.length(); slot++) {
+            slotTotals.set(slot, 0);
+        }
+        otherTotals.clear();
+        rows = 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.banking.service;
+
+import com.banking.model.Money;
+import com.banking.model.ReconciliationResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Checks every balance against the transaction log: it must equal the account's
+// credits minus its debits. The log is streamed on a fork-join pool into
+// per-account totals (see Reconciler). The totals are saved up to the rows the
+// installed snapshot covers, so the next run only reads what was added since.
+//
+// A run checks the rows committed when it starts. Balances are then read one
+// account at a time under the account's stripe, together with the rows appended by
+// then, and the rows past the start are taken back out; postings to other accounts
+// never wait. Mismatches, and log totals for accounts that do not exist, go to the
+// report as "account<TAB>balance<TAB>ledger<TAB>difference".
+final class Reconciliation {
+    private final FileDataService dataService;
+    private final AccountStore accounts;
+    private final TransactionStore transactions;
+    private final AccountLocks accountLocks;
+    private final int parallelism;
+    // Rows covered by the installed snapshot
+    private final LongSupplier stableRows;
+    
+    Reconciliation(FileDataService dataService, AccountStore accounts, TransactionStore transactions,
+                   AccountLocks accountLocks, int parallelism, LongSupplier stableRows) {
+        this.dataService = dataService;
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.accountLocks = accountLocks;
+        this.parallelism = parallelism;
+        this.stableRows = stableRows;
+    }
+    
+    ReconciliationResult run(Path reportFile) throws IOException {
+        long started = System.nanoTime();
+        long stable = stableRows.getAsLong();
+        int to = transactions.getCommittedRows();
+        long[] balances = new long[accounts.getSlotCount()];
+        Map<String, Long> otherBalances = new HashMap<>();
+        readBalancesAt(to, balances, otherBalances);
+        
+        // Rows past the snapshot are numbered by journal replay after a restart, which
+        // can order concurrent postings differently, so saved totals stop before them
+        int saveAt = dataService.isJournaling() ? (int) Math.min(stable, to) : to;
+        Reconciler reconciler = dataService.openReconciler();
+        reconciler.load(saveAt);
+        long fromRow = reconciler.getRows();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            reconciler.advance(transactions, saveAt, pool);
+            if (saveAt > fromRow) {
+                reconciler.save();
+            }
+            reconciler.advance(transactions, to, pool);
+        } finally {
+            pool.shutdown();
+        }
+        
+        long checked = 0;
+        long discrepancies = 0;
+        try (BufferedWriter report = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            report.write("# account\tbalance\tledger\tdifference, rows " + fromRow + "-" + to + " read");
+            report.newLine();
+            for (int slot = 0; slot < balances.length; slot++) {
+                long total = reconciler.getTotal(slot);
+                if (balances[slot] != Long.MIN_VALUE) {
+                    checked++;
+                }
+                if (balances[slot] != Long.MIN_VALUE ? balances[slot] != total : total != 0) {
+                    writeDiscrepancy(report, IdGenerator.accountNumber(slot), balances[slot], total);
+                    discrepancies++;
+                }
+            }
+            Set<String> others = new HashSet<>(otherBalances.keySet());
+            others.addAll(reconciler.getOtherTotals().keySet());
+            for (String accountNumber : others) {
+                Long balance = otherBalances.get(accountNumber);
+                AtomicLong counted = reconciler.getOtherTotals().get(accountNumber);
+                long total = counted == null ? 0 : counted.get();
+                if (balance != null) {
+                    checked++;
+                }
+                if (balance == null || balance != total) {
+                    writeDiscrepancy(report, accountNumber, balance == null ? Long.MIN_VALUE : balance, total);
+                    discrepancies++;
+                }
+            }
+        }
+        return new ReconciliationResult(fromRow, to, checked, discrepancies, System.nanoTime() - started);
+    }
+    
+    // Fills in every balance as it was after the first rows rows, by slot with
+    // Long.MIN_VALUE for empty slots; accounts outside the table go into the map. Each
+    // balance is read under its account's stripe along with the row count at that
+    // moment, which is all the rows it reflects; those past rows are then subtracted.
+    private void readBalancesAt(int rows, long[] balances, Map<String, Long> otherBalances) {
+        Arrays.fill(balances, Long.MIN_VALUE);
+        int[] readAt = new int[balances.length];
+        Map<String, Integer> otherReadAt = new HashMap<>();
+        BitSet used = accounts.getUsedSlots();
+        for (int slot = used.nextSetBit(0); slot >= 0; slot = used.nextSetBit(slot + 1)) {
+            ReentrantLock lock = accountLocks.lockFor(IdGenerator.accountNumber(slot));
+            lock.lock();
+            try {
+                balances[slot] = accounts.getBalanceCents(slot);
+                readAt[slot] = transactions.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+        accounts.forEachOverflow(account -> {
+            ReentrantLock lock = accountLocks.lockFor(account.getAccountNumber());
+            lock.lock();
+            try {
+                otherBalances.put(account.getAccountNumber(), account.getBalanceCents());
+                otherReadAt.put(account.getAccountNumber(), transactions.size());
+            } finally {
+                lock.unlock();
+            }
+        });
+        
+        // Usually only the few rows posted while the balances were read
+        int end = transactions.size();
+        for (int row = rows; row < end; row++) {
+            String accountNumber = transactions.getAccountNumber(row);
+            long amount = transactions.getAmountCents(row);
+            long signed = transactions.getType(row).isCredit() ? amount : -amount;
+            Integer otherAt = otherReadAt.get(accountNumber);
+            if (otherAt != null) {
+                if (row < otherAt) {
+                    otherBalances.merge(accountNumber, -signed, Long::sum);
+                }
+                continue;
+            }
+            int slot = IdGenerator.accountOffset(accountNumber);
+            if (slot >= 0 && row < readAt[slot]) {
+                balances[slot] -= signed;
+            }
+        }
+    }
+    
+    // Long.MIN_VALUE as the balance means there is no such account
+    private static void writeDiscrepancy(BufferedWriter report, String accountNumber, long balance, long total)
+            throws IOException {
+        boolean missing = balance == Long.MIN_VALUE;
+        report.write(accountNumber + "\t" + (missing ? "missing" : Money.format(balance)) + "\t"
+            + Money.format(total) + "\t" + Money.format((missing ? 0 : balance) - total));
+        report.newLine();
+    }
+}
\ No newline at end of file
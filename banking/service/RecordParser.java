@@ -0,0 +1,300 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.Money;
+import com.banking.model.Transaction;
+import com.banking.model.User;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.time.LocalDateTime;
+
+// Single-pass parser for the comma-separated data files and journal records.
+//
+// Lines are scanned in place inside one reusable char buffer: fields are located
+// by offset, numbers, amounts and timestamps are decoded straight from the chars,
+// and the only objects created are the field Strings and the records themselves.
+// The characters InputValidator.sanitizeInput removes are dropped while the field
+// Strings are built. A parser instance is not thread-safe; use one per reader.
+public class RecordParser {
+    
+    public interface LineHandler {
+        // The line occupies buffer[start, end) without its line terminator
+        void line(char[] buffer, int start, int end);
+    }
+    
+    private static final int MAX_FIELDS = 6;
+    private static final Transaction.TransactionType[] TRANSACTION_TYPES = Transaction.TransactionType.values();
+    private static final Account.AccountType[] ACCOUNT_TYPES = Account.AccountType.values();
+    
+    private char[] buffer = new char[64 * 1024];
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final CharView view = new CharView();
+    
+    // Calls the handler for every non-blank line of the reader
+    public void readLines(Reader reader, LineHandler handler) throws IOException {
+        int length = 0;
+        int read;
+        while ((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            int lineStart = scan(buffer, 0, length, handler);
+            // Keep the partial last line; grow if a single line fills the buffer
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length) {
+                char[] larger = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, length);
+                buffer = larger;
+            }
+        }
+        emit(buffer, handler, 0, length);
+    }
+    
+    // Calls the handler for every non-blank line of an already decoded block,
+    // in place in the block's own array
+    public void readLines(CharBuffer chars, LineHandler handler) {
+        char[] array = chars.array();
+        int start = chars.arrayOffset() + chars.position();
+        int end = chars.arrayOffset() + chars.limit();
+        emit(array, handler, scan(array, start, end, handler), end);
+    }
+    
+    // Emits the complete lines in chars[start, end); returns where the partial last line begins
+    private static int scan(char[] chars, int start, int end, LineHandler handler) {
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (chars[i] == '\n') {
+                emit(chars, handler, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+    
+    private static void emit(char[] chars, LineHandler handler, int start, int end) {
+        if (end > start && chars[end - 1] == '\r') {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (chars[i] > ' ') {
+                handler.line(chars, start, end);
+                return;
+            }
+        }
+    }
+    
+    // username,passwordHash,salt,active
+    public User parseUser(char[] chars, int start, int end) {
+        if (split(chars, start, end, 4, false) != 4) {
+            return null;
+        }
+        User user = new User(text(chars, 0), text(chars, 1), text(chars, 2));
+        user.setActive(equalsIgnoreCase(chars, 3, "true"));
+        return user;
+    }
+    
+    // accountNumber,username,balance,type,createdAt
+    public Account parseAccount(char[] chars, int start, int end) {
+        if (split(chars, start, end, 5, false) != 5) {
+            return null;
+        }
+        long balance = amount(chars, 2);
+        Account.AccountType type = constant(chars, 3, ACCOUNT_TYPES);
+        LocalDateTime createdAt = timestamp(chars, 4);
+        if (balance == Long.MIN_VALUE || type == null || createdAt == null) {
+            return null;
+        }
+        return new Account(text(chars, 0), text(chars, 1), type, balance, createdAt);
+    }
+    
+    // transactionId,accountNumber,type,amount,timestamp,description (may contain commas)
+    public Transaction parseTransaction(char[] chars, int start, int end) {
+        if (split(chars, start, end, 6, true) != 6) {
+            return null;
+        }
+        Transaction.TransactionType type = constant(chars, 2, TRANSACTION_TYPES);
+        long amount = amount(chars, 3);
+        LocalDateTime timestamp = timestamp(chars, 4);
+        if (type == null || amount == Long.MIN_VALUE || timestamp == null) {
+            return null;
+        }
+        return new Transaction(text(chars, 0), text(chars, 1), type, amount, timestamp, text(chars, 5));
+    }
+    
+    // Records the field offsets; with restInLast the final field runs to the end of the line
+    private int split(char[] chars, int start, int end, int expected, boolean restInLast) {
+        int count = 0;
+        int fieldBegin = start;
+        for (int i = start; i < end; i++) {
+            if (chars[i] == ',' && !(restInLast && count == expected - 1)) {
+                if (count == expected) {
+                    return -1;
+                }
+                fieldStart[count] = fieldBegin;
+                fieldEnd[count++] = i;
+                fieldBegin = i + 1;
+            }
+        }
+        if (count == expected) {
+            return -1;
+        }
+        fieldStart[count] = fieldBegin;
+        fieldEnd[count++] = end;
+        return count;
+    }
+    
+    private String text(char[] chars, int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        for (int i = start; i < end; i++) {
+            if (isStripped(chars[i])) {
+                return stripped(chars, start, end);
+            }
+        }
+        return new String(chars, start, end - start);
+    }
+    
+    private static String stripped(char[] chars, int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            if (!isStripped(chars[i])) {
+                builder.append(chars[i]);
+            }
+        }
+        return builder.toString();
+    }
+    
+    private static boolean isStripped(char c) {
+        return c == '<' || c == '>' || c == '"' || c == '\'';
+    }
+    
+    private boolean equalsIgnoreCase(char[] chars, int field, String expected) {
+        int start = fieldStart[field];
+        if (fieldEnd[field] - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(chars[start + i]) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private <E extends Enum<E>> E constant(char[] chars, int field, E[] values) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        for (E value : values) {
+            String name = value.name();
+            if (name.length() != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && chars[start + i] == name.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    // Cents, or Long.MIN_VALUE if the field is not an amount
+    private long amount(char[] chars, int field) {
+        view.chars = chars;
+        long cents = Money.parsePlain(view, fieldStart[field], fieldEnd[field]);
+        if (cents != Long.MIN_VALUE) {
+            return cents;
+        }
+        try {
+            // Older files may hold exponent forms such as 1.0E7
+            return Money.parse(new String(chars, fieldStart[field], fieldEnd[field] - fieldStart[field]));
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+    
+    // Parses LocalDateTime.toString() output: yyyy-MM-ddTHH:mm[:ss[.fraction]]
+    private LocalDateTime timestamp(char[] chars, int field) {
+        int p = fieldStart[field];
+        int end = fieldEnd[field];
+        if (end - p < 16 || chars[p + 4] != '-' || chars[p + 7] != '-' || chars[p + 10] != 'T'
+                || chars[p + 13] != ':') {
+            return null;
+        }
+        int year = digits(chars, p, 4);
+        int month = digits(chars, p + 5, 2);
+        int day = digits(chars, p + 8, 2);
+        int hour = digits(chars, p + 11, 2);
+        int minute = digits(chars, p + 14, 2);
+        int second = 0;
+        int nanos = 0;
+        p += 16;
+        if (p < end) {
+            if (chars[p] != ':' || end - p < 3) {
+                return null;
+            }
+            second = digits(chars, p + 1, 2);
+            p += 3;
+            if (p < end) {
+                if (chars[p] != '.' || end - p < 2 || end - p > 10) {
+                    return null;
+                }
+                int fractionDigits = end - p - 1;
+                nanos = digits(chars, p + 1, fractionDigits);
+                for (int i = fractionDigits; i < 9; i++) {
+                    nanos *= 10;
+                }
+            }
+        }
+        if ((year | month | day | hour | minute | second | nanos) < 0) {
+            return null;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    // Decimal value of count digits, or -1 if any of them is not a digit
+    private static int digits(char[] chars, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    // Reusable CharSequence over the current buffer, so amounts parse without copying
+    private static final class CharView implements CharSequence {
+        char[] chars;
+        
+        @Override
+        public int length() {
+            return chars.length;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+        
+        @Override
+        public String toString() {
+            return new String(chars);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.banking.service;
+
+import com.banking.model.User;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// An authenticated user's handle on the BankingService; one per login
+public class Session {
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 24;
+    
+    private final String token;
+    private final User user;
+    private final LocalDateTime createdAt;
+    private volatile boolean open = true;
+    
+    Session(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        TOKEN_RANDOM.nextBytes(bytes);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        this.user = user;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters
+    public String getToken() { return token; }
+    public User getUser() { return user; }
+    public String getUsername() { return user.getUsername(); }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public boolean isOpen() { return open; }
+    
+    void close() {
+        open = false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.Statement;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Statements and other point-in-time reads. Totals come from an account's daily and
+// monthly rollups, transactions from its time index, both through one ReadView so
+// they always agree. Rollups are built on first use and kept in the transaction
+// store's bounded cache.
+final class Statements {
+    private final AccountStore accounts;
+    private final TransactionStore transactions;
+    private final AccountLocks accountLocks;
+    
+    Statements(AccountStore accounts, TransactionStore transactions, AccountLocks accountLocks) {
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.accountLocks = accountLocks;
+    }
+    
+    ReadView openReadView() {
+        return new ReadView(transactions.getCommittedRows(), transactions, this::rollupOf);
+    }
+    
+    // Opening and closing balances, totals and transactions for the days from to to,
+    // inclusive; whole months are read from the monthly totals
+    Statement statement(String accountNumber, LocalDate from, LocalDate to) {
+        ReadView view = openReadView();
+        AccountRollup.Period period = from.getDayOfMonth() == 1 && to.equals(YearMonth.from(from).atEndOfMonth())
+            ? view.getMonth(accountNumber, YearMonth.from(from)) : view.getDays(accountNumber, from, to);
+        return new Statement(accountNumber, from, to, period.getOpeningCents(), period.getClosingCents(),
+            period.getCreditsCents(), period.getDebitsCents(), period.getCount(),
+            view.getTransactions(accountNumber, from.atStartOfDay(), to.plusDays(1).atStartOfDay()));
+    }
+    
+    // The account's rollup, built on first use or after it left the cache. The history
+    // and most rows posted meanwhile are read without any lock; only the last few rows
+    // and reading the balance they must explain hold the account's stripe.
+    private AccountRollup rollupOf(String accountNumber) {
+        AccountRollup rollup = transactions.getRollup(accountNumber);
+        if (rollup != null) {
+            return rollup;
+        }
+        Account account = accounts.get(accountNumber);
+        if (account == null) {
+            return null;
+        }
+        int through = transactions.size();
+        AccountRollup built = transactions.buildRollup(accountNumber, accounts.getFirstLedgerRow(accountNumber),
+            through);
+        through = transactions.catchUpRollup(accountNumber, built, through);
+        ReentrantLock lock = accountLocks.lockFor(accountNumber);
+        lock.lock();
+        try {
+            return transactions.installRollup(accountNumber, built, through, account.getBalanceCents());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
\ No newline at end of file
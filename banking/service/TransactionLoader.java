@@ -0,0 +1,106 @@
+package com.banking.service;
+
+import com.banking.model.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Loads transactions.txt on the common fork-join pool. The file is split in halves
+// at line boundaries until the pieces are small, each piece is parsed into its own
+// TransactionStore with its own per-account history, and neighbouring pieces are
+// merged back in file order, columns and history lists in bulk. The binary ledger needs no loading; its records are
+// read in place.
+public class TransactionLoader {
+    private static final long TEXT_CHUNK_BYTES = 4L << 20;
+    private static final int SCAN_BYTES = 8 * 1024;
+    
+    public static TransactionStore loadText(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ForkJoinPool.commonPool().invoke(new TextChunk(channel, 0, channel.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    // Bytes [start, end) of a text file; start is always the beginning of a line
+    private static final class TextChunk extends RecursiveTask<TransactionStore> {
+        private static final long serialVersionUID = 1L;
+        
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        
+        TextChunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        protected TransactionStore compute() {
+            try {
+                if (end - start > TEXT_CHUNK_BYTES) {
+                    long split = nextLineStart(channel, start + (end - start) / 2, end);
+                    if (split < end) {
+                        TextChunk first = new TextChunk(channel, start, split);
+                        first.fork();
+                        TransactionStore second = new TextChunk(channel, split, end).compute();
+                        return merge(first.join(), second);
+                    }
+                }
+                return parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        private TransactionStore parse() throws IOException {
+            // Lines end in '\n', which never occurs inside a multi-byte UTF-8 sequence
+            CharBuffer chars = StandardCharsets.UTF_8.decode(
+                channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            TransactionStore result = new TransactionStore();
+            RecordParser parser = new RecordParser();
+            parser.readLines(chars, (buffer, lineStart, lineEnd) -> {
+                Transaction transaction = parser.parseTransaction(buffer, lineStart, lineEnd);
+                if (transaction != null) {
+                    result.append(transaction);
+                }
+            });
+            return result;
+        }
+    }
+    
+    private static TransactionStore merge(TransactionStore first, TransactionStore second) {
+        first.appendAll(second);
+        return first;
+    }
+    
+    // Position just after the first '\n' at or after from, or end if there is none
+    private static long nextLineStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(SCAN_BYTES);
+        long position = from;
+        while (position < end) {
+            bytes.clear();
+            bytes.limit((int) Math.min(SCAN_BYTES, end - position));
+            int read = channel.read(bytes, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (bytes.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+}
\ No newline at end of file
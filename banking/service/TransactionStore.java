@@ -0,0 +1,647 @@
+package com.banking.service;
+
+import com.banking.model.Transaction;
+
+import java.io.ObjectStreamException;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Columnar in-memory transaction store. Each field lives in its own primitive
+// column, split into fixed-size chunks so growing never copies rows:
+//   id           long  digits after "TXN", or -(ordinal + 1) for other IDs
+//   timestamp    long  microseconds since the epoch in UTC
+//   amount       long  cents
+//   account      int   string pool ordinal
+//   description  int   string pool ordinal
+//   type         byte  TransactionType ordinal
+// That is 33 bytes per row plus 4 for the account history index, instead of a
+// Transaction object with its Strings and LocalDateTime.
+//
+// Row numbers are global and match ledger record numbers. Only rows from base on
+// are held in memory; once rows are in the binary ledger, evictBefore can drop
+// them and they are read from the ledger instead.
+//
+// Rows are read through View, a Transaction whose getters read the columns, so
+// existing callers keep working. Appends are serialized; reads take no lock and
+// see every row appended before the size they observed.
+public class TransactionStore {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+    private static final int ROLLUP_CACHE = Integer.getInteger("banking.cache.rollups", 10000);
+    private static final int ROLLUP_SEGMENTS = 16;
+    // Rows a rollup catch-up or an eviction leaves to copy under the monitor
+    private static final int LOCKED_TAIL = 1024;
+    
+    private static final class Chunk {
+        final long[] ids = new long[CHUNK_ROWS];
+        final long[] timestamps = new long[CHUNK_ROWS];
+        final long[] amounts = new long[CHUNK_ROWS];
+        final int[] accounts = new int[CHUNK_ROWS];
+        final int[] descriptions = new int[CHUNK_ROWS];
+        final byte[] types = new byte[CHUNK_ROWS];
+    }
+    
+    // The in-memory rows from base on and the strings they refer to. Arrays are only
+    // replaced, never shrunk, so a reader holding an older Memory still sees valid rows.
+    private static final class Memory {
+        final int base;
+        final Chunk[] chunks;
+        final String[] strings;
+        
+        Memory(int base, Chunk[] chunks, String[] strings) {
+            this.base = base;
+            this.chunks = chunks;
+            this.strings = strings;
+        }
+    }
+    
+    // Growable list of row numbers, ascending; one writer, any number of readers
+    static final class RowList {
+        private volatile int[] rows = new int[4];
+        private volatile int size;
+        
+        void add(int row) {
+            int[] current = rows;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                rows = current;
+            }
+            current[size] = row;
+            size = size + 1;
+        }
+        
+        // Appends another list's rows moved up by offset; they must all follow this list's rows
+        void addAll(RowList other, int offset) {
+            int count = other.size;
+            int[] source = other.rows;
+            int[] current = rows;
+            if (size + count > current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, size + count));
+                rows = current;
+            }
+            for (int i = 0; i < count; i++) {
+                current[size + i] = source[i] + offset;
+            }
+            size = size + count;
+        }
+        
+        // Moves every row up by offset; only for a list no reader can see yet
+        void shift(int offset) {
+            int[] current = rows;
+            for (int i = 0; i < size; i++) {
+                current[i] += offset;
+            }
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        // Smallest row greater than after, or -1
+        int next(int after) {
+            int count = size;
+            int[] current = rows;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (current[middle] <= after) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low < count ? current[low] : -1;
+        }
+    }
+    
+    // Transaction backed by one row of the store
+    public final class View extends Transaction {
+        private static final long serialVersionUID = 1L;
+        
+        private final int row;
+        
+        private View(int row) {
+            this.row = row;
+        }
+        
+        public int getRow() { return row; }
+        
+        @Override public String getTransactionId() { return TransactionStore.this.getTransactionId(row); }
+        @Override public String getAccountNumber() { return TransactionStore.this.getAccountNumber(row); }
+        @Override public TransactionType getType() { return TransactionStore.this.getType(row); }
+        @Override public long getAmountCents() { return TransactionStore.this.getAmountCents(row); }
+        @Override public LocalDateTime getTimestamp() { return TransactionStore.this.getTimestamp(row); }
+        @Override public String getDescription() { return TransactionStore.this.getDescription(row); }
+        
+        // Serialized as a plain Transaction, the store stays behind
+        private Object writeReplace() throws ObjectStreamException {
+            return new Transaction(getTransactionId(), getAccountNumber(), getType(), getAmountCents(),
+                getTimestamp(), getDescription());
+        }
+    }
+    
+    private volatile Memory memory;
+    private volatile int size;
+    // Commit sequence: rows below it belong to finished appends, so a transfer's two
+    // rows become visible to a ReadView together
+    private volatile int committed;
+    private volatile BinaryLedger ledger;
+    // Writer-side state, guarded by this
+    private int stringCount;
+    private Map<String, Integer> ordinals = new HashMap<>();
+    private long highestId = -1;
+    private boolean grouping;
+    // Rollups of recently queried accounts in a segmented LRU cache of
+    // -Dbanking.cache.rollups entries. Row numbers survive eviction of rows, so the
+    // rollups do too; a rollup dropped from the cache stops being updated and is
+    // rebuilt on its next use.
+    private final List<Map<String, AccountRollup>> rollups = new ArrayList<>(ROLLUP_SEGMENTS);
+    // In-memory rows of each account
+    private volatile Map<String, RowList> histories = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public TransactionStore() {
+        this(null, 0);
+    }
+    
+    // A store whose first base rows are already in the ledger
+    public TransactionStore(BinaryLedger ledger, int base) {
+        int segmentCapacity = Math.max(1, ROLLUP_CACHE / ROLLUP_SEGMENTS);
+        for (int i = 0; i < ROLLUP_SEGMENTS; i++) {
+            rollups.add(new LinkedHashMap<String, AccountRollup>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AccountRollup> eldest) {
+                    return size() > segmentCapacity;
+                }
+            });
+        }
+        this.ledger = ledger;
+        this.memory = new Memory(base, new Chunk[0], new String[64]);
+        this.size = base;
+        this.committed = base;
+    }
+    
+    // Where rows below base are read from once they have been evicted
+    public void setLedger(BinaryLedger ledger) {
+        this.ledger = ledger;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public int getCommittedRows() {
+        return committed;
+    }
+    
+    // Number of rows held in memory
+    public int getResidentRows() {
+        return size - memory.base;
+    }
+    
+    // Highest numeric transaction ID appended so far
+    public synchronized long getHighestId() {
+        return highestId;
+    }
+    
+    public synchronized void observeHighestId(long id) {
+        highestId = Math.max(highestId, id);
+    }
+    
+    // Appends both rows as one commit, e.g. the two legs of a transfer
+    public synchronized void append(Transaction first, Transaction second) {
+        grouping = true;
+        try {
+            append(first);
+            append(second);
+        } finally {
+            grouping = false;
+            committed = size;
+        }
+    }
+    
+    public synchronized int append(Transaction transaction) {
+        return append(transaction.getTransactionId(), transaction.getAccountNumber(), transaction.getType(),
+            transaction.getAmountCents(), BinaryLedger.toMicros(transaction.getTimestamp()),
+            transaction.getDescription());
+    }
+    
+    public synchronized int append(String transactionId, String accountNumber,
+                                   Transaction.TransactionType type, long amountCents,
+                                   long timestampMicros, String description) {
+        long id = IdGenerator.transactionValue(transactionId);
+        if (id < 0) {
+            id = -(ordinal(transactionId) + 1L);
+        } else {
+            highestId = Math.max(highestId, id);
+        }
+        int account = ordinal(accountNumber);
+        return appendRow(id, timestampMicros, amountCents, account, ordinal(description),
+            (byte) type.ordinal(), histories);
+    }
+    
+    // Moves every row of a store that follows this one, e.g. the next chunk of a file,
+    // onto the end of this one. Columns are copied a chunk run at a time and the
+    // per-account histories the later store built are merged rather than rebuilt;
+    // the later store must not be used afterwards. Only used while loading, before
+    // any rollup exists.
+    public synchronized void appendAll(TransactionStore later) {
+        Memory source = later.memory;
+        int total = later.size - source.base;
+        if (total > Integer.MAX_VALUE - size) {
+            throw new IllegalStateException("Transaction store is full");
+        }
+        int[] remap = new int[later.stringCount];
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = ordinal(source.strings[i]);
+        }
+        int offset = size - source.base;
+        for (int copied = 0; copied < total; ) {
+            Chunk from = source.chunks[copied >>> CHUNK_SHIFT];
+            int fromIndex = copied & CHUNK_MASK;
+            Chunk to = writableChunk(size);
+            int toIndex = (size - memory.base) & CHUNK_MASK;
+            int run = Math.min(total - copied, CHUNK_ROWS - Math.max(fromIndex, toIndex));
+            System.arraycopy(from.timestamps, fromIndex, to.timestamps, toIndex, run);
+            System.arraycopy(from.amounts, fromIndex, to.amounts, toIndex, run);
+            System.arraycopy(from.types, fromIndex, to.types, toIndex, run);
+            for (int i = 0; i < run; i++) {
+                long id = from.ids[fromIndex + i];
+                to.ids[toIndex + i] = id < 0 ? -(remap[(int) (-id - 1)] + 1L) : id;
+                to.accounts[toIndex + i] = remap[from.accounts[fromIndex + i]];
+                to.descriptions[toIndex + i] = remap[from.descriptions[fromIndex + i]];
+            }
+            size = size + run;
+            copied += run;
+        }
+        committed = size;
+        for (Map.Entry<String, RowList> entry : later.histories.entrySet()) {
+            RowList history = histories.get(entry.getKey());
+            if (history == null) {
+                entry.getValue().shift(offset);
+                histories.put(entry.getKey(), entry.getValue());
+            } else {
+                history.addAll(entry.getValue(), offset);
+            }
+        }
+        highestId = Math.max(highestId, later.highestId);
+    }
+    
+    // The chunk the row goes into, adding one when the row starts a new chunk
+    private Chunk writableChunk(int row) {
+        Memory current = memory;
+        int chunkIndex = (row - current.base) >>> CHUNK_SHIFT;
+        if (chunkIndex == current.chunks.length) {
+            Chunk[] chunks = Arrays.copyOf(current.chunks, chunkIndex + 1);
+            chunks[chunkIndex] = new Chunk();
+            current = new Memory(current.base, chunks, current.strings);
+            memory = current;
+        }
+        return current.chunks[chunkIndex];
+    }
+    
+    private int appendRow(long id, long timestampMicros, long amountCents, int account, int description,
+                          byte type, Map<String, RowList> index) {
+        int row = size;
+        if (row == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Transaction store is full");
+        }
+        Chunk chunk = writableChunk(row);
+        Memory current = memory;
+        int i = (row - current.base) & CHUNK_MASK;
+        chunk.ids[i] = id;
+        chunk.timestamps[i] = timestampMicros;
+        chunk.amounts[i] = amountCents;
+        chunk.accounts[i] = account;
+        chunk.descriptions[i] = description;
+        chunk.types[i] = type;
+        index.computeIfAbsent(current.strings[account], k -> new RowList()).add(row);
+        AccountRollup rollup = cachedRollup(current.strings[account]);
+        if (rollup != null) {
+            rollup.add(row, timestampMicros, TYPES[type].isCredit() ? amountCents : -amountCents);
+        }
+        size = row + 1;
+        if (!grouping) {
+            committed = size;
+        }
+        return row;
+    }
+    
+    private int ordinal(String value) {
+        Integer existing = ordinals.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        Memory current = memory;
+        String[] strings = current.strings;
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, strings.length * 2);
+            current = new Memory(current.base, current.chunks, strings);
+        }
+        strings[stringCount] = value;
+        // Publish before any row can refer to the new ordinal
+        memory = current;
+        ordinals.put(value, stringCount);
+        return stringCount++;
+    }
+    
+    // Drops rows below newBase from memory; they must already be in the ledger. The
+    // remaining rows are copied into fresh chunks so strings only the dropped rows
+    // used are released as well. Only one eviction may run at a time. Rows are copied
+    // without any lock, in rounds until at most LOCKED_TAIL remain; only that tail and
+    // the switch to the fresh chunks hold the monitor.
+    public void evictBefore(int newBase) {
+        BinaryLedger cold = ledger;
+        int base = memory.base;
+        if (cold == null || newBase <= base) {
+            return;
+        }
+        newBase = Math.min(newBase, Math.min(size, (int) Math.min(Integer.MAX_VALUE, cold.size())));
+        if (newBase <= base) {
+            return;
+        }
+        
+        TransactionStore fresh = new TransactionStore(cold, newBase);
+        int copied = newBase;
+        for (int end = size; end - copied > LOCKED_TAIL; end = size) {
+            copyRows(fresh, copied, end);
+            copied = end;
+        }
+        synchronized (this) {
+            copyRows(fresh, copied, size);
+            // Rows below newBase keep their numbers; readers still holding the old
+            // memory or history read them from there, everyone else from the ledger
+            histories = fresh.histories;
+            ordinals = fresh.ordinals;
+            stringCount = fresh.stringCount;
+            memory = fresh.memory;
+        }
+    }
+    
+    // Appends rows [from, to) of this store to a fresh one no reader can see yet
+    private void copyRows(TransactionStore fresh, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        // Read after the size, so this memory holds every row below to
+        Memory old = memoryFor(to - 1);
+        for (int row = from; row < to; row++) {
+            int local = row - old.base;
+            Chunk chunk = old.chunks[local >>> CHUNK_SHIFT];
+            int i = local & CHUNK_MASK;
+            long id = chunk.ids[i];
+            String pooledId = id < 0 ? old.strings[(int) (-id - 1)] : null;
+            if (pooledId != null) {
+                id = -(fresh.ordinal(pooledId) + 1L);
+            }
+            fresh.appendRow(id, chunk.timestamps[i], chunk.amounts[i], fresh.ordinal(old.strings[chunk.accounts[i]]),
+                fresh.ordinal(old.strings[chunk.descriptions[i]]), chunk.types[i], fresh.histories);
+        }
+    }
+    
+    public Transaction get(int row) {
+        checkRow(row);
+        return new View(row);
+    }
+    
+    // Views of rows [from, to)
+    public List<Transaction> rows(int from, int to) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("Transaction rows " + from + " to " + to);
+        }
+        return new AbstractList<Transaction>() {
+            @Override
+            public Transaction get(int index) {
+                return new View(from + index);
+            }
+            
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+    
+    // Up to max rows of an account's history, oldest first, starting at row from or at
+    // the account's first transaction if from is negative. firstLedgerRow is the
+    // account's first ledger record, or -1. Older rows are followed through the
+    // ledger's per-account links, newer ones through the in-memory index.
+    public int[] historyRows(String accountNumber, long firstLedgerRow, int from, int max) {
+        int[] rows = new int[Math.max(0, Math.min(max, 64))];
+        int count = 0;
+        long row;
+        if (from >= 0) {
+            row = from < size && accountNumber.equals(getAccountNumber(from)) ? from : -1;
+        } else {
+            row = firstLedgerRow >= 0 ? firstLedgerRow : nextResidentRow(accountNumber, -1);
+        }
+        while (row >= 0 && count < max) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, (int) Math.min(max, rows.length * 2L));
+            }
+            rows[count++] = (int) row;
+            if (row >= memory.base) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+            row = nextRow(accountNumber, (int) row);
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+    
+    // The account's rollup, or null until installRollup has been called for it
+    public AccountRollup getRollup(String accountNumber) {
+        return cachedRollup(accountNumber);
+    }
+    
+    private AccountRollup cachedRollup(String accountNumber) {
+        Map<String, AccountRollup> segment = rollupSegment(accountNumber);
+        synchronized (segment) {
+            return segment.get(accountNumber);
+        }
+    }
+    
+    private Map<String, AccountRollup> rollupSegment(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return rollups.get((hash ^ (hash >>> 16)) & (ROLLUP_SEGMENTS - 1));
+    }
+    
+    // Builds a rollup of the account's rows below through without holding any lock;
+    // installRollup adds whatever was appended since
+    public AccountRollup buildRollup(String accountNumber, long firstLedgerRow, int through) {
+        AccountRollup rollup = new AccountRollup();
+        for (int row : historyRows(accountNumber, firstLedgerRow, -1, Integer.MAX_VALUE)) {
+            if (row >= through) {
+                break;
+            }
+            rollup.add(row, getTimestampMicros(row), signedAmount(row));
+        }
+        return rollup;
+    }
+    
+    // Catches a built rollup up with the rows appended since and publishes it, so every
+    // later append updates it. balanceCents is the account's balance with no posting
+    // in flight; whatever the rows do not explain is the balance it started with.
+    // Returns the rollup already installed if another caller got there first. Only
+    // the rows since through are read under the monitor; catchUpRollup keeps them few.
+    public AccountRollup installRollup(String accountNumber, AccountRollup built, int through,
+                                       long balanceCents) {
+        synchronized (this) {
+            AccountRollup existing = cachedRollup(accountNumber);
+            if (existing != null) {
+                return existing;
+            }
+            catchUp(accountNumber, built, through, size);
+            built.setBase(balanceCents - built.getTotal());
+            Map<String, AccountRollup> segment = rollupSegment(accountNumber);
+            synchronized (segment) {
+                segment.put(accountNumber, built);
+            }
+            return built;
+        }
+    }
+    
+    // Adds rows appended since through to a rollup not yet installed, without any
+    // lock, in rounds until at most LOCKED_TAIL remain. Returns the rows it covers.
+    public int catchUpRollup(String accountNumber, AccountRollup built, int through) {
+        int caught = through;
+        for (int end = size; end - caught > LOCKED_TAIL; end = size) {
+            catchUp(accountNumber, built, caught, end);
+            caught = end;
+        }
+        return caught;
+    }
+    
+    // Adds the account's rows in [from, to) to a rollup nobody else can see yet
+    private void catchUp(String accountNumber, AccountRollup rollup, int from, int to) {
+        for (int row = from; row < to; row++) {
+            if (accountNumber.equals(getAccountNumber(row))) {
+                rollup.add(row, getTimestampMicros(row), signedAmount(row));
+            }
+        }
+    }
+    
+    // Net amount of the account's rows from row from on, credits positive; those rows
+    // must still be in memory. Called with the account's stripe held, it is what the
+    // balance has moved since from.
+    public long sumSince(String accountNumber, int from) {
+        RowList history = histories.get(accountNumber);
+        long total = 0;
+        for (int row = history == null ? -1 : history.next(from - 1); row >= 0; row = history.next(row)) {
+            total += signedAmount(row);
+        }
+        return total;
+    }
+    
+    private long signedAmount(int row) {
+        long amount = getAmountCents(row);
+        return getType(row).isCredit() ? amount : -amount;
+    }
+    
+    // Views of the given rows
+    public List<Transaction> views(int[] rows) {
+        Transaction[] views = new Transaction[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            views[i] = new View(rows[i]);
+        }
+        return new ArrayList<>(Arrays.asList(views));
+    }
+    
+    private long nextRow(String accountNumber, int row) {
+        BinaryLedger cold = ledger;
+        if (cold != null && row < cold.size()) {
+            long next = cold.getNext(row);
+            if (next >= 0) {
+                return next;
+            }
+        }
+        return nextResidentRow(accountNumber, row);
+    }
+    
+    private int nextResidentRow(String accountNumber, int after) {
+        RowList history = histories.get(accountNumber);
+        return history == null ? -1 : history.next(after);
+    }
+    
+    public String getTransactionId(int row) {
+        Memory current = memoryFor(row);
+        Chunk chunk = chunk(current, row);
+        if (chunk == null) {
+            return ledger.getTransactionId(row);
+        }
+        long id = chunk.ids[(row - current.base) & CHUNK_MASK];
+        return id >= 0 ? IdGenerator.TRANSACTION_PREFIX + id : current.strings[(int) (-id - 1)];
+    }
+    
+    public String getAccountNumber(int row) {
+        Memory current = memoryFor(row);
+        Chunk chunk = chunk(current, row);
+        return chunk == null ? ledger.getAccountNumber(row)
+            : current.strings[chunk.accounts[(row - current.base) & CHUNK_MASK]];
+    }
+    
+    public Transaction.TransactionType getType(int row) {
+        Memory current = memoryFor(row);
+        Chunk chunk = chunk(current, row);
+        return chunk == null ? ledger.getType(row) : TYPES[chunk.types[(row - current.base) & CHUNK_MASK]];
+    }
+    
+    public long getAmountCents(int row) {
+        Memory current = memoryFor(row);
+        Chunk chunk = chunk(current, row);
+        return chunk == null ? ledger.getAmountCents(row) : chunk.amounts[(row - current.base) & CHUNK_MASK];
+    }
+    
+    public long getTimestampMicros(int row) {
+        Memory current = memoryFor(row);
+        Chunk chunk = chunk(current, row);
+        return chunk == null ? ledger.getTimestampMicros(row)
+            : chunk.timestamps[(row - current.base) & CHUNK_MASK];
+    }
+    
+    public LocalDateTime getTimestamp(int row) {
+        return BinaryLedger.fromMicros(getTimestampMicros(row));
+    }
+    
+    public String getDescription(int row) {
+        Memory current = memoryFor(row);
+        Chunk chunk = chunk(current, row);
+        return chunk == null ? ledger.getDescription(row)
+            : current.strings[chunk.descriptions[(row - current.base) & CHUNK_MASK]];
+    }
+    
+    public CacheStats getCacheStats() {
+        return new CacheStats(hits.sum(), misses.sum(), getResidentRows(), -1);
+    }
+    
+    // Checks the row against the size before reading memory, so the memory returned
+    // holds every row below that size that has not been evicted
+    private Memory memoryFor(int row) {
+        checkRow(row);
+        return memory;
+    }
+    
+    // The chunk holding the row, or null if the row is only in the ledger
+    private static Chunk chunk(Memory current, int row) {
+        return row < current.base ? null : current.chunks[(row - current.base) >>> CHUNK_SHIFT];
+    }
+    
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Transaction row " + row);
+        }
+    }
+}
\ No newline at end of file
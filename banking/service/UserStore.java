@@ -0,0 +1,441 @@
+package com.banking.service;
+
+import com.banking.model.User;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Users in an open-addressing hash table, data/users.bin, mapped into memory so the
+// heap does not grow with the number of customers. The table doubles when it is
+// three quarters full (-Dbanking.users.capacity sets the initial number of slots).
+// Each user also heads the list of their accounts, which AccountStore links
+// through its own slots.
+//
+// Like the account table it is a working copy, rebuilt from the snapshot and
+// journal at startup. Lookups take the read side of a lock, changes and growth the
+// write side; logins are dominated by password hashing, not by this lock.
+//
+// A lookup hashes the name with String.hashCode and compares its chars with the
+// stored UTF-8 bytes in place, so finding a slot allocates nothing. Decoding a user
+// does, so recently read users are also kept, decoded, in a small direct-mapped
+// cache (-Dbanking.cache.users entries): a repeat lookup allocates nothing, at the
+// cost of that many User objects on the heap.
+//
+// Slot layout (256 bytes):
+//   0  byte  1 if the slot holds a user
+//   1  byte  1 if the user is active
+//   2  byte  username length in bytes
+//   3  byte  password hash length in bytes
+//   4  byte  salt length in bytes
+//   8  int   slot of the user's first account in the account table, or -1
+//   12 int   slot of the user's last account, or -1
+//   16 int   hash of the username
+//   20       username, password hash and salt, UTF-8
+public class UserStore {
+    public static final String TABLE_FILE = "users.bin";
+    
+    private static final int SLOT_SIZE = 256;
+    private static final int USED = 0;
+    private static final int ACTIVE = 1;
+    private static final int NAME_LENGTH = 2;
+    private static final int HASH_LENGTH = 3;
+    private static final int SALT_LENGTH = 4;
+    private static final int FIRST_ACCOUNT = 8;
+    private static final int LAST_ACCOUNT = 12;
+    private static final int NAME_HASH = 16;
+    private static final int TEXT = 20;
+    private static final int MAX_TEXT_BYTES = SLOT_SIZE - TEXT;
+    // A single mapping holds at most 2 GB
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / SLOT_SIZE + 1 >>> 1;
+    // Entries of the decoded user cache, a power of two
+    private static final int CACHE_SIZE = Integer.highestOneBit(Math.max(1,
+        Integer.getInteger("banking.cache.users", 4096)));
+    
+    private final Path path;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private MappedByteBuffer table;
+    private int capacity;
+    private int count;
+    // Users whose fields do not fit a slot, with their first and last account slots
+    private final Map<String, User> overflow = new ConcurrentHashMap<>();
+    private final Map<String, int[]> overflowAccounts = new ConcurrentHashMap<>();
+    // Decoded users by name hash; filled under the read lock and cleared for a name
+    // under the write lock whenever that user is replaced
+    private final AtomicReferenceArray<User> recent = new AtomicReferenceArray<>(CACHE_SIZE);
+    
+    public UserStore(Path directory, int initialCapacity) throws IOException {
+        this.path = directory.resolve(TABLE_FILE);
+        this.capacity = Math.max(16, Integer.highestOneBit(Math.min(MAX_CAPACITY, Math.max(1, initialCapacity))));
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        // Start from an empty (sparse) table; the caller loads the durable state into it
+        channel.truncate(0);
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * SLOT_SIZE);
+    }
+    
+    // The user with this name, or null
+    public User get(String username) {
+        lock.readLock().lock();
+        try {
+            User user = overflow.get(username);
+            if (user != null) {
+                return user;
+            }
+            int index = hash(username) & (CACHE_SIZE - 1);
+            user = recent.get(index);
+            if (user != null && user.getUsername().equals(username)) {
+                return user;
+            }
+            int slot = find(username);
+            if (slot < 0) {
+                return null;
+            }
+            user = read(slot);
+            recent.set(index, user);
+            return user;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Adds a user unless one with the same name exists; returns false if it does
+    public boolean insert(User user) {
+        lock.writeLock().lock();
+        try {
+            if (overflow.containsKey(user.getUsername()) || find(user.getUsername()) >= 0) {
+                return false;
+            }
+            add(user, -1, -1);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Adds the user or replaces the one with the same name, keeping its accounts;
+    // used by journal replay
+    public void put(User user) {
+        lock.writeLock().lock();
+        try {
+            recent.set(hash(user.getUsername()) & (CACHE_SIZE - 1), null);
+            int[] accounts = overflowAccounts.remove(user.getUsername());
+            overflow.remove(user.getUsername());
+            int slot = find(user.getUsername());
+            if (slot >= 0) {
+                int offset = slot * SLOT_SIZE;
+                accounts = new int[] {table.getInt(offset + FIRST_ACCOUNT), table.getInt(offset + LAST_ACCOUNT)};
+                remove(slot);
+            }
+            add(user, accounts == null ? -1 : accounts[0], accounts == null ? -1 : accounts[1]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Replaces the user if its stored password hash is still the expected one's
+    public boolean replace(User expected, User updated) {
+        lock.writeLock().lock();
+        try {
+            User current = get(expected.getUsername());
+            if (current == null || !current.getPasswordHash().equals(expected.getPasswordHash())) {
+                return false;
+            }
+            put(updated);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count + overflow.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Calls the action for every user, without holding on to them
+    public void forEach(Consumer<User> action) {
+        forEach(total -> { }, action);
+    }
+    
+    // Calls total with the number of users, then the action for each of them; users
+    // are only added or replaced once the last action has returned
+    public void forEach(IntConsumer total, Consumer<User> action) {
+        lock.readLock().lock();
+        try {
+            total.accept(count + overflow.size());
+            for (int slot = 0; slot < capacity; slot++) {
+                if (table.get(slot * SLOT_SIZE + USED) != 0) {
+                    action.accept(read(slot));
+                }
+            }
+            overflow.values().forEach(action);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Account table slot of the user's first account, or -1
+    public int getFirstAccount(String username) {
+        return getAccount(username, 0, FIRST_ACCOUNT);
+    }
+    
+    // Account table slot of the user's last account, or -1
+    public int getLastAccount(String username) {
+        return getAccount(username, 1, LAST_ACCOUNT);
+    }
+    
+    private int getAccount(String username, int index, int field) {
+        lock.readLock().lock();
+        try {
+            int[] accounts = overflowAccounts.get(username);
+            if (accounts != null) {
+                return accounts[index];
+            }
+            int slot = find(username);
+            return slot < 0 ? -1 : table.getInt(slot * SLOT_SIZE + field);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Replaces both ends of the user's account list, for a caller relinking the
+    // accounts in between; returns false if there is no such user
+    public boolean setAccounts(String username, int firstAccount, int lastAccount) {
+        lock.writeLock().lock();
+        try {
+            if (overflowAccounts.containsKey(username)) {
+                overflowAccounts.put(username, new int[] {firstAccount, lastAccount});
+                return true;
+            }
+            int slot = find(username);
+            if (slot < 0) {
+                return false;
+            }
+            table.putInt(slot * SLOT_SIZE + FIRST_ACCOUNT, firstAccount);
+            table.putInt(slot * SLOT_SIZE + LAST_ACCOUNT, lastAccount);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Makes accountSlot the user's last account. Returns the slot of the account it
+    // follows, which the caller links to it, -1 if it is the first, or -2 if there
+    // is no such user.
+    public int addAccount(String username, int accountSlot) {
+        lock.writeLock().lock();
+        try {
+            int[] accounts = overflowAccounts.get(username);
+            if (accounts != null) {
+                int previous = accounts[1];
+                overflowAccounts.put(username, new int[] {previous < 0 ? accountSlot : accounts[0], accountSlot});
+                return previous;
+            }
+            int slot = find(username);
+            if (slot < 0) {
+                return -2;
+            }
+            int offset = slot * SLOT_SIZE;
+            int previous = table.getInt(offset + LAST_ACCOUNT);
+            if (previous < 0) {
+                table.putInt(offset + FIRST_ACCOUNT, accountSlot);
+            }
+            table.putInt(offset + LAST_ACCOUNT, accountSlot);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Slot holding the name, or -1
+    private int find(String name) {
+        int mask = capacity - 1;
+        int nameHash = hash(name);
+        for (int slot = nameHash & mask; ; slot = (slot + 1) & mask) {
+            int offset = slot * SLOT_SIZE;
+            if (table.get(offset + USED) == 0) {
+                return -1;
+            }
+            if (table.getInt(offset + NAME_HASH) == nameHash && matches(offset, name)) {
+                return slot;
+            }
+        }
+    }
+    
+    // Compares the name's chars with the stored UTF-8 bytes, encoding as it goes;
+    // unpaired surrogates are stored as '?', as String.getBytes does
+    private boolean matches(int offset, String name) {
+        int at = offset + TEXT;
+        int end = at + (table.get(offset + NAME_LENGTH) & 0xFF);
+        for (int i = 0; i < name.length(); ) {
+            int c = name.codePointAt(i);
+            i += Character.charCount(c);
+            if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                c = '?';
+            }
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (end - at < bytes) {
+                return false;
+            }
+            if (bytes == 1) {
+                if (table.get(at++) != c) {
+                    return false;
+                }
+                continue;
+            }
+            // A lead byte marking the length, then six bits per continuation byte
+            if ((table.get(at++) & 0xFF) != ((0xF00 >> bytes) & 0xFF | c >>> (6 * (bytes - 1)))) {
+                return false;
+            }
+            for (int shift = 6 * (bytes - 2); shift >= 0; shift -= 6) {
+                if ((table.get(at++) & 0xFF) != (0x80 | (c >>> shift) & 0x3F)) {
+                    return false;
+                }
+            }
+        }
+        return at == end;
+    }
+    
+    // Caller holds the write lock and has checked the name is not present
+    private void add(User user, int firstAccount, int lastAccount) {
+        byte[] name = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] hash = user.getPasswordHash().getBytes(StandardCharsets.UTF_8);
+        byte[] salt = user.getSalt().getBytes(StandardCharsets.UTF_8);
+        if (name.length + hash.length + salt.length > MAX_TEXT_BYTES) {
+            overflow.put(user.getUsername(), copy(user));
+            overflowAccounts.put(user.getUsername(), new int[] {firstAccount, lastAccount});
+            return;
+        }
+        if ((count + 1) * 4L > capacity * 3L) {
+            grow();
+        }
+        int mask = capacity - 1;
+        int nameHash = hash(user.getUsername());
+        int slot = nameHash & mask;
+        while (table.get(slot * SLOT_SIZE + USED) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        write(slot, nameHash, name, hash, salt, user.isActive(), firstAccount, lastAccount);
+        count++;
+    }
+    
+    private void write(int slot, int nameHash, byte[] name, byte[] hash, byte[] salt, boolean active,
+                       int firstAccount, int lastAccount) {
+        int offset = slot * SLOT_SIZE;
+        table.put(offset + ACTIVE, (byte) (active ? 1 : 0));
+        table.put(offset + NAME_LENGTH, (byte) name.length);
+        table.put(offset + HASH_LENGTH, (byte) hash.length);
+        table.put(offset + SALT_LENGTH, (byte) salt.length);
+        table.putInt(offset + FIRST_ACCOUNT, firstAccount);
+        table.putInt(offset + LAST_ACCOUNT, lastAccount);
+        table.putInt(offset + NAME_HASH, nameHash);
+        table.put(offset + TEXT, name);
+        table.put(offset + TEXT + name.length, hash);
+        table.put(offset + TEXT + name.length + hash.length, salt);
+        table.put(offset + USED, (byte) 1);
+    }
+    
+    // Removes a slot and moves later slots of its probe run back into the gap
+    private void remove(int slot) {
+        int mask = capacity - 1;
+        table.put(slot * SLOT_SIZE + USED, (byte) 0);
+        count--;
+        int gap = slot;
+        for (int next = (slot + 1) & mask; table.get(next * SLOT_SIZE + USED) != 0; next = (next + 1) & mask) {
+            int home = table.getInt(next * SLOT_SIZE + NAME_HASH) & mask;
+            // Move it if its home is not between the gap and its current slot
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                byte[] entry = new byte[SLOT_SIZE];
+                table.get(next * SLOT_SIZE, entry);
+                table.put(gap * SLOT_SIZE, entry);
+                table.put(next * SLOT_SIZE + USED, (byte) 0);
+                gap = next;
+            }
+        }
+    }
+    
+    // Rehashes into a table twice the size, in a new file moved over the old one
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("User table is full");
+        }
+        Path temp = path.resolveSibling(TABLE_FILE + ".tmp");
+        try {
+            FileChannel larger = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            MappedByteBuffer target = larger.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * 2 * SLOT_SIZE);
+            int mask = capacity * 2 - 1;
+            byte[] entry = new byte[SLOT_SIZE];
+            for (int slot = 0; slot < capacity; slot++) {
+                if (table.get(slot * SLOT_SIZE + USED) == 0) {
+                    continue;
+                }
+                int moved = table.getInt(slot * SLOT_SIZE + NAME_HASH) & mask;
+                while (target.get(moved * SLOT_SIZE + USED) != 0) {
+                    moved = (moved + 1) & mask;
+                }
+                table.get(slot * SLOT_SIZE, entry);
+                target.put(moved * SLOT_SIZE, entry);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = larger;
+            table = target;
+            capacity *= 2;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to grow user table", e);
+        }
+    }
+    
+    private User read(int slot) {
+        int offset = slot * SLOT_SIZE;
+        int nameLength = table.get(offset + NAME_LENGTH) & 0xFF;
+        int hashLength = table.get(offset + HASH_LENGTH) & 0xFF;
+        byte[] text = new byte[nameLength + hashLength + (table.get(offset + SALT_LENGTH) & 0xFF)];
+        table.get(offset + TEXT, text);
+        User user = new User(new String(text, 0, nameLength, StandardCharsets.UTF_8),
+            new String(text, nameLength, hashLength, StandardCharsets.UTF_8),
+            new String(text, nameLength + hashLength, text.length - nameLength - hashLength,
+                StandardCharsets.UTF_8));
+        user.setActive(table.get(offset + ACTIVE) != 0);
+        return user;
+    }
+    
+    // String caches its hash code, so this costs nothing after the first call
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    private static User copy(User user) {
+        User copy = new User(user.getUsername(), user.getPasswordHash(), user.getSalt());
+        copy.setActive(user.isActive());
+        return copy;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,471 @@
+package com.banking.util;
+
+import com.banking.model.Account;
+import com.banking.model.Money;
+import com.banking.model.Statement;
+import com.banking.model.Transaction;
+import com.banking.model.TransactionPage;
+import com.banking.security.InputValidator;
+import com.banking.service.BankingService;
+import com.banking.service.Session;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves the menu operations over a line-based TCP protocol on the loopback
+// interface. Each connection runs on its own thread (a virtual thread where the
+// runtime has them) and holds its own session; a command is one line of
+// space-separated words, a reply is one line starting with OK or ERR, and
+// replies carrying rows are followed by that many lines. A line longer than
+// MAX_LINE characters gets an error and the connection is dropped, and so does a
+// client that sends nothing for banking.server.idleTimeout seconds. Everything but
+// REGISTER, LOGIN, LOGOUT and QUIT needs a logged-in session, METRICS included: it
+// reveals activity levels and cache sizes.
+//
+//   REGISTER <username> <password>      LOGIN <username> <password>      LOGOUT
+//   CREATE SAVINGS|CHECKING             ACCOUNTS
+//   DEPOSIT <account> <amount>          WITHDRAW <account> <amount>
+//   TRANSFER <from> <to> <amount>       HISTORY <account> [cursor] [limit]
+//   STATEMENT <account> [yyyy-mm]       METRICS                          QUIT
+//
+// A statement replies "OK <rows> <opening> <credits> <debits> <closing>" followed by
+// its transactions in the HISTORY row format; the month defaults to the current one.
+public class BankingServer {
+    private static final int MAX_LINE = 1024;
+    // Returned by readLine in place of an overlong line; compared by identity
+    private static final String LINE_TOO_LONG = new String("");
+    private static final int MAX_PAGE = 1000;
+    private static final int DEFAULT_PAGE = 10;
+    // Seconds a connection may sit idle between commands before it is dropped
+    private static final int IDLE_TIMEOUT_SECONDS = Integer.getInteger("banking.server.idleTimeout", 300);
+    // Platform threads only serve when virtual threads are unavailable; keep their stacks small
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+    
+    private final BankingService bankingService;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Map<Socket, Boolean> openSockets = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private Thread acceptor;
+    private volatile boolean running;
+    
+    public BankingServer(BankingService bankingService, int port) throws IOException {
+        this.bankingService = bankingService;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+    }
+    
+    // One virtual thread per task on Java 21+, looked up reflectively so the code
+    // still builds and runs on 17, where it falls back to small-stack platform threads
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(null, r, "connection-" + threadCount.incrementAndGet(),
+                    PLATFORM_STACK_BYTES);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+    
+    public synchronized void start() {
+        if (acceptor != null) {
+            return;
+        }
+        running = true;
+        acceptor = new Thread(this::acceptConnections, "server-acceptor");
+        acceptor.start();
+    }
+    
+    // Blocks until the server has stopped
+    public void awaitTermination() throws InterruptedException {
+        Thread toJoin;
+        synchronized (this) {
+            toJoin = acceptor;
+        }
+        if (toJoin != null) {
+            toJoin.join();
+        }
+    }
+    
+    // Stops accepting, disconnects every client and closes their sessions
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        for (Socket socket : openSockets.keySet()) {
+            closeQuietly(socket);
+        }
+        connections.shutdown();
+        try {
+            connections.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void acceptConnections() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                    continue;
+                }
+                break;
+            }
+            openSockets.put(socket, Boolean.TRUE);
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RuntimeException e) {
+                // Rejected while stopping
+                openSockets.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        connectionCount.incrementAndGet();
+        Connection connection = new Connection();
+        try (Reader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(
+                 new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(IDLE_TIMEOUT_SECONDS * 1000);
+            StringBuilder buffer = new StringBuilder(MAX_LINE);
+            String line;
+            while ((line = readLine(in, buffer)) != null) {
+                if (line == LINE_TOO_LONG) {
+                    out.write("ERR Line too long\n");
+                    break;
+                }
+                boolean open = connection.handle(line.trim(), out);
+                out.flush();
+                if (!open) {
+                    break;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            // Idle too long; the session is closed below
+        } catch (SocketException e) {
+            // Client went away or the server is stopping
+        } catch (IOException e) {
+            System.err.println("Error serving connection: " + e.getMessage());
+        } finally {
+            bankingService.closeSession(connection.session);
+            openSockets.remove(socket);
+            closeQuietly(socket);
+            connectionCount.decrementAndGet();
+        }
+    }
+    
+    // The next line without its terminator, or null at the end of the stream. Stops
+    // reading at the first character past MAX_LINE and returns LINE_TOO_LONG, so a
+    // client cannot make the server buffer an unbounded line.
+    private static String readLine(Reader in, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                return buffer.toString();
+            }
+            if (c == '\r') {
+                continue;
+            }
+            if (buffer.length() == MAX_LINE) {
+                return LINE_TOO_LONG;
+            }
+            buffer.append((char) c);
+        }
+        return buffer.length() > 0 ? buffer.toString() : null;
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+    
+    // Per-connection state; only the connection's own thread touches it
+    private final class Connection {
+        private Session session;
+        
+        // Returns false once the client asked to disconnect
+        boolean handle(String line, Writer out) throws IOException {
+            if (line.isEmpty()) {
+                return true;
+            }
+            String[] words = line.split(" +", 2);
+            String command = words[0].toUpperCase();
+            String rest = words.length > 1 ? words[1] : "";
+            if (needsSession(command) && (session == null || !session.isOpen())) {
+                out.write("ERR Not logged in\n");
+                return true;
+            }
+            try {
+                switch (command) {
+                    case "REGISTER":
+                        register(rest, out);
+                        break;
+                    case "LOGIN":
+                        login(rest, out);
+                        break;
+                    case "LOGOUT":
+                        bankingService.closeSession(session);
+                        session = null;
+                        out.write("OK\n");
+                        break;
+                    case "CREATE":
+                        createAccount(rest, out);
+                        break;
+                    case "ACCOUNTS":
+                        listAccounts(out);
+                        break;
+                    case "DEPOSIT":
+                        deposit(rest, out);
+                        break;
+                    case "WITHDRAW":
+                        withdraw(rest, out);
+                        break;
+                    case "TRANSFER":
+                        transfer(rest, out);
+                        break;
+                    case "HISTORY":
+                        history(rest, out);
+                        break;
+                    case "STATEMENT":
+                        statement(rest, out);
+                        break;
+                    case "METRICS":
+                        metrics(out);
+                        break;
+                    case "QUIT":
+                        out.write("OK\n");
+                        return false;
+                    default:
+                        out.write("ERR Unknown command\n");
+                }
+            } catch (RejectedExecutionException e) {
+                out.write("ERR Server busy, try again\n");
+            } catch (RuntimeException e) {
+                out.write("ERR Request failed\n");
+            }
+            return true;
+        }
+        
+        private boolean needsSession(String command) {
+            switch (command) {
+                case "CREATE":
+                case "ACCOUNTS":
+                case "DEPOSIT":
+                case "WITHDRAW":
+                case "TRANSFER":
+                case "HISTORY":
+                case "STATEMENT":
+                case "METRICS":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        
+        private void register(String rest, Writer out) throws IOException {
+            // The password is everything after the username and may contain spaces
+            String[] args = rest.split(" ", 2);
+            if (args.length < 2) {
+                out.write("ERR Usage: REGISTER <username> <password>\n");
+                return;
+            }
+            if (bankingService.registerUser(InputValidator.sanitizeInput(args[0]), args[1])) {
+                out.write("OK\n");
+            } else {
+                out.write("ERR Registration failed\n");
+            }
+        }
+        
+        private void login(String rest, Writer out) throws IOException {
+            String[] args = rest.split(" ", 2);
+            if (args.length < 2) {
+                out.write("ERR Usage: LOGIN <username> <password>\n");
+                return;
+            }
+            Optional<Session> opened = bankingService.openSession(InputValidator.sanitizeInput(args[0]), args[1]);
+            if (opened.isPresent()) {
+                bankingService.closeSession(session);
+                session = opened.get();
+                out.write("OK\n");
+            } else {
+                out.write("ERR Invalid username or password\n");
+            }
+        }
+        
+        private void createAccount(String rest, Writer out) throws IOException {
+            Account.AccountType type;
+            try {
+                type = Account.AccountType.valueOf(rest.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                out.write("ERR Usage: CREATE SAVINGS|CHECKING\n");
+                return;
+            }
+            out.write("OK " + bankingService.createAccount(session, type) + "\n");
+        }
+        
+        private void listAccounts(Writer out) throws IOException {
+            List<Account> accounts = bankingService.getUserAccounts(session);
+            StringBuilder reply = new StringBuilder("OK ").append(accounts.size()).append('\n');
+            for (Account account : accounts) {
+                reply.append(account.getAccountNumber()).append(' ').append(account.getType()).append(' ')
+                    .append(Money.format(account.getBalanceCents())).append('\n');
+            }
+            out.write(reply.toString());
+        }
+        
+        private void deposit(String rest, Writer out) throws IOException {
+            String[] args = rest.split(" +");
+            long amountCents = args.length == 2 ? InputValidator.parseAmountCents(args[1]) : -1;
+            if (amountCents <= 0) {
+                out.write("ERR Usage: DEPOSIT <account> <amount>\n");
+                return;
+            }
+            reply(bankingService.deposit(session, InputValidator.sanitizeInput(args[0]), amountCents),
+                "Deposit failed", out);
+        }
+        
+        private void withdraw(String rest, Writer out) throws IOException {
+            String[] args = rest.split(" +");
+            long amountCents = args.length == 2 ? InputValidator.parseAmountCents(args[1]) : -1;
+            if (amountCents <= 0) {
+                out.write("ERR Usage: WITHDRAW <account> <amount>\n");
+                return;
+            }
+            reply(bankingService.withdraw(session, InputValidator.sanitizeInput(args[0]), amountCents),
+                "Withdrawal failed", out);
+        }
+        
+        private void transfer(String rest, Writer out) throws IOException {
+            String[] args = rest.split(" +");
+            long amountCents = args.length == 3 ? InputValidator.parseAmountCents(args[2]) : -1;
+            if (amountCents <= 0 || !InputValidator.isValidAccountNumber(args[1])) {
+                out.write("ERR Usage: TRANSFER <from> <to> <amount>\n");
+                return;
+            }
+            reply(bankingService.transfer(session, InputValidator.sanitizeInput(args[0]), args[1], amountCents),
+                "Transfer failed", out);
+        }
+        
+        private void history(String rest, Writer out) throws IOException {
+            String[] args = rest.split(" +");
+            int cursor;
+            int limit;
+            try {
+                cursor = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+                limit = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PAGE;
+            } catch (NumberFormatException e) {
+                cursor = -1;
+                limit = 0;
+            }
+            if (args[0].isEmpty() || args.length > 3 || cursor < 0 || limit <= 0 || limit > MAX_PAGE) {
+                out.write("ERR Usage: HISTORY <account> [cursor] [limit]\n");
+                return;
+            }
+            TransactionPage page = bankingService.getAccountTransactions(session,
+                InputValidator.sanitizeInput(args[0]), cursor, limit);
+            List<Transaction> transactions = page.getTransactions();
+            StringBuilder reply = new StringBuilder("OK ").append(transactions.size()).append(' ')
+                .append(page.getNextCursor()).append('\n');
+            appendRows(reply, transactions);
+            out.write(reply.toString());
+        }
+        
+        private void statement(String rest, Writer out) throws IOException {
+            String[] args = rest.split(" +");
+            YearMonth month;
+            try {
+                month = args.length > 1 ? YearMonth.parse(args[1]) : YearMonth.now();
+            } catch (DateTimeParseException e) {
+                month = null;
+            }
+            if (args[0].isEmpty() || args.length > 2 || month == null) {
+                out.write("ERR Usage: STATEMENT <account> [yyyy-mm]\n");
+                return;
+            }
+            Statement statement = bankingService.getStatement(session, InputValidator.sanitizeInput(args[0]), month);
+            if (statement == null) {
+                out.write("ERR Statement unavailable\n");
+                return;
+            }
+            List<Transaction> transactions = statement.getTransactions();
+            StringBuilder reply = new StringBuilder("OK ").append(transactions.size()).append(' ')
+                .append(Money.format(statement.getOpeningBalanceCents())).append(' ')
+                .append(Money.format(statement.getCreditsCents())).append(' ')
+                .append(Money.format(statement.getDebitsCents())).append(' ')
+                .append(Money.format(statement.getClosingBalanceCents())).append('\n');
+            appendRows(reply, transactions);
+            out.write(reply.toString());
+        }
+        
+        private void appendRows(StringBuilder reply, List<Transaction> transactions) {
+            for (Transaction transaction : transactions) {
+                reply.append(transaction.getTransactionId()).append(' ').append(transaction.getTimestamp())
+                    .append(' ').append(transaction.getType()).append(' ')
+                    .append(Money.format(transaction.getAmountCents())).append(' ')
+                    .append(transaction.getDescription()).append('\n');
+            }
+        }
+        
+        private void metrics(Writer out) throws IOException {
+            String[] lines = bankingService.getMetrics().format().split("\\R");
+            StringBuilder reply = new StringBuilder("OK ").append(lines.length).append('\n');
+            for (String line : lines) {
+                reply.append(line).append('\n');
+            }
+            out.write(reply.toString());
+        }
+        
+        private void reply(boolean success, String failure, Writer out) throws IOException {
+            out.write(success ? "OK\n" : "ERR " + failure + "\n");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.banking.util;
+
+import com.banking.model.BatchResult;
+import com.banking.service.BankingService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Applies a posting file of deposits and withdrawals, e.g. a payroll run. Run it
+// with the interactive application and the server stopped.
+//
+// Usage: java com.banking.util.BatchPoster <posting-file> [reject-file]
+public class BatchPoster {
+    
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchPoster <posting-file> [reject-file]");
+            System.exit(2);
+        }
+        Path postings = Paths.get(args[0]);
+        Path rejects = Paths.get(args.length > 1 ? args[1] : args[0] + ".rejects");
+        
+        BankingService bankingService = new BankingService();
+        boolean posted = false;
+        try {
+            BatchResult result = bankingService.ingestPostings(postings, rejects);
+            System.out.println(result);
+            if (result.getRejected() > 0) {
+                System.out.println("Rejected lines written to " + rejects);
+            }
+            posted = true;
+        } catch (IOException e) {
+            System.err.println("Error posting batch: " + e.getMessage());
+        } finally {
+            bankingService.shutdown();
+        }
+        if (!posted) {
+            System.exit(1);
+        }
+    }
+}
\ No newline at end of file
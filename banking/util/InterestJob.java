@@ -0,0 +1,42 @@
+package com.banking.util;
+
+import com.banking.model.InterestResult;
+import com.banking.service.BankingService;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+// Posts a day's interest to every savings account; meant to run nightly. Without
+// a date it accrues the day that just ended, so it can run shortly after midnight.
+// Run it with the interactive application and the server stopped.
+//
+// Usage: java com.banking.util.InterestJob [yyyy-mm-dd]
+// The annual rate is -Dbanking.interest.savingsRate (default 0.02).
+public class InterestJob {
+    
+    public static void main(String[] args) {
+        LocalDate day = LocalDate.now().minusDays(1);
+        if (args.length > 0) {
+            try {
+                day = LocalDate.parse(args[0]);
+            } catch (DateTimeParseException e) {
+                System.err.println("Usage: InterestJob [yyyy-mm-dd]");
+                System.exit(2);
+            }
+        }
+        
+        BankingService bankingService = new BankingService();
+        InterestResult result;
+        try {
+            result = bankingService.accrueInterest(day);
+            if (result != null) {
+                System.out.println(result);
+            }
+        } finally {
+            bankingService.shutdown();
+        }
+        if (result == null) {
+            System.exit(1);
+        }
+    }
+}
\ No newline at end of file
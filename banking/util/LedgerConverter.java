@@ -0,0 +1,27 @@
+package com.banking.util;
+
+import com.banking.service.FileDataService;
+
+import java.io.IOException;
+
+// Migrates a data directory from transactions.txt to the binary ledger. Run it
+// once with the application stopped; startup then loads the snapshot and ledger.
+public class LedgerConverter {
+    
+    public static void main(String[] args) {
+        FileDataService dataService = new FileDataService();
+        boolean converted = false;
+        try {
+            long count = dataService.migrateToLedger();
+            System.out.println("Converted " + count + " transactions to the binary ledger.");
+            converted = true;
+        } catch (IOException e) {
+            System.err.println("Error converting data: " + e.getMessage());
+        } finally {
+            dataService.close();
+        }
+        if (!converted) {
+            System.exit(1);
+        }
+    }
+}
\ No newline at end of file
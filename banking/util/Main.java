@@ -1,251 +1,404 @@
-package com.banking.util;
-
-import com.banking.model.Account;
-import com.banking.model.Transaction;
-import com.banking.security.InputValidator;
-import com.banking.service.BankingService;
-
-import java.util.List;
-import java.util.Optional;
-import java.util.Scanner;
-
-public class Main {
-    private static BankingService bankingService;
-    private static Scanner scanner;
-    
-    public static void main(String[] args) {
-        bankingService = new BankingService();
-        scanner = new Scanner(System.in);
-        
-        System.out.println("=== Secure Banking Application ===");
-        
-        try {
-            boolean running = true;
-            while (running) {
-                if (bankingService.getCurrentUser() == null) {
-                    running = showMainMenu();
-                } else {
-                    running = showUserMenu();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("An unexpected error occurred. Please try again.");
-        } finally {
-            scanner.close();
-            System.out.println("Thank you for using our banking service!");
-        }
-    }
-    
-    private static boolean showMainMenu() {
-        System.out.println("\n=== Main Menu ===");
-        System.out.println("1. Login");
-        System.out.println("2. Register");
-        System.out.println("3. Exit");
-        System.out.print("Choose an option: ");
-        
-        String choice = scanner.nextLine().trim();
-        
-        switch (choice) {
-            case "1":
-                handleLogin();
-                break;
-            case "2":
-                handleRegistration();
-                break;
-            case "3":
-                return false;
-            default:
-                System.out.println("Invalid option. Please try again.");
-        }
-        return true;
-    }
-    
-    private static boolean showUserMenu() {
-        System.out.println("\n=== User Menu ===");
-        System.out.println("Welcome, " + bankingService.getCurrentUser().getUsername() + "!");
-        System.out.println("1. Create Account");
-        System.out.println("2. View Accounts");
-        System.out.println("3. Deposit");
-        System.out.println("4. Withdraw");
-        System.out.println("5. View Transaction History");
-        System.out.println("6. Logout");
-        System.out.print("Choose an option: ");
-        
-        String choice = scanner.nextLine().trim();
-        
-        switch (choice) {
-            case "1":
-                handleCreateAccount();
-                break;
-            case "2":
-                handleViewAccounts();
-                break;
-            case "3":
-                handleDeposit();
-                break;
-            case "4":
-                handleWithdraw();
-                break;
-            case "5":
-                handleViewTransactions();
-                break;
-            case "6":
-                bankingService.logout();
-                System.out.println("Logged out successfully.");
-                break;
-            default:
-                System.out.println("Invalid option. Please try again.");
-        }
-        return true;
-    }
-    
-    private static void handleLogin() {
-        System.out.print("Enter username: ");
-        String username = InputValidator.sanitizeInput(scanner.nextLine().trim());
-        
-        System.out.print("Enter password: ");
-        String password = scanner.nextLine(); // Don't sanitize passwords
-        
-        try {
-            if (bankingService.login(username, password)) {
-                System.out.println("Login successful!");
-            } else {
-                System.out.println("Invalid username or password.");
-            }
-        } catch (Exception e) {
-            System.out.println("Login failed. Please try again.");
-        }
-    }
-    
-    private static void handleRegistration() {
-        System.out.print("Enter username (3-20 alphanumeric characters): ");
-        String username = InputValidator.sanitizeInput(scanner.nextLine().trim());
-        
-        System.out.print("Enter password (min 8 characters): ");
-        String password = scanner.nextLine(); // Don't sanitize passwords
-        
-        try {
-            if (bankingService.registerUser(username, password)) {
-                System.out.println("Registration successful! You can now login.");
-            } else {
-                System.out.println("Registration failed. Username may be taken or invalid.");
-            }
-        } catch (Exception e) {
-            System.out.println("Registration failed. Please try again.");
-        }
-    }
-    
-    private static void handleCreateAccount() {
-        System.out.println("Select account type:");
-        System.out.println("1. Savings");
-        System.out.println("2. Checking");
-        System.out.print("Choose an option: ");
-        
-        String choice = scanner.nextLine().trim();
-        Account.AccountType type;
-        
-        switch (choice) {
-            case "1":
-                type = Account.AccountType.SAVINGS;
-                break;
-            case "2":
-                type = Account.AccountType.CHECKING;
-                break;
-            default:
-                System.out.println("Invalid option.");
-                return;
-        }
-        
-        try {
-            String accountNumber = bankingService.createAccount(type);
-            System.out.println("Account created successfully!");
-            System.out.println("Your account number: " + accountNumber);
-        } catch (Exception e) {
-            System.out.println("Failed to create account. Please try again.");
-        }
-    }
-    
-    private static void handleViewAccounts() {
-        List<Account> accounts = bankingService.getUserAccounts();
-        
-        if (accounts.isEmpty()) {
-            System.out.println("No accounts found.");
-            return;
-        }
-        
-        System.out.println("\n=== Your Accounts ===");
-        for (Account account : accounts) {
-            System.out.printf("Account: %s | Type: %s | Balance: $%.2f%n",
-                account.getAccountNumber(), account.getType(), account.getBalance());
-        }
-    }
-    
-    private static void handleDeposit() {
-        System.out.print("Enter account number: ");
-        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
-        
-        System.out.print("Enter amount to deposit: ");
-        String amountStr = scanner.nextLine().trim();
-        
-        if (!InputValidator.isValidAmount(amountStr)) {
-            System.out.println("Invalid amount format.");
-            return;
-        }
-        
-        double amount = Double.parseDouble(amountStr);
-        
-        try {
-            if (bankingService.deposit(accountNumber, amount)) {
-                System.out.println("Deposit successful!");
-            } else {
-                System.out.println("Deposit failed. Please check the account number.");
-            }
-        } catch (Exception e) {
-            System.out.println("Deposit failed. Please try again.");
-        }
-    }
-    
-    private static void handleWithdraw() {
-        System.out.print("Enter account number: ");
-        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
-        
-        System.out.print("Enter amount to withdraw: ");
-        String amountStr = scanner.nextLine().trim();
-        
-        if (!InputValidator.isValidAmount(amountStr)) {
-            System.out.println("Invalid amount format.");
-            return;
-        }
-        
-        double amount = Double.parseDouble(amountStr);
-        
-        try {
-            if (bankingService.withdraw(accountNumber, amount)) {
-                System.out.println("Withdrawal successful!");
-            } else {
-                System.out.println("Withdrawal failed. Check account number or insufficient funds.");
-            }
-        } catch (Exception e) {
-            System.out.println("Withdrawal failed. Please try again.");
-        }
-    }
-    
-    private static void handleViewTransactions() {
-        System.out.print("Enter account number: ");
-        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
-        
-        List<Transaction> transactions = bankingService.getAccountTransactions(accountNumber);
-        
-        if (transactions.isEmpty()) {
-            System.out.println("No transactions found for this account.");
-            return;
-        }
-        
-        System.out.println("\n=== Transaction History ===");
-        for (Transaction transaction : transactions) {
-            System.out.printf("%s | %s | $%.2f | %s%n",
-                transaction.getTimestamp(), transaction.getType(),
-                transaction.getAmount(), transaction.getDescription());
-        }
-    }
+package com.banking.util;
+
+import com.banking.model.Account;
+import com.banking.model.Money;
+import com.banking.model.Statement;
+import com.banking.model.Transaction;
+import com.banking.model.TransactionPage;
+import com.banking.security.InputValidator;
+import com.banking.service.BankingService;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Scanner;
+import java.util.concurrent.RejectedExecutionException;
+
+public class Main {
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static final int DEFAULT_SERVER_PORT = 8090;
+    
+    private static BankingService bankingService;
+    private static Scanner scanner;
+    
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? parsePort(args[1]) : DEFAULT_SERVER_PORT;
+            if (port < 0 || args.length > 2) {
+                System.err.println("Usage: Main [--server [port]], with a port from 1 to 65535");
+                System.exit(2);
+            }
+            runServer(port);
+            return;
+        }
+        bankingService = new BankingService();
+        scanner = new Scanner(System.in);
+        
+        System.out.println("=== Secure Banking Application ===");
+        
+        try {
+            boolean running = true;
+            while (running) {
+                if (bankingService.getCurrentUser() == null) {
+                    running = showMainMenu();
+                } else {
+                    running = showUserMenu();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("An unexpected error occurred. Please try again.");
+        } finally {
+            scanner.close();
+            bankingService.shutdown();
+            System.out.println("Thank you for using our banking service!");
+        }
+    }
+    
+    // The port number, or -1 if the text is not one
+    private static int parsePort(String text) {
+        try {
+            int port = Integer.parseInt(text);
+            return port >= 1 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    // Serves the menu operations over TCP until the process is interrupted
+    private static void runServer(int port) {
+        bankingService = new BankingService();
+        BankingServer server;
+        try {
+            server = new BankingServer(bankingService, port);
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            bankingService.shutdown();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            bankingService.shutdown();
+        }, "server-shutdown"));
+        server.start();
+        System.out.println("=== Secure Banking Server listening on localhost:" + server.getPort() + " ===");
+        try {
+            server.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static boolean showMainMenu() {
+        System.out.println("\n=== Main Menu ===");
+        System.out.println("1. Login");
+        System.out.println("2. Register");
+        System.out.println("3. Exit");
+        System.out.println("(type 'metrics' for service metrics)");
+        System.out.print("Choose an option: ");
+        
+        String choice = scanner.nextLine().trim();
+        
+        switch (choice) {
+            case "1":
+                handleLogin();
+                break;
+            case "2":
+                handleRegistration();
+                break;
+            case "3":
+                return false;
+            case "metrics":
+                handleMetrics();
+                break;
+            default:
+                System.out.println("Invalid option. Please try again.");
+        }
+        return true;
+    }
+    
+    private static boolean showUserMenu() {
+        System.out.println("\n=== User Menu ===");
+        System.out.println("Welcome, " + bankingService.getCurrentUser().getUsername() + "!");
+        System.out.println("1. Create Account");
+        System.out.println("2. View Accounts");
+        System.out.println("3. Deposit");
+        System.out.println("4. Withdraw");
+        System.out.println("5. Transfer");
+        System.out.println("6. View Transaction History");
+        System.out.println("7. Monthly Statement");
+        System.out.println("8. Logout");
+        System.out.println("(type 'metrics' for service metrics)");
+        System.out.print("Choose an option: ");
+        
+        String choice = scanner.nextLine().trim();
+        
+        switch (choice) {
+            case "1":
+                handleCreateAccount();
+                break;
+            case "2":
+                handleViewAccounts();
+                break;
+            case "3":
+                handleDeposit();
+                break;
+            case "4":
+                handleWithdraw();
+                break;
+            case "5":
+                handleTransfer();
+                break;
+            case "6":
+                handleViewTransactions();
+                break;
+            case "7":
+                handleStatement();
+                break;
+            case "8":
+                bankingService.logout();
+                System.out.println("Logged out successfully.");
+                break;
+            case "metrics":
+                handleMetrics();
+                break;
+            default:
+                System.out.println("Invalid option. Please try again.");
+        }
+        return true;
+    }
+    
+    private static void handleMetrics() {
+        System.out.println("\n=== Service Metrics (latencies in ms) ===");
+        System.out.print(bankingService.getMetrics().format());
+    }
+    
+    private static void handleLogin() {
+        System.out.print("Enter username: ");
+        String username = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        System.out.print("Enter password: ");
+        String password = scanner.nextLine(); // Don't sanitize passwords
+        
+        try {
+            if (bankingService.login(username, password)) {
+                System.out.println("Login successful!");
+            } else {
+                System.out.println("Invalid username or password.");
+            }
+        } catch (RejectedExecutionException e) {
+            System.out.println("The service is busy. Please try again shortly.");
+        } catch (Exception e) {
+            System.out.println("Login failed. Please try again.");
+        }
+    }
+    
+    private static void handleRegistration() {
+        System.out.print("Enter username (3-20 alphanumeric characters): ");
+        String username = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        System.out.print("Enter password (min 8 characters): ");
+        String password = scanner.nextLine(); // Don't sanitize passwords
+        
+        try {
+            if (bankingService.registerUser(username, password)) {
+                System.out.println("Registration successful! You can now login.");
+            } else {
+                System.out.println("Registration failed. Username may be taken or invalid.");
+            }
+        } catch (RejectedExecutionException e) {
+            System.out.println("The service is busy. Please try again shortly.");
+        } catch (Exception e) {
+            System.out.println("Registration failed. Please try again.");
+        }
+    }
+    
+    private static void handleCreateAccount() {
+        System.out.println("Select account type:");
+        System.out.println("1. Savings");
+        System.out.println("2. Checking");
+        System.out.print("Choose an option: ");
+        
+        String choice = scanner.nextLine().trim();
+        Account.AccountType type;
+        
+        switch (choice) {
+            case "1":
+                type = Account.AccountType.SAVINGS;
+                break;
+            case "2":
+                type = Account.AccountType.CHECKING;
+                break;
+            default:
+                System.out.println("Invalid option.");
+                return;
+        }
+        
+        try {
+            String accountNumber = bankingService.createAccount(type);
+            System.out.println("Account created successfully!");
+            System.out.println("Your account number: " + accountNumber);
+        } catch (Exception e) {
+            System.out.println("Failed to create account. Please try again.");
+        }
+    }
+    
+    private static void handleViewAccounts() {
+        List<Account> accounts = bankingService.getUserAccounts();
+        
+        if (accounts.isEmpty()) {
+            System.out.println("No accounts found.");
+            return;
+        }
+        
+        System.out.println("\n=== Your Accounts ===");
+        for (Account account : accounts) {
+            System.out.printf("Account: %s | Type: %s | Balance: $%s%n",
+                account.getAccountNumber(), account.getType(), Money.format(account.getBalanceCents()));
+        }
+    }
+    
+    private static void handleDeposit() {
+        System.out.print("Enter account number: ");
+        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        System.out.print("Enter amount to deposit: ");
+        String amountStr = scanner.nextLine().trim();
+        
+        long amountCents = InputValidator.parseAmountCents(amountStr);
+        if (amountCents <= 0) {
+            System.out.println("Invalid amount format.");
+            return;
+        }
+        
+        try {
+            if (bankingService.deposit(accountNumber, amountCents)) {
+                System.out.println("Deposit successful!");
+            } else {
+                System.out.println("Deposit failed. Please check the account number.");
+            }
+        } catch (Exception e) {
+            System.out.println("Deposit failed. Please try again.");
+        }
+    }
+    
+    private static void handleWithdraw() {
+        System.out.print("Enter account number: ");
+        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        System.out.print("Enter amount to withdraw: ");
+        String amountStr = scanner.nextLine().trim();
+        
+        long amountCents = InputValidator.parseAmountCents(amountStr);
+        if (amountCents <= 0) {
+            System.out.println("Invalid amount format.");
+            return;
+        }
+        
+        try {
+            if (bankingService.withdraw(accountNumber, amountCents)) {
+                System.out.println("Withdrawal successful!");
+            } else {
+                System.out.println("Withdrawal failed. Check account number or insufficient funds.");
+            }
+        } catch (Exception e) {
+            System.out.println("Withdrawal failed. Please try again.");
+        }
+    }
+    
+    private static void handleTransfer() {
+        System.out.print("Enter your account number: ");
+        String fromAccount = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        System.out.print("Enter destination account number: ");
+        String toAccount = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        if (!InputValidator.isValidAccountNumber(toAccount)) {
+            System.out.println("Invalid account number.");
+            return;
+        }
+        
+        System.out.print("Enter amount to transfer: ");
+        String amountStr = scanner.nextLine().trim();
+        
+        long amountCents = InputValidator.parseAmountCents(amountStr);
+        if (amountCents <= 0) {
+            System.out.println("Invalid amount format.");
+            return;
+        }
+        
+        try {
+            if (bankingService.transfer(fromAccount, toAccount, amountCents)) {
+                System.out.println("Transfer successful!");
+            } else {
+                System.out.println("Transfer failed. Check account numbers or insufficient funds.");
+            }
+        } catch (Exception e) {
+            System.out.println("Transfer failed. Please try again.");
+        }
+    }
+    
+    private static void handleViewTransactions() {
+        System.out.print("Enter account number: ");
+        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        TransactionPage page = bankingService.getAccountTransactions(accountNumber, 0, HISTORY_PAGE_SIZE);
+        
+        if (page.getTransactions().isEmpty()) {
+            System.out.println("No transactions found for this account.");
+            return;
+        }
+        
+        System.out.println("\n=== Transaction History ===");
+        while (true) {
+            for (Transaction transaction : page.getTransactions()) {
+                System.out.printf("%s | %s | $%s | %s%n",
+                    transaction.getTimestamp(), transaction.getType(),
+                    Money.format(transaction.getAmountCents()), transaction.getDescription());
+            }
+            if (!page.hasMore()) {
+                break;
+            }
+            System.out.print("Press Enter for more, or 'q' to return: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+            page = bankingService.getAccountTransactions(accountNumber, page.getNextCursor(), HISTORY_PAGE_SIZE);
+        }
+    }
+    
+    private static void handleStatement() {
+        System.out.print("Enter account number: ");
+        String accountNumber = InputValidator.sanitizeInput(scanner.nextLine().trim());
+        
+        System.out.print("Enter month (YYYY-MM, blank for this month): ");
+        String monthStr = scanner.nextLine().trim();
+        YearMonth month;
+        try {
+            month = monthStr.isEmpty() ? YearMonth.now() : YearMonth.parse(monthStr);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid month format.");
+            return;
+        }
+        
+        Statement statement = bankingService.getStatement(accountNumber, month);
+        if (statement == null) {
+            System.out.println("Statement unavailable. Please check the account number.");
+            return;
+        }
+        
+        System.out.println("\n=== Statement for " + accountNumber + ", " + month + " ===");
+        System.out.println("Opening balance: $" + Money.format(statement.getOpeningBalanceCents()));
+        for (Transaction transaction : statement.getTransactions()) {
+            System.out.printf("%s | %s | $%s | %s%n",
+                transaction.getTimestamp(), transaction.getType(),
+                Money.format(transaction.getAmountCents()), transaction.getDescription());
+        }
+        System.out.printf("Credits: $%s | Debits: $%s | Transactions: %d%n",
+            Money.format(statement.getCreditsCents()), Money.format(statement.getDebitsCents()),
+            statement.getCount());
+        System.out.println("Closing balance: $" + Money.format(statement.getClosingBalanceCents()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.banking.util;
+
+import com.banking.model.ReconciliationResult;
+import com.banking.service.BankingService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// End-of-day check that every balance matches its transactions. Only the rows added
+// since the last run are read. Exits with 3 if anything did not match; the details
+// are in the report. Run it with the interactive application and the server stopped.
+//
+// Usage: java com.banking.util.ReconcileJob [report-file]
+public class ReconcileJob {
+    
+    public static void main(String[] args) {
+        Path report = Paths.get(args.length > 0 ? args[0] : "reconciliation.txt");
+        
+        BankingService bankingService = new BankingService();
+        ReconciliationResult result = null;
+        try {
+            result = bankingService.reconcile(report);
+            System.out.println(result);
+            if (result.getDiscrepancies() > 0) {
+                System.out.println("Discrepancies written to " + report);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reconciling: " + e.getMessage());
+        } finally {
+            bankingService.shutdown();
+        }
+        if (result == null) {
+            System.exit(1);
+        }
+        if (result.getDiscrepancies() > 0) {
+            System.exit(3);
+        }
+    }
+}
\ No newline at end of file
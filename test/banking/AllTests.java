@@ -0,0 +1,90 @@
+package com.banking;
+
+import com.banking.model.MoneyTest;
+import com.banking.security.InputValidatorTest;
+import com.banking.service.AccountRollupTest;
+import com.banking.service.CommitPipelineTest;
+import com.banking.service.FileDataServiceTest;
+import com.banking.service.IdGeneratorTest;
+import com.banking.service.LatencyHistogramTest;
+import com.banking.util.BankingServerTest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Runs every test class and exits non-zero if any of them fails. Each class also
+// has its own main. Tests that need the service work on ./data, so run this from
+// an empty scratch directory; it refuses to start if ./data already has anything
+// in it, and empties it after every class.
+//
+// Usage, from the repository root:
+//   javac -d out $(find banking test -name '*.java')
+//   mkdir -p scratch && cd scratch && java -cp ../out com.banking.AllTests
+public class AllTests {
+    private static final Path DATA = Paths.get("data");
+    
+    // One test class's main
+    private interface TestClass {
+        void run() throws Exception;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (!isEmptyOrMissing(DATA)) {
+            System.err.println("Refusing to run: " + DATA.toAbsolutePath() + " is not empty");
+            System.exit(2);
+        }
+        Map<String, TestClass> tests = new LinkedHashMap<>();
+        tests.put("MoneyTest", () -> MoneyTest.main(args));
+        tests.put("InputValidatorTest", () -> InputValidatorTest.main(args));
+        tests.put("IdGeneratorTest", () -> IdGeneratorTest.main(args));
+        tests.put("LatencyHistogramTest", () -> LatencyHistogramTest.main(args));
+        tests.put("AccountRollupTest", () -> AccountRollupTest.main(args));
+        tests.put("CommitPipelineTest", () -> CommitPipelineTest.main(args));
+        tests.put("FileDataServiceTest", () -> FileDataServiceTest.main(args));
+        tests.put("BankingServerTest", () -> BankingServerTest.main(args));
+        
+        int failed = 0;
+        for (Map.Entry<String, TestClass> test : tests.entrySet()) {
+            clearData();
+            try {
+                test.getValue().run();
+                System.out.println("PASS " + test.getKey());
+            } catch (Throwable e) {
+                failed++;
+                System.out.println("FAIL " + test.getKey() + ": " + e);
+                e.printStackTrace(System.out);
+            }
+        }
+        clearData();
+        System.out.println((tests.size() - failed) + " of " + tests.size() + " test classes passed");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+    
+    private static boolean isEmptyOrMissing(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return !Files.exists(directory);
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+    
+    private static void clearData() throws IOException {
+        if (!Files.isDirectory(DATA)) {
+            Files.createDirectories(DATA);
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(DATA)) {
+            for (Path entry : entries) {
+                Files.delete(entry);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.banking;
+
+import java.util.Objects;
+
+// The checks the tests use; the tree has no test framework. A failed check throws
+// AssertionError, which ends the test class it is in.
+public final class Check {
+    
+    private Check() {
+    }
+    
+    public static void equal(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+    
+    public static void isTrue(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+    
+    // Runs the body and fails unless it throws an exception of the given type
+    public static <T extends Throwable> T fails(Class<T> type, Body body, String what) {
+        try {
+            body.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError(what + ": expected " + type.getSimpleName() + " but got " + e, e);
+        }
+        throw new AssertionError(what + ": expected " + type.getSimpleName());
+    }
+    
+    public interface Body {
+        void run() throws Exception;
+    }
+}
\ No newline at end of file
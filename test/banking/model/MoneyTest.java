@@ -0,0 +1,62 @@
+package com.banking.model;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.fails;
+
+public class MoneyTest {
+    
+    public static void main(String[] args) throws Exception {
+        format();
+        parsePlain();
+        parse();
+        multiplyDivide();
+    }
+    
+    private static void format() {
+        equal("0.00", Money.format(0), "zero");
+        equal("0.05", Money.format(5), "cents only");
+        equal("10.50", Money.format(1050), "units and cents");
+        equal("-0.05", Money.format(-5), "negative cents");
+        equal("-1234.56", Money.format(-123456), "negative");
+        equal("92233720368547758.07", Money.format(Long.MAX_VALUE), "largest");
+    }
+    
+    private static void parsePlain() {
+        equal(1050L, plain("10.5"), "one fraction digit");
+        equal(1005L, plain("10.05"), "two fraction digits");
+        equal(1000L, plain("10"), "no fraction");
+        equal(-250L, plain("-2.50"), "negative");
+        equal(0L, plain("0.00"), "zero");
+        equal(1L, Money.parsePlain("x0.01y", 1, 5), "range inside a longer value");
+        for (String bad : new String[] {"", "-", ".5", "10.", "10.123", "1e3", "1,000", " 10", "10 ",
+                "12345678901234567"}) {
+            equal(Long.MIN_VALUE, plain(bad), "not plain: \"" + bad + "\"");
+        }
+    }
+    
+    private static void parse() {
+        equal(1050L, Money.parse("10.50"), "plain");
+        equal(1000000000L, Money.parse("1.0E7"), "older files hold exponents");
+        equal(2L, Money.parse("0.015"), "half a cent rounds up to the even cent");
+        equal(2L, Money.parse("0.025"), "half a cent rounds down to the even cent");
+        equal(3L, Money.parse("0.0251"), "more than half a cent rounds up");
+        fails(NumberFormatException.class, () -> Money.parse("ten"), "not a number");
+    }
+    
+    private static void multiplyDivide() {
+        equal(50L, Money.multiplyDivide(1000, 1, 20), "exact");
+        equal(2L, Money.multiplyDivide(5, 1, 2), "half rounds down to even");
+        equal(4L, Money.multiplyDivide(7, 1, 2), "half rounds up to even");
+        equal(-2L, Money.multiplyDivide(-5, 1, 2), "negative half rounds to even");
+        equal(3L, Money.multiplyDivide(5, 2, 3), "below half rounds down");
+        equal(7L, Money.multiplyDivide(5, 4, 3), "above half rounds up");
+        equal(-7L, Money.multiplyDivide(-5, 4, 3), "negative above half rounds away from zero");
+        // The product needs more than 64 bits; MAX_VALUE is odd, so this is a half
+        equal(Long.MAX_VALUE / 2 + 1, Money.multiplyDivide(Long.MAX_VALUE, 1L << 40, 1L << 41), "wide product");
+        fails(IllegalArgumentException.class, () -> Money.multiplyDivide(1, 1, 0), "zero denominator");
+    }
+    
+    private static long plain(String value) {
+        return Money.parsePlain(value, 0, value.length());
+    }
+}
\ No newline at end of file
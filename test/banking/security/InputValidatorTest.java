@@ -0,0 +1,41 @@
+package com.banking.security;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.isTrue;
+
+public class InputValidatorTest {
+    
+    public static void main(String[] args) throws Exception {
+        parseAmountCents();
+        accountNumbers();
+        sanitizeInput();
+    }
+    
+    private static void parseAmountCents() {
+        equal(1050L, InputValidator.parseAmountCents("10.5"), "one fraction digit");
+        equal(1L, InputValidator.parseAmountCents("0.01"), "smallest");
+        equal(100000000L, InputValidator.parseAmountCents("1000000"), "the limit");
+        equal(100000000L, InputValidator.parseAmountCents("1000000.00"), "the limit with cents");
+        for (String bad : new String[] {null, "", "0", "0.00", "-5", "1000000.01", "10.123", "1e3", "abc",
+                " 10", "10.", ".5"}) {
+            equal(-1L, InputValidator.parseAmountCents(bad), "rejected: \"" + bad + "\"");
+        }
+        isTrue(InputValidator.isValidAmount("25.00"), "valid amount");
+        isTrue(!InputValidator.isValidAmount("0"), "zero is not a valid amount");
+    }
+    
+    private static void accountNumbers() {
+        isTrue(InputValidator.isValidAccountNumber("ACC123456"), "six digits");
+        isTrue(!InputValidator.isValidAccountNumber("ACC12345"), "five digits");
+        isTrue(!InputValidator.isValidAccountNumber("acc123456"), "lower case prefix");
+        isTrue(!InputValidator.isValidAccountNumber(null), "null");
+    }
+    
+    private static void sanitizeInput() {
+        String clean = "alice_01";
+        isTrue(InputValidator.sanitizeInput(clean) == clean, "clean input is returned as it is");
+        equal("scriptalert(1)/script", InputValidator.sanitizeInput("<script>alert(1)</script>"), "tags");
+        equal("its", InputValidator.sanitizeInput("it's"), "quotes");
+        equal(null, InputValidator.sanitizeInput(null), "null");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.banking.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+import static com.banking.Check.equal;
+
+public class AccountRollupTest {
+    
+    public static void main(String[] args) throws Exception {
+        AccountRollup rollup = new AccountRollup();
+        add(rollup, 0, "2026-03-01T10:00", 10000);
+        add(rollup, 1, "2026-03-05T09:00", -2000);
+        add(rollup, 2, "2026-04-02T10:00", 500);
+        // Backdated: a new day inside March, a second row on an existing day, and a
+        // row before the first month
+        add(rollup, 3, "2026-03-03T10:00", 300);
+        add(rollup, 4, "2026-03-05T12:00", -100);
+        add(rollup, 5, "2026-02-20T10:00", 50);
+        rollup.setBase(1000);
+        
+        balances(rollup);
+        periods(rollup);
+        periodsAsOfSequence(rollup);
+        rowsByTime(rollup);
+    }
+    
+    private static void balances(AccountRollup rollup) {
+        equal(9750L, rollup.getBalanceCents(Long.MAX_VALUE), "balance");
+        equal(9500L, rollup.getBalanceCents(3), "balance before the backdated rows");
+        equal(1000L, rollup.getBalanceCents(0), "balance before any row");
+    }
+    
+    private static void periods(AccountRollup rollup) {
+        check(rollup.getMonth(YearMonth.of(2026, 2)), 1000, 50, 0, 1, 1050, "February");
+        check(rollup.getMonth(YearMonth.of(2026, 3)), 1050, 10300, 2100, 4, 9250, "March");
+        check(rollup.getDays(LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 31)), 1050, 10300, 2100, 4, 9250,
+            "March by days");
+        check(rollup.getMonth(YearMonth.of(2026, 4)), 9250, 500, 0, 1, 9750, "April");
+        check(rollup.getMonth(YearMonth.of(2026, 5)), 9750, 0, 0, 0, 9750, "a month with no rows");
+        check(rollup.getMonth(YearMonth.of(2026, 1)), 1000, 0, 0, 0, 1000, "a month before every row");
+        LocalDate fifth = LocalDate.of(2026, 3, 5);
+        check(rollup.getDays(fifth, fifth), 11350, 0, 2100, 2, 9250, "a day with two rows");
+        LocalDate quiet = LocalDate.of(2026, 3, 10);
+        check(rollup.getDays(quiet, quiet), 9250, 0, 0, 0, 9250, "a day with no rows");
+    }
+    
+    // A view at sequence 3 sees rows 0 to 2 only, even where later rows were backdated
+    private static void periodsAsOfSequence(AccountRollup rollup) {
+        check(rollup.getMonth(YearMonth.of(2026, 3), 3), 1000, 10000, 2000, 2, 9000, "March as of 3");
+        check(rollup.getMonth(YearMonth.of(2026, 4), 3), 9000, 500, 0, 1, 9500, "April as of 3");
+        check(rollup.getMonth(YearMonth.of(2026, 2), 3), 1000, 0, 0, 0, 1000, "February as of 3");
+    }
+    
+    private static void rowsByTime(AccountRollup rollup) {
+        equal("[5, 0, 3, 1, 4, 2]", Arrays.toString(rollup.getRowsBetween(Long.MIN_VALUE, Long.MAX_VALUE)),
+            "every row, oldest first");
+        equal("[0, 3, 1]", Arrays.toString(rollup.getRowsBetween(micros("2026-03-01T00:00"),
+            micros("2026-03-06T00:00"), 4)), "early March as of 4");
+        equal("[]", Arrays.toString(rollup.getRowsBetween(micros("2026-03-06T00:00"),
+            micros("2026-04-01T00:00"))), "a range with no rows");
+    }
+    
+    private static void add(AccountRollup rollup, int row, String timestamp, long signedCents) {
+        rollup.add(row, micros(timestamp), signedCents);
+    }
+    
+    private static long micros(String timestamp) {
+        return BinaryLedger.toMicros(LocalDateTime.parse(timestamp));
+    }
+    
+    private static void check(AccountRollup.Period period, long opening, long credits, long debits, long count,
+                              long closing, String what) {
+        equal(opening, period.getOpeningCents(), what + " opening");
+        equal(credits, period.getCreditsCents(), what + " credits");
+        equal(debits, period.getDebitsCents(), what + " debits");
+        equal(count, period.getCount(), what + " count");
+        equal(closing, period.getClosingCents(), what + " closing");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.banking.service;
+
+import com.banking.service.CommitPipeline.Durability;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.fails;
+
+public class CommitPipelineTest {
+    private static final List<String> RECORDS = Arrays.asList("T|TXN1|ACC100000|DEPOSIT|10.00",
+        "U|caf\u00e9_owner|hash|salt|true", "A|ACC100001|bob|SAVINGS|0.00", "X|first\tsecond");
+    
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("journal-test");
+        try {
+            recordsRoundTrip(directory);
+            damagedRecords();
+        } finally {
+            delete(directory);
+        }
+    }
+    
+    // Records come back whole and in order, split across segments by rotate
+    private static void recordsRoundTrip(Path directory) throws IOException {
+        CommitPipeline journal = new CommitPipeline(directory);
+        journal.append(RECORDS.get(0), Durability.FSYNC);
+        journal.enqueueAll(RECORDS.subList(1, 3), Durability.WRITE).await();
+        equal(1L, journal.rotate(), "sealed segment");
+        journal.enqueue(RECORDS.get(3), Durability.NONE);
+        journal.close();
+        fails(IllegalStateException.class, () -> journal.append("T|late", Durability.NONE), "closed");
+        
+        equal(Arrays.asList(1L, 2L), CommitPipeline.listSegments(directory), "segments");
+        List<String> replayed = new ArrayList<>();
+        for (long segment : CommitPipeline.listSegments(directory)) {
+            replayed.addAll(replay(CommitPipeline.segmentPath(directory, segment)));
+        }
+        equal(RECORDS, replayed, "replayed records");
+        CommitPipeline reopened = new CommitPipeline(directory);
+        equal(3L, reopened.currentSegment(), "a reopened journal starts after the last segment");
+    }
+    
+    private static void damagedRecords() {
+        String framed = frame(RECORDS.get(1));
+        equal(RECORDS.get(1), check(framed), "intact record");
+        equal("T|legacy|line", check("T|legacy|line"), "records from before framing are taken as they are");
+        
+        char[] flipped = framed.toCharArray();
+        flipped[flipped.length - 2] ^= 1;
+        equal(null, check(new String(flipped)), "a changed character");
+        equal(null, check(framed.substring(0, framed.length() - 3)), "a torn record");
+        equal(null, check(framed.substring(0, 6)), "a torn frame");
+        equal(null, check("~zzzzzzzz|" + RECORDS.get(1)), "a frame that is not hex");
+        equal(null, check(framed.substring(0, 9) + "#" + framed.substring(10)), "a frame without its separator");
+    }
+    
+    // The payloads of a segment's intact records; torn or damaged ones are dropped
+    private static List<String> replay(Path segment) throws IOException {
+        RecordParser parser = new RecordParser();
+        CommitPipeline.RecordCheck recordCheck = new CommitPipeline.RecordCheck();
+        List<String> records = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            parser.readLines(reader, (chars, start, end) -> {
+                int record = recordCheck.recordStart(chars, start, end);
+                if (record >= 0) {
+                    records.add(new String(chars, record, end - record));
+                }
+            });
+        }
+        return records;
+    }
+    
+    // A record framed the way the journal writes it
+    private static String frame(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return String.format("~%08x|%s", crc.getValue(), record);
+    }
+    
+    private static String check(String line) {
+        char[] chars = line.toCharArray();
+        int record = new CommitPipeline.RecordCheck().recordStart(chars, 0, chars.length);
+        return record < 0 ? null : new String(chars, record, chars.length - record);
+    }
+    
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
\ No newline at end of file
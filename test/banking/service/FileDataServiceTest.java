@@ -0,0 +1,200 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.Transaction;
+import com.banking.model.User;
+import com.banking.service.CommitPipeline.Durability;
+import com.banking.service.FileDataService.PersistenceMode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.fails;
+import static com.banking.Check.isTrue;
+
+// Snapshot and journal files, read back by a second service as a restart would.
+// Works on ./data; see AllTests.
+public class FileDataServiceTest {
+    private static final Path DATA = Paths.get("data");
+    private static final Path SNAPSHOT = DATA.resolve("snapshot.bin");
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 3, 1, 10, 15, 30, 123456000);
+    // Too long for a table slot, so this user is kept outside the table
+    private static final String LONG_HASH = String.join("", Collections.nCopies(40, "0123456789"));
+    
+    public static void main(String[] args) throws Exception {
+        Files.createDirectories(DATA);
+        snapshotRoundTrip();
+        unreadableSnapshot();
+        journalReplay();
+    }
+    
+    private static void snapshotRoundTrip() throws IOException {
+        FileDataService writer = new FileDataService(PersistenceMode.JOURNAL, Durability.FSYNC);
+        UserStore users = writer.openUserStore(16);
+        AccountStore accounts = writer.openAccountStore(0);
+        try {
+            users.insert(user("alice", "hash-a", "salt-a", true));
+            users.insert(user("b\u00f6b", "hash-b", "salt-b", false));
+            users.insert(user("carol", LONG_HASH, "salt-c", true));
+            accounts.insert(new Account("ACC100001", "alice", Account.AccountType.CHECKING, 12345, CREATED), 3, 7);
+            accounts.insert(new Account("ACC999999", "b\u00f6b", Account.AccountType.SAVINGS, 0, CREATED), -1, -1);
+            // Older data may hold account numbers outside the ACC<6 digits> space
+            accounts.insert(new Account("LEGACY-1", "carol", Account.AccountType.SAVINGS, 500, CREATED), 5, 9);
+            
+            // The balances as of the snapshot's cut are what it records, not the live ones
+            Path pending = writer.writeSnapshot(users, accounts, account -> account.getBalanceCents() - 100, 0, 42,
+                0);
+            isTrue(pending != null && writer.installSnapshot(pending), "snapshot installed");
+        } finally {
+            users.close();
+            accounts.close();
+            writer.close();
+        }
+        
+        FileDataService reader = new FileDataService(PersistenceMode.JOURNAL, Durability.FSYNC);
+        users = reader.openUserStore(16);
+        accounts = reader.openAccountStore(0);
+        try {
+            FileDataService.Snapshot snapshot = reader.loadSnapshot(accounts, users);
+            equal(0L, snapshot.getLedgerCount(), "ledger count");
+            equal(42L, snapshot.getHighestTransactionId(), "highest transaction ID");
+            equal(0L, snapshot.getCoveredSegment(), "covered segment");
+            
+            equal(3, users.size(), "users");
+            checkUser(users.get("alice"), "hash-a", "salt-a", true);
+            checkUser(users.get("b\u00f6b"), "hash-b", "salt-b", false);
+            checkUser(users.get("carol"), LONG_HASH, "salt-c", true);
+            
+            equal(3, accounts.size(), "accounts");
+            checkAccount(accounts, "ACC100001", "alice", Account.AccountType.CHECKING, 12245, 3, 7);
+            checkAccount(accounts, "ACC999999", "b\u00f6b", Account.AccountType.SAVINGS, -100, -1, -1);
+            checkAccount(accounts, "LEGACY-1", "carol", Account.AccountType.SAVINGS, 400, 5, 9);
+        } finally {
+            users.close();
+            accounts.close();
+            reader.close();
+        }
+    }
+    
+    // A snapshot that is there but cannot be read fails the load and leaves the stores
+    // empty; only a missing one means starting from the text files
+    private static void unreadableSnapshot() throws IOException {
+        byte[] intact = Files.readAllBytes(SNAPSHOT);
+        byte[] badMagic = intact.clone();
+        badMagic[0] ^= 1;
+        List<byte[]> damaged = Arrays.asList(Arrays.copyOf(intact, intact.length - 5), badMagic,
+            Arrays.copyOf(intact, 10));
+        for (byte[] contents : damaged) {
+            Files.write(SNAPSHOT, contents);
+            FileDataService service = new FileDataService(PersistenceMode.JOURNAL, Durability.FSYNC);
+            UserStore users = service.openUserStore(16);
+            AccountStore accounts = service.openAccountStore(0);
+            try {
+                fails(IOException.class, () -> service.loadSnapshot(accounts, users),
+                    "a snapshot of " + contents.length + " bytes");
+                equal(0, users.size(), "users after a failed load");
+                equal(0, accounts.size(), "accounts after a failed load");
+            } finally {
+                users.close();
+                accounts.close();
+                service.close();
+            }
+        }
+        
+        Files.delete(SNAPSHOT);
+        FileDataService service = new FileDataService(PersistenceMode.JOURNAL, Durability.FSYNC);
+        UserStore users = service.openUserStore(16);
+        AccountStore accounts = service.openAccountStore(0);
+        try {
+            equal(null, service.loadSnapshot(accounts, users), "no snapshot");
+        } finally {
+            users.close();
+            accounts.close();
+            service.close();
+        }
+    }
+    
+    // Records replay in order; a torn last write and a damaged record are skipped
+    private static void journalReplay() throws IOException {
+        Metrics metrics = new Metrics();
+        FileDataService writer = new FileDataService(PersistenceMode.JOURNAL, Durability.FSYNC, metrics);
+        writer.appendUser(user("dave", "hash-d", "salt-d", true), Durability.NONE);
+        writer.appendAccount(new Account("ACC200000", "dave", Account.AccountType.CHECKING, 0, CREATED),
+            Durability.NONE);
+        writer.appendAccount(new Account("ACC200001", "dave", Account.AccountType.SAVINGS, 0, CREATED),
+            Durability.NONE);
+        writer.appendTransaction(transaction("TXN1", "ACC200000", Transaction.TransactionType.DEPOSIT, 10000),
+            Durability.NONE);
+        writer.appendTransfer(transaction("TXN2", "ACC200000", Transaction.TransactionType.TRANSFER_OUT, 2500),
+            transaction("TXN3", "ACC200001", Transaction.TransactionType.TRANSFER_IN, 2500), Durability.NONE);
+        writer.appendTransaction(transaction("TXN4", "ACC200000", Transaction.TransactionType.WITHDRAWAL, 999),
+            Durability.FSYNC).await();
+        writer.close();
+        
+        Path segment = CommitPipeline.segmentPath(DATA, CommitPipeline.listSegments(DATA).get(0));
+        List<String> lines = Files.readAllLines(segment, StandardCharsets.UTF_8);
+        // Damage the withdrawal's amount, then add a write cut short by a crash
+        String withdrawal = lines.get(lines.size() - 1);
+        lines.set(lines.size() - 1, withdrawal.replace("9.99", "1.99"));
+        Files.write(segment, lines, StandardCharsets.UTF_8);
+        Files.write(segment, "~1234abcd|T|TXN5|ACC2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        
+        FileDataService reader = new FileDataService(PersistenceMode.JOURNAL, Durability.FSYNC, metrics);
+        UserStore users = reader.openUserStore(16);
+        AccountStore accounts = reader.openAccountStore(0);
+        TransactionStore transactions = new TransactionStore();
+        try {
+            reader.replayJournal(users, accounts, transactions, 0);
+            checkUser(users.get("dave"), "hash-d", "salt-d", true);
+            equal(7500L, accounts.get("ACC200000").getBalanceCents(), "checking balance");
+            equal(2500L, accounts.get("ACC200001").getBalanceCents(), "savings balance");
+            equal(3, transactions.size(), "replayed transactions");
+            equal("TXN2", transactions.getTransactionId(1), "the transfer's first leg");
+            equal("TXN3", transactions.getTransactionId(2), "the transfer's second leg");
+            equal(2L, metrics.counter("file.journal.tornRecords").sum(), "skipped records");
+        } finally {
+            users.close();
+            accounts.close();
+            reader.close();
+        }
+    }
+    
+    private static User user(String username, String hash, String salt, boolean active) {
+        User user = new User(username, hash, salt);
+        user.setActive(active);
+        return user;
+    }
+    
+    private static Transaction transaction(String id, String accountNumber, Transaction.TransactionType type,
+                                           long amountCents) {
+        return new Transaction(id, accountNumber, type, amountCents, CREATED, "test");
+    }
+    
+    private static void checkUser(User user, String hash, String salt, boolean active) {
+        isTrue(user != null, "user found");
+        equal(hash, user.getPasswordHash(), user.getUsername() + " hash");
+        equal(salt, user.getSalt(), user.getUsername() + " salt");
+        equal(active, user.isActive(), user.getUsername() + " active");
+    }
+    
+    private static void checkAccount(AccountStore accounts, String accountNumber, String username,
+                                     Account.AccountType type, long balanceCents, long firstRow, long lastRow) {
+        Account account = accounts.get(accountNumber);
+        isTrue(account != null, accountNumber + " found");
+        equal(username, account.getUsername(), accountNumber + " owner");
+        equal(type, account.getType(), accountNumber + " type");
+        equal(balanceCents, account.getBalanceCents(), accountNumber + " balance");
+        equal(CREATED, account.getCreatedAt(), accountNumber + " opened");
+        equal(firstRow, accounts.getFirstLedgerRow(accountNumber), accountNumber + " first ledger row");
+        equal(lastRow, accounts.getLastLedgerRow(accountNumber), accountNumber + " last ledger row");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.banking.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.fails;
+import static com.banking.Check.isTrue;
+
+public class IdGeneratorTest {
+    
+    public static void main(String[] args) throws Exception {
+        transactionIdsIncrease();
+        transactionIdsUniqueAcrossThreads();
+        observedValuesAreNotReissued();
+        accountNumbers();
+        observedAccountNumbersAreNotReissued();
+    }
+    
+    private static void transactionIdsIncrease() {
+        IdGenerator generator = new IdGenerator();
+        long previous = -1;
+        // More than one stripe can issue in a millisecond, so some borrow ahead
+        for (int i = 0; i < 100000; i++) {
+            String id = generator.nextTransactionId();
+            long value = IdGenerator.transactionValue(id);
+            isTrue(id.startsWith(IdGenerator.TRANSACTION_PREFIX), "prefix of " + id);
+            isTrue(value > previous, id + " after " + previous);
+            previous = value;
+        }
+        equal(-1L, IdGenerator.transactionValue("TXNabc"), "not digits");
+        equal(-1L, IdGenerator.transactionValue("T-1"), "not an ID");
+        equal(-1L, IdGenerator.transactionValue(null), "null");
+    }
+    
+    private static void transactionIdsUniqueAcrossThreads() throws InterruptedException {
+        IdGenerator generator = new IdGenerator();
+        int threads = 8;
+        int perThread = 20000;
+        List<Set<String>> issued = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Set<String> ids = new HashSet<>();
+            issued.add(ids);
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextTransactionId());
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Set<String> all = new HashSet<>();
+        for (int t = 0; t < threads; t++) {
+            workers.get(t).join();
+            all.addAll(issued.get(t));
+        }
+        equal(threads * perThread, all.size(), "distinct IDs");
+    }
+    
+    private static void observedValuesAreNotReissued() {
+        IdGenerator generator = new IdGenerator();
+        long future = IdGenerator.transactionValue(generator.nextTransactionId()) + (1L << 40);
+        generator.observeTransactionValue(future);
+        for (int i = 0; i < 1000; i++) {
+            isTrue(IdGenerator.transactionValue(generator.nextTransactionId()) > future, "after an observed value");
+        }
+    }
+    
+    private static void accountNumbers() {
+        equal("ACC100000", IdGenerator.accountNumber(0), "first number");
+        equal("ACC999999", IdGenerator.accountNumber(IdGenerator.ACCOUNT_SPACE - 1), "last number");
+        for (int offset : new int[] {0, 1, 12345, IdGenerator.ACCOUNT_SPACE - 1}) {
+            equal(offset, IdGenerator.accountOffset(IdGenerator.accountNumber(offset)), "round trip of " + offset);
+        }
+        for (String bad : new String[] {null, "ACC", "ACC099999", "ACC1000000", "ACC12345x", "XYZ123456"}) {
+            equal(-1, IdGenerator.accountOffset(bad), "outside the space: " + bad);
+        }
+    }
+    
+    private static void observedAccountNumbersAreNotReissued() {
+        IdGenerator generator = new IdGenerator();
+        Set<String> taken = new HashSet<>();
+        for (int offset = 0; offset < IdGenerator.ACCOUNT_SPACE; offset += 3) {
+            String number = IdGenerator.accountNumber(offset);
+            generator.observeAccountNumber(number);
+            generator.observeAccountNumber(number);
+            taken.add(number);
+        }
+        generator.observeAccountNumber("NOT-AN-ACCOUNT");
+        int free = IdGenerator.ACCOUNT_SPACE - taken.size();
+        equal(free, generator.getFreeAccountNumbers(), "free numbers after observing");
+        for (int i = 0; i < free; i++) {
+            isTrue(taken.add(generator.nextAccountNumber()), "issued twice");
+        }
+        equal(0, generator.getFreeAccountNumbers(), "space used up");
+        fails(IllegalStateException.class, generator::nextAccountNumber, "exhausted space");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.banking.service;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.isTrue;
+
+public class LatencyHistogramTest {
+    private static final int BUCKETS = 960;
+    
+    public static void main(String[] args) throws Exception {
+        linearBuckets();
+        bucketsAreContiguous();
+        bucketsAreNarrow();
+        percentiles();
+    }
+    
+    private static void linearBuckets() {
+        for (int value = 0; value < 32; value++) {
+            equal(value, LatencyHistogram.bucket(value), "bucket of " + value);
+            equal((long) value, LatencyHistogram.upperBound(value), "upper bound of " + value);
+        }
+    }
+    
+    // Every value falls in the bucket whose range (upperBound(b - 1), upperBound(b)] holds it
+    private static void bucketsAreContiguous() {
+        for (int bucket = 1; bucket < BUCKETS; bucket++) {
+            long low = LatencyHistogram.upperBound(bucket - 1) + 1;
+            long high = LatencyHistogram.upperBound(bucket);
+            isTrue(high >= low, "bucket " + bucket + " is empty");
+            equal(bucket, LatencyHistogram.bucket(low), "bucket of " + low);
+            equal(bucket, LatencyHistogram.bucket(high), "bucket of " + high);
+        }
+        equal(BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE), "bucket of the largest value");
+        equal(Long.MAX_VALUE, LatencyHistogram.upperBound(BUCKETS - 1), "upper bound of the last bucket");
+    }
+    
+    // Sixteen buckets to a power of two: a bucket is at most 1/16 of its lower bound wide
+    private static void bucketsAreNarrow() {
+        for (int bucket = 32; bucket < BUCKETS; bucket++) {
+            long low = LatencyHistogram.upperBound(bucket - 1) + 1;
+            long width = LatencyHistogram.upperBound(bucket) - low + 1;
+            isTrue(width <= Math.max(1, low / 16), "bucket " + bucket + " is " + width + " wide from " + low);
+        }
+    }
+    
+    private static void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        equal(0L, histogram.getPercentileNanos(0.5), "empty");
+        for (long nanos = 1; nanos <= 10000; nanos++) {
+            histogram.record(nanos);
+        }
+        histogram.record(-5);
+        equal(10001L, histogram.getCount(), "count");
+        equal(10000L, histogram.getMaxNanos(), "max");
+        equal(50005000L, histogram.getTotalNanos(), "negative durations count as zero");
+        long median = histogram.getPercentileNanos(0.5);
+        isTrue(median >= 5000 && median <= 5000 + 5000 / 16, "median " + median);
+        long p99 = histogram.getPercentileNanos(0.99);
+        isTrue(p99 >= 9900 && p99 <= 9900 + 9900 / 16, "p99 " + p99);
+        equal(10000L, histogram.getPercentileNanos(1.0), "the top percentile is capped at the max");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.banking.util;
+
+import com.banking.service.BankingService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static com.banking.Check.equal;
+import static com.banking.Check.isTrue;
+
+// The line protocol end to end, over a loopback socket. Works on ./data; see AllTests.
+public class BankingServerTest {
+    
+    public static void main(String[] args) throws Exception {
+        Files.createDirectories(Paths.get("data"));
+        BankingService service = new BankingService();
+        BankingServer server = new BankingServer(service, 0);
+        server.start();
+        try {
+            session(server.getPort());
+            overlongLine(server.getPort());
+        } finally {
+            server.stop();
+            service.shutdown();
+        }
+    }
+    
+    private static void session(int port) throws IOException {
+        try (Client client = new Client(port)) {
+            client.expect("ACCOUNTS", "ERR Not logged in");
+            client.expect("REGISTER server_test password123", "OK");
+            client.expect("REGISTER server_test password123", "ERR Registration failed");
+            client.expect("LOGIN server_test wrong-password", "ERR Invalid username or password");
+            client.expect("LOGIN server_test password123", "OK");
+            
+            String checking = client.send("CREATE CHECKING").substring(3);
+            String savings = client.send("create savings").substring(3);
+            client.expect("CREATE GOLD", "ERR Usage: CREATE SAVINGS|CHECKING");
+            client.expect("DEPOSIT " + checking + " 100.50", "OK");
+            client.expect("DEPOSIT " + checking + " -5", "ERR Usage: DEPOSIT <account> <amount>");
+            client.expect("DEPOSIT ACC000000 5", "ERR Deposit failed");
+            client.expect("WITHDRAW " + checking + " 1000", "ERR Withdrawal failed");
+            client.expect("TRANSFER " + checking + " " + savings + " 20.25", "OK");
+            client.expect("TRANSFER " + checking + " nowhere 1", "ERR Usage: TRANSFER <from> <to> <amount>");
+            
+            client.expect("ACCOUNTS", "OK 2");
+            equal(checking + " CHECKING 80.25", client.read(), "first account, the oldest");
+            equal(savings + " SAVINGS 20.25", client.read(), "second account");
+            
+            // Two pages of one row each, oldest first
+            String[] first = client.send("HISTORY " + checking + " 0 1").split(" ");
+            equal("OK 1", first[0] + " " + first[1], "first page");
+            isTrue(client.read().contains(" DEPOSIT 100.50 "), "first page row");
+            client.expect("HISTORY " + checking + " " + first[2] + " 1", "OK 1 -1");
+            isTrue(client.read().contains(" TRANSFER_OUT 20.25 "), "second page row");
+            client.expect("HISTORY " + checking + " 0 0", "ERR Usage: HISTORY <account> [cursor] [limit]");
+            
+            client.expect("STATEMENT " + checking, "OK 2 0.00 100.50 20.25 80.25");
+            isTrue(client.read().contains(" DEPOSIT 100.50 "), "statement row");
+            isTrue(client.read().contains(" TRANSFER_OUT 20.25 "), "statement row");
+            client.expect("STATEMENT " + checking + " 2026-13", "ERR Usage: STATEMENT <account> [yyyy-mm]");
+            
+            client.expect("BOGUS", "ERR Unknown command");
+            client.expect("LOGOUT", "OK");
+            client.expect("ACCOUNTS", "ERR Not logged in");
+            client.expect("QUIT", "OK");
+            equal(null, client.read(), "closed after QUIT");
+        }
+    }
+    
+    private static void overlongLine(int port) throws IOException {
+        try (Client client = new Client(port)) {
+            client.expect(String.join("", Collections.nCopies(2000, "x")), "ERR Line too long");
+            equal(null, client.read(), "closed after an overlong line");
+        }
+    }
+    
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+        
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(30000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+        
+        // Sends a command and returns the first line of the reply
+        String send(String command) throws IOException {
+            out.write(command + "\n");
+            out.flush();
+            return in.readLine();
+        }
+        
+        void expect(String command, String reply) throws IOException {
+            equal(reply, send(command), "reply to " + command);
+        }
+        
+        String read() throws IOException {
+            return in.readLine();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
\ No newline at end of file